@@ -0,0 +1,15 @@
+package net.sourceforge.vrapper.keymap;
+
+/**
+ * {@link State} wrapping other states, which can rebuild itself around their compiled versions.
+ * @see StateCompiler
+ */
+public interface CompilableState<T> extends State<T> {
+
+    /**
+     * Returns an equivalent state which uses <code>compiler</code> on the wrapped states, or
+     * this state if there is nothing to compile.
+     */
+    State<T> compile(StateCompiler compiler);
+
+}
@@ -0,0 +1,67 @@
+package net.sourceforge.vrapper.keymap;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable transition table produced by {@link StateCompiler}.
+ * <p>
+ * Plain ASCII keys without modifiers are looked up in an array indexed by character, all other
+ * keys fall back to a hash map. Pressing a key returns a precomputed transition and never
+ * allocates.
+ */
+public class CompiledState<T> implements State<T> {
+
+    private static final int TABLE_SIZE = 128;
+
+    private final Transition<T>[] table;
+    private final Map<KeyStroke, Transition<T>> otherKeys;
+    /** All transitions in insertion order, used to merge this state with other static states. */
+    private final Map<KeyStroke, Transition<T>> transitions;
+
+    @SuppressWarnings("unchecked")
+    CompiledState(Map<KeyStroke, Transition<T>> transitions) {
+        this.transitions = new LinkedHashMap<KeyStroke, Transition<T>>(transitions);
+        this.table = new Transition[TABLE_SIZE];
+        this.otherKeys = new HashMap<KeyStroke, Transition<T>>();
+        for (Map.Entry<KeyStroke, Transition<T>> entry : transitions.entrySet()) {
+            KeyStroke key = entry.getKey();
+            if (isTableKey(key)) {
+                table[key.getCharacter()] = entry.getValue();
+            } else {
+                otherKeys.put(key, entry.getValue());
+            }
+        }
+    }
+
+    public Transition<T> press(KeyStroke key) {
+        if (isTableKey(key)) {
+            return table[key.getCharacter()];
+        }
+        return otherKeys.get(key);
+    }
+
+    public State<T> union(State<T> other) {
+        if (other instanceof EmptyState<?>) {
+            return this;
+        }
+        return new UnionState<T>(this, other);
+    }
+
+    Map<KeyStroke, Transition<T>> getTransitions() {
+        return transitions;
+    }
+
+    /**
+     * Keys which are equal if and only if their characters are equal. Space is left out because
+     * Shift-Space is a distinct key, for all other characters the Shift modifier is ignored.
+     */
+    private static boolean isTableKey(KeyStroke key) {
+        char character = key.getCharacter();
+        return character != KeyStroke.SPECIAL_KEY && character < TABLE_SIZE && character != ' '
+                && key.getSpecialKey() == null && ! key.withCtrlKey() && ! key.withAltKey()
+                && ! key.getModifiers().contains(KeyStroke.Modifier.COMMAND);
+    }
+
+}
@@ -20,6 +20,14 @@ public class ConvertingState<T1, T2> implements State<T1> {
         return null;
     }
 
+    Function<T1, T2> getConvertingFunction() {
+        return converter;
+    }
+
+    State<T2> getWrappedState() {
+        return wrapped;
+    }
+
     public State<T1> union(State<T1> other) {
         if (other instanceof ConvertingState<?, ?>)
         	VrapperLog.debug("TODO: implement ConvertingState's union efficently");
@@ -0,0 +1,177 @@
+package net.sourceforge.vrapper.keymap;
+
+import static net.sourceforge.vrapper.keymap.StateUtils.transitionUnion;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sourceforge.vrapper.utils.Function;
+
+/**
+ * Flattens a graph of keymap states into {@link CompiledState} transition tables where possible.
+ * <p>
+ * Unions are flattened and every run of adjacent static states ({@link HashMapState}s, possibly
+ * wrapped in {@link ConvertingState}s) is merged into a single table, with the values of
+ * converting states converted up front. States which compute their transitions on the fly (like
+ * {@link DynamicState} or counting states) are kept and queried in their original order, so the
+ * compiled graph recognizes exactly the same key sequences. Wrapping states can take part by
+ * implementing {@link CompilableState}.
+ * <p>
+ * A compiler remembers what it compiled, so states shared in the graph are only compiled once.
+ */
+public class StateCompiler {
+
+    private final Map<State<?>, State<?>> compiled = new IdentityHashMap<State<?>, State<?>>();
+
+    @SuppressWarnings("unchecked")
+    public <T> State<T> compile(State<T> state) {
+        if (state == null) {
+            return null;
+        }
+        State<?> result = compiled.get(state);
+        if (result == null) {
+            // Placeholder in case the state can be reached from itself.
+            compiled.put(state, state);
+            result = doCompile(state);
+            compiled.put(state, result);
+        }
+        return (State<T>) result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> State<T> doCompile(State<T> state) {
+        if (state instanceof CompilableState<?>) {
+            return ((CompilableState<T>) state).compile(this);
+        }
+        List<State<T>> leaves = new ArrayList<State<T>>();
+        flatten(state, leaves);
+
+        State<T> result = EmptyState.getInstance();
+        Map<KeyStroke, Transition<T>> run = null;
+        for (State<T> leaf : leaves) {
+            Map<KeyStroke, Transition<T>> transitions = transitionsOf(leaf);
+            if (transitions != null) {
+                if (run == null) {
+                    run = new LinkedHashMap<KeyStroke, Transition<T>>();
+                }
+                for (Map.Entry<KeyStroke, Transition<T>> entry : transitions.entrySet()) {
+                    run.put(entry.getKey(), transitionUnion(run.get(entry.getKey()), entry.getValue()));
+                }
+            } else {
+                if (run != null) {
+                    result = append(result, buildTable(run));
+                    run = null;
+                }
+                result = append(result, compileLeaf(leaf));
+            }
+        }
+        if (run != null) {
+            result = append(result, buildTable(run));
+        }
+        return result;
+    }
+
+    /** Unlike {@link State#union(State)}, this never merges the (compiled) states again. */
+    private static <T> State<T> append(State<T> union, State<T> state) {
+        if (union instanceof EmptyState<?>) {
+            return state;
+        }
+        return new UnionState<T>(union, state);
+    }
+
+    private <T> State<T> buildTable(Map<KeyStroke, Transition<T>> transitions) {
+        Map<KeyStroke, Transition<T>> compiledTransitions =
+                new LinkedHashMap<KeyStroke, Transition<T>>(transitions.size());
+        for (Map.Entry<KeyStroke, Transition<T>> entry : transitions.entrySet()) {
+            Transition<T> transition = entry.getValue();
+            compiledTransitions.put(entry.getKey(), new SimpleTransition<T>(
+                    transition.getValue(), compile(transition.getNextState())));
+        }
+        return new CompiledState<T>(compiledTransitions);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> State<T> compileLeaf(State<T> leaf) {
+        if (leaf instanceof CompilableState<?>) {
+            return compile(leaf);
+        } else if (leaf instanceof ConvertingState<?, ?>) {
+            return compileConverting((ConvertingState<T, ?>) leaf);
+        }
+        return leaf;
+    }
+
+    private <T1, T2> State<T1> compileConverting(ConvertingState<T1, T2> state) {
+        State<T2> wrapped = compile(state.getWrappedState());
+        if (wrapped == state.getWrappedState()) {
+            return state;
+        }
+        return new ConvertingState<T1, T2>(state.getConvertingFunction(), wrapped);
+    }
+
+    /** Collects the members of (nested) unions, pushing converting states into the union. */
+    private <T> void flatten(State<T> state, List<State<T>> leaves) {
+        if (state instanceof EmptyState<?>) {
+            return;
+        } else if (state.getClass() == UnionState.class) {
+            UnionState<T> union = (UnionState<T>) state;
+            flatten(union.state1, leaves);
+            flatten(union.state2, leaves);
+        } else if (state instanceof ConvertingState<?, ?>) {
+            flattenConverting((ConvertingState<T, ?>) state, leaves);
+        } else {
+            leaves.add(state);
+        }
+    }
+
+    private <T1, T2> void flattenConverting(ConvertingState<T1, T2> state, List<State<T1>> leaves) {
+        List<State<T2>> wrappedLeaves = new ArrayList<State<T2>>();
+        flatten(state.getWrappedState(), wrappedLeaves);
+        if (wrappedLeaves.size() == 1 && wrappedLeaves.get(0) == state.getWrappedState()) {
+            leaves.add(state);
+            return;
+        }
+        for (State<T2> wrappedLeaf : wrappedLeaves) {
+            leaves.add(new ConvertingState<T1, T2>(state.getConvertingFunction(), wrappedLeaf));
+        }
+    }
+
+    /** Returns all transitions of a static state or <code>null</code> for any other state. */
+    @SuppressWarnings("unchecked")
+    private <T> Map<KeyStroke, Transition<T>> transitionsOf(State<T> state) {
+        if (state.getClass() == HashMapState.class) {
+            HashMapState<T> hashMapState = (HashMapState<T>) state;
+            Map<KeyStroke, Transition<T>> result = new LinkedHashMap<KeyStroke, Transition<T>>();
+            for (KeyStroke key : hashMapState.supportedKeys()) {
+                result.put(key, hashMapState.press(key));
+            }
+            return result;
+        } else if (state instanceof CompiledState<?>) {
+            return ((CompiledState<T>) state).getTransitions();
+        } else if (state instanceof ConvertingState<?, ?>) {
+            return convertedTransitionsOf((ConvertingState<T, ?>) state);
+        }
+        return null;
+    }
+
+    private <T1, T2> Map<KeyStroke, Transition<T1>> convertedTransitionsOf(ConvertingState<T1, T2> state) {
+        Map<KeyStroke, Transition<T2>> wrapped = transitionsOf(state.getWrappedState());
+        if (wrapped == null) {
+            return null;
+        }
+        Function<T1, T2> converter = state.getConvertingFunction();
+        Map<KeyStroke, Transition<T1>> result = new LinkedHashMap<KeyStroke, Transition<T1>>();
+        for (Map.Entry<KeyStroke, Transition<T2>> entry : wrapped.entrySet()) {
+            Transition<T2> transition = entry.getValue();
+            // Same as ConvertingTransition, except that the value is only converted once.
+            T2 value = transition.getValue();
+            State<T2> nextState = transition.getNextState();
+            result.put(entry.getKey(), new SimpleTransition<T1>(
+                    value == null ? null : converter.call(value),
+                    nextState == null ? null : new ConvertingState<T1, T2>(converter, nextState)));
+        }
+        return result;
+    }
+}
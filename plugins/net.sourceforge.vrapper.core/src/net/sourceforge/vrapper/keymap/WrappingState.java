@@ -7,7 +7,7 @@ import net.sourceforge.vrapper.utils.IdentityFunction;
  * 
  * @author Krzysiek Goj
  */
-public class WrappingState<T> implements State<T> {
+public class WrappingState<T> implements CompilableState<T> {
     
     private final State<Function<T, T>> functions;
     private final State<T> wrapped;
@@ -33,6 +33,8 @@ public class WrappingState<T> implements State<T> {
             Transition<T> wrTrans = wrapped.press(key);
             if (wrTrans == null)
                 return null;
+            if (currentFunction == IdentityFunction.getInstance())
+                return wrTrans;
             return new ConvertingTransition<T, T>(currentFunction, wrTrans.getValue(), wrTrans.getNextState());
         }
         Function<T, T> nextFn = fnTrans.getValue();
@@ -54,4 +56,11 @@ public class WrappingState<T> implements State<T> {
         return new UnionState<T>(this, other);
     }
 
+    public State<T> compile(StateCompiler compiler) {
+        State<T> compiledWrapped = compiler.compile(wrapped);
+        if (compiledWrapped == wrapped)
+            return this;
+        return new WrappingState<T>(currentFunction, functions, compiledWrapped);
+    }
+
 }
@@ -1,13 +1,15 @@
 package net.sourceforge.vrapper.keymap.vim;
 
+import net.sourceforge.vrapper.keymap.CompilableState;
 import net.sourceforge.vrapper.keymap.KeyStroke;
 import net.sourceforge.vrapper.keymap.SimpleTransition;
 import net.sourceforge.vrapper.keymap.State;
+import net.sourceforge.vrapper.keymap.StateCompiler;
 import net.sourceforge.vrapper.keymap.Transition;
 import net.sourceforge.vrapper.vim.commands.Command;
 import net.sourceforge.vrapper.vim.commands.SwitchRegisterCommand;
 
-public class RegisterState implements State<Command> {
+public class RegisterState implements CompilableState<Command> {
 
     private final State<Command> wrappedState;
     private final RegisterSelectState selectState;
@@ -29,6 +31,14 @@ public class RegisterState implements State<Command> {
         return new RegisterState(wrappedState.union(other));
     }
 
+    public State<Command> compile(StateCompiler compiler) {
+        State<Command> compiledState = compiler.compile(wrappedState);
+        if (compiledState == wrappedState) {
+            return this;
+        }
+        return new RegisterState(compiledState);
+    }
+
     public static State<Command> wrap(State<Command> wrapped) {
         return new RegisterState(wrapped);
     }
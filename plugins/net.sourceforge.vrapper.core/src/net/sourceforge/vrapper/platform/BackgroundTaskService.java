@@ -0,0 +1,34 @@
+package net.sourceforge.vrapper.platform;
+
+/**
+ * Runs long tasks, like external programs, without blocking the editor.
+ */
+public interface BackgroundTaskService {
+
+    /**
+     * Runs the task on another thread. The platform shows that the task is running and lets the
+     * user cancel it.
+     */
+    void schedule(Task task);
+
+    /**
+     * Runs the given code on the thread which handles the editor, after pending events.
+     * Background tasks use this to hand their results to the editor.
+     */
+    void runInEditorThread(Runnable runnable);
+
+    /**
+     * Work which is done outside of the editor thread.
+     */
+    interface Task {
+
+        /** Short description shown while the task runs. */
+        String getName();
+
+        /** Does the work. Returns once the task is done or has been cancelled. */
+        void run();
+
+        /** Asks the task to stop as soon as possible. May be called from any thread. */
+        void cancel();
+    }
+}
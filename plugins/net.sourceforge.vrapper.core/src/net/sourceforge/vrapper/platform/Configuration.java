@@ -5,6 +5,7 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -52,6 +53,9 @@ public interface Configuration {
     public final static String SET_DELIMITER = ",";
     public final static String SET_VALUE_ITEM = ":";
 
+        /** Hands out the slots, in the order in which options are created. */
+        private static final AtomicInteger slotCount = new AtomicInteger();
+
         private final String id;
         private final String[] alias;
         private final T defaultValue;
@@ -59,6 +63,7 @@ public interface Configuration {
         private Set<String> legalValues = null;
         private Pattern legalRegexPattern;
         private final OptionScope scope;
+        private final int slot;
 
         private Option(String id, T defaultValue, Set<String> legalValues, String...alias) {
             this(id, OptionScope.DEFAULT, defaultValue, legalValues, alias);
@@ -72,6 +77,7 @@ public interface Configuration {
             allNames.add(id);
             allNames.addAll(Arrays.asList(alias));
             this.scope = scope;
+            this.slot = slotCount.getAndIncrement();
         }
 
         private Option(String id, OptionScope scope, T defaultValue,
@@ -84,6 +90,7 @@ public interface Configuration {
             allNames.add(id);
             allNames.addAll(Arrays.asList(alias));
             this.scope = scope;
+            this.slot = slotCount.getAndIncrement();
         }
 
         private Option(String id, OptionScope scope, T defaultValue,
@@ -96,6 +103,7 @@ public interface Configuration {
             allNames.add(id);
             allNames.addAll(Arrays.asList(alias));
             this.scope = scope;
+            this.slot = slotCount.getAndIncrement();
         }
 
 		public static final Option<Boolean> bool(String id, boolean defaultValue, String... alias) {
@@ -203,6 +211,19 @@ public interface Configuration {
             return scope;
         }
 
+        /**
+         * @return a number unique to this option, smaller than {@link #getSlotCount()}. Options
+         *     are numbered densely so that a configuration can cache their values in an array.
+         */
+        public int getSlot() {
+            return slot;
+        }
+
+        /** @return the number of options created so far. */
+        public static int getSlotCount() {
+            return slotCount.get();
+        }
+
 
         @Override
         public String toString() {
@@ -48,6 +48,8 @@ public interface HighlightingService {
      * calling {@link #highlightRegion(String, String, TextRange)}.
      * The implementation should do its best to make the order of the return value match the order
      * of the input values.
+     * The regions may be painted without creating annotations, the returned handles can only be
+     * passed back to this service.
      * @param type Eclipse annotation type.
      * @param name highlighting name.
      * @param region range of text to highlight.
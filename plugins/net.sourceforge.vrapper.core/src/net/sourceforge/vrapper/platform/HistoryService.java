@@ -11,4 +11,9 @@ public interface HistoryService {
 	void unlock();
 	void lock(String name);
 	void unlock(String name);
+	/**
+	 * @return whether a command is combining its changes into one undo step, e.g. a macro,
+	 *     <code>:normal</code>, <code>:g</code> or a counted command.
+	 */
+	boolean isLocked();
 }
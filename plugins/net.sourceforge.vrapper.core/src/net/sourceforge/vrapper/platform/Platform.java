@@ -26,4 +26,5 @@ public interface Platform {
     HighlightingService getHighlightingService();
     String getEditorType();
     BufferAndTabService getBufferAndTabService();
+    BackgroundTaskService getBackgroundTaskService();
 }
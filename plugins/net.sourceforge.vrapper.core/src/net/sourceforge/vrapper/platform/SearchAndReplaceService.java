@@ -3,6 +3,7 @@ package net.sourceforge.vrapper.platform;
 import net.sourceforge.vrapper.utils.Position;
 import net.sourceforge.vrapper.utils.Search;
 import net.sourceforge.vrapper.utils.SearchResult;
+import net.sourceforge.vrapper.utils.SubstitutionResult;
 
 public interface SearchAndReplaceService {
 
@@ -28,6 +29,20 @@ public interface SearchAndReplaceService {
 	 */
     int replace(int start, int end, String toFind, String replace, String flags);
 
+    /**
+     * Perform a search and replace on every line of a line range, like :%s does.
+     * Each line is searched on its own (so without 'g' only the first match of a
+     * line is replaced), but the pattern is compiled once and all replacements are
+     * applied to the document as a single edit.
+     * @param startLine first model line to search
+     * @param endLine last model line to search (inclusive)
+     * @param toFind String to find on each line
+     * @param replace String to replace toFind with
+     * @param flags Regex flags like 'g' for global and 'i' for insensitive case
+     * @return count of replacements performed and of lines they were performed on
+     */
+    SubstitutionResult replaceLines(int startLine, int endLine, String toFind, String replace, String flags);
+
     /**
      * Perform a single text substitution (with regex support)
      * @param start - model index to start looking
@@ -4,11 +4,18 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.sourceforge.vrapper.vim.DefaultConfigProvider;
 
 public class SimpleConfiguration implements Configuration {
 
+    /**
+     * Counts changes to any configuration. Caches of option values stay valid as long as this
+     * count doesn't change.
+     */
+    private static final AtomicInteger modificationCount = new AtomicInteger();
+
     private String newLine = NewLine.SYSTEM.nl;
     private final Map<Option<?>, Object> vars = new HashMap<Option<?>, Object>();
     private final List<DefaultConfigProvider> defaultConfigProviders;
@@ -45,6 +52,20 @@ public class SimpleConfiguration implements Configuration {
             throw new NullPointerException("value must not be null");
         }
         vars.put(key, value);
+        modificationCount.incrementAndGet();
+    }
+
+    /** @return a number which changes whenever an option is set in any configuration. */
+    public static int getModificationCount() {
+        return modificationCount.get();
+    }
+
+    /**
+     * Invalidates all cached option values. Must be called when a {@link DefaultConfigProvider}
+     * would now return a different value, e.g. because an Eclipse preference changed.
+     */
+    public static void defaultsChanged() {
+        modificationCount.incrementAndGet();
     }
 
     /* (non-Javadoc)
@@ -0,0 +1,209 @@
+package net.sourceforge.vrapper.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Set of [start, end) offset intervals which can be queried for the intervals overlapping a
+ * range in O(log n + k).
+ * <p>
+ * The intervals are kept in an array sorted by start offset. The array is read as a balanced
+ * binary tree, the middle element of each range being the root of that range, and every node
+ * knows the largest end offset below it. A query skips each subtree which ends before the range.
+ * <p>
+ * Changes are collected and the tree is rebuilt when it is queried next, so that adding or
+ * removing many intervals at once costs one sort.
+ */
+public class IntervalTree<T> {
+
+    private static final Comparator<Interval<?>> BY_START = new Comparator<Interval<?>>() {
+        public int compare(Interval<?> a, Interval<?> b) {
+            return a.start < b.start ? -1 : a.start == b.start ? 0 : 1;
+        }
+    };
+
+    private Interval<?>[] intervals = new Interval<?>[0];
+    private int[] maxEnd = new int[0];
+    private final List<Interval<T>> added = new ArrayList<Interval<T>>();
+    private int removed;
+    private boolean unsorted;
+    private boolean endsChanged;
+
+    /** @return the handle of the new interval. */
+    public Interval<T> add(int start, int end, T value) {
+        Interval<T> interval = new Interval<T>(start, end, value);
+        added.add(interval);
+        return interval;
+    }
+
+    /** Removes an interval. Does nothing if it was removed already. */
+    public void remove(Interval<T> interval) {
+        if ( ! interval.removed) {
+            interval.removed = true;
+            removed++;
+        }
+    }
+
+    public void clear() {
+        for (Interval<?> interval : intervals) {
+            interval.removed = true;
+        }
+        for (Interval<T> interval : added) {
+            interval.removed = true;
+        }
+        intervals = new Interval<?>[0];
+        maxEnd = new int[0];
+        added.clear();
+        removed = 0;
+    }
+
+    public int size() {
+        return intervals.length + added.size() - removed;
+    }
+
+    /**
+     * Moves the intervals after a text change which replaced <code>removedLength</code>
+     * characters at <code>offset</code> with <code>insertedLength</code> characters.
+     * Boundaries inside the replaced text go to its edges, intervals left empty are removed.
+     */
+    public void update(int offset, int removedLength, int insertedLength) {
+        boolean any = false;
+        for (Interval<?> interval : intervals) {
+            any |= move(interval, offset, removedLength, insertedLength);
+        }
+        for (Interval<T> interval : added) {
+            any |= move(interval, offset, removedLength, insertedLength);
+        }
+        // Moving keeps the order of the starts, only the end offsets of the tree change.
+        endsChanged |= any;
+    }
+
+    private boolean move(Interval<?> interval, int offset, int removedLength, int insertedLength) {
+        if (interval.removed || interval.end < offset) {
+            return false;
+        }
+        int removedEnd = offset + removedLength;
+        int delta = insertedLength - removedLength;
+        if (interval.start >= removedEnd) {
+            interval.start += delta;
+        } else if (interval.start >= offset) {
+            interval.start = offset + insertedLength;
+        }
+        if (interval.end >= removedEnd && interval.end > offset) {
+            interval.end += delta;
+        } else if (interval.end > offset) {
+            interval.end = offset;
+        }
+        if (interval.end <= interval.start) {
+            interval.end = interval.start;
+            if ( ! interval.removed) {
+                interval.removed = true;
+                removed++;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the intervals which share at least one offset with [from, to), sorted by start.
+     */
+    @SuppressWarnings("unchecked")
+    public List<Interval<T>> findOverlapping(int from, int to) {
+        rebuild();
+        List<Interval<?>> result = new ArrayList<Interval<?>>();
+        find(0, intervals.length, from, to, result);
+        return (List<Interval<T>>) (List<?>) result;
+    }
+
+    private void find(int low, int high, int from, int to, List<Interval<?>> result) {
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (maxEnd[mid] <= from) {
+                return;
+            }
+            find(low, mid, from, to, result);
+            Interval<?> interval = intervals[mid];
+            if (interval.start >= to) {
+                return;
+            }
+            if (interval.end > from) {
+                result.add(interval);
+            }
+            low = mid + 1;
+        }
+    }
+
+    private void rebuild() {
+        if (removed > 0 || ! added.isEmpty()) {
+            List<Interval<?>> kept = new ArrayList<Interval<?>>(size());
+            for (Interval<?> interval : intervals) {
+                if ( ! interval.removed) {
+                    kept.add(interval);
+                }
+            }
+            for (Interval<T> interval : added) {
+                if ( ! interval.removed) {
+                    kept.add(interval);
+                    unsorted = true;
+                }
+            }
+            added.clear();
+            removed = 0;
+            intervals = kept.toArray(new Interval<?>[kept.size()]);
+            maxEnd = new int[intervals.length];
+            endsChanged = true;
+        }
+        if (unsorted) {
+            Arrays.sort(intervals, BY_START);
+            unsorted = false;
+        }
+        if (endsChanged) {
+            computeMaxEnd(0, intervals.length);
+            endsChanged = false;
+        }
+    }
+
+    private int computeMaxEnd(int low, int high) {
+        if (low >= high) {
+            return Integer.MIN_VALUE;
+        }
+        int mid = (low + high) >>> 1;
+        int max = Math.max(intervals[mid].end,
+                Math.max(computeMaxEnd(low, mid), computeMaxEnd(mid + 1, high)));
+        maxEnd[mid] = max;
+        return max;
+    }
+
+    /** An interval in the tree, also used as its handle. */
+    public static class Interval<T> {
+        private int start;
+        private int end;
+        private final T value;
+        private boolean removed;
+
+        private Interval(int start, int end, T value) {
+            this.start = start;
+            this.end = end;
+            this.value = value;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        /** @return whether the interval was removed, or left empty by a text change. */
+        public boolean isRemoved() {
+            return removed;
+        }
+    }
+}
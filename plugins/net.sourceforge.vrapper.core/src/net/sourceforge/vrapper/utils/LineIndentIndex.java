@@ -0,0 +1,156 @@
+package net.sourceforge.vrapper.utils;
+
+import net.sourceforge.vrapper.platform.TextContent;
+
+/**
+ * Remembers the indentation of each line of a {@link TextContent} and whether it is empty or
+ * blank, so that indent and paragraph text objects and motions don't read every line's text
+ * again on each use.
+ * <p>
+ * The index is built in one pass on first use. Whoever sees the changes to the text reports
+ * them through {@link #linesChanged(int, int, int)}; only the changed lines are measured again,
+ * and only when they are asked for. Text contents which maintain an index this way implement
+ * {@link Provider}; for all others {@link #of(TextContent)} returns a fresh index.
+ */
+public class LineIndentIndex {
+
+    /** Implemented by text contents which keep an index up to date with their changes. */
+    public interface Provider {
+        LineIndentIndex getLineIndentIndex();
+    }
+
+    private static final int UNKNOWN = -1;
+    private static final int EMPTY = 1;
+    private static final int BLANK = 2;
+    private static final int INDENT_SHIFT = 2;
+
+    private final TextContent content;
+    /** Indent length shifted by {@link #INDENT_SHIFT} and flags per line, or {@link #UNKNOWN}. */
+    private int[] lines;
+
+    public LineIndentIndex(TextContent content) {
+        this.content = content;
+    }
+
+    /** @return the index kept by <code>content</code>, or a new one if it doesn't keep any. */
+    public static LineIndentIndex of(TextContent content) {
+        if (content instanceof Provider) {
+            return ((Provider) content).getLineIndentIndex();
+        }
+        return new LineIndentIndex(content);
+    }
+
+    /** @return the number of whitespace characters at the start of the line. */
+    public int getIndent(int lineNo) {
+        return get(lineNo) >> INDENT_SHIFT;
+    }
+
+    /** @return whether the line has no characters at all. */
+    public boolean isEmpty(int lineNo) {
+        return (get(lineNo) & EMPTY) != 0;
+    }
+
+    /** @return whether the line consists of whitespace only, like {@link VimUtils#isLineBlank}. */
+    public boolean isBlank(int lineNo) {
+        return (get(lineNo) & BLANK) != 0;
+    }
+
+    /**
+     * Finds the first line which is not blank and is indented less than <code>indent</code>.
+     *
+     * @param fromLine line to start at, which is checked itself.
+     * @param step 1 to look downwards, -1 to look upwards.
+     * @return the line number, or -1 if there is no such line.
+     */
+    public int findLessIndented(int fromLine, int step, int indent) {
+        int count = prepare();
+        for (int lineNo = fromLine; lineNo >= 0 && lineNo < count; lineNo += step) {
+            int line = get(lineNo);
+            if ((line & BLANK) == 0 && line >> INDENT_SHIFT < indent) {
+                return lineNo;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Tells the index that the lines from <code>firstLine</code> up to
+     * <code>firstLine + removedLines</code> were replaced by
+     * <code>addedLines + 1</code> new lines.
+     *
+     * @param removedLines number of line delimiters in the replaced text.
+     * @param addedLines number of line delimiters in the new text.
+     */
+    public void linesChanged(int firstLine, int removedLines, int addedLines) {
+        if (lines == null) {
+            return;
+        }
+        int oldCount = lines.length;
+        if (firstLine < 0 || firstLine + removedLines >= oldCount) {
+            clear();
+            return;
+        }
+        int[] updated = lines;
+        int newCount = oldCount - removedLines + addedLines;
+        if (newCount != oldCount) {
+            updated = new int[newCount];
+            System.arraycopy(lines, 0, updated, 0, firstLine);
+            int tail = firstLine + removedLines + 1;
+            System.arraycopy(lines, tail, updated, firstLine + addedLines + 1, oldCount - tail);
+        }
+        for (int i = firstLine; i <= firstLine + addedLines; i++) {
+            updated[i] = UNKNOWN;
+        }
+        lines = updated;
+    }
+
+    /** Forgets everything, the index is built again on next use. */
+    public void clear() {
+        lines = null;
+    }
+
+    private int get(int lineNo) {
+        prepare();
+        int line = lines[lineNo];
+        if (line == UNKNOWN) {
+            LineInformation info = content.getLineInformation(lineNo);
+            TextContentCursor cursor = new TextContentCursor(content, info.getBeginOffset(),
+                    Math.max(1, Math.min(info.getLength(), TextContentCursor.DEFAULT_CHUNK_SIZE)));
+            line = measure(cursor, info);
+            lines[lineNo] = line;
+        }
+        return line;
+    }
+
+    /** Builds the index if needed and returns the number of lines. */
+    private int prepare() {
+        int count = content.getNumberOfLines();
+        // A change nobody told us about: don't trust any of it.
+        if (lines == null || lines.length != count) {
+            lines = new int[count];
+            TextContentCursor cursor = new TextContentCursor(content);
+            for (int i = 0; i < count; i++) {
+                lines[i] = measure(cursor, content.getLineInformation(i));
+            }
+        }
+        return count;
+    }
+
+    private static int measure(TextContentCursor cursor, LineInformation info) {
+        int begin = info.getBeginOffset();
+        int end = info.getEndOffset();
+        int index = begin;
+        while (index < end && VimUtils.isWhiteSpace(cursor.charAt(index))) {
+            index++;
+        }
+        int indent = index - begin;
+        // Blank the way String.trim() sees it, as VimUtils.isLineBlank does.
+        boolean blank = true;
+        while (index < end && blank) {
+            blank = cursor.charAt(index) <= ' ';
+            index++;
+        }
+        int flags = (info.getLength() == 0 ? EMPTY : 0) | (blank ? BLANK : 0);
+        return indent << INDENT_SHIFT | flags;
+    }
+}
@@ -2,9 +2,15 @@ package net.sourceforge.vrapper.utils;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.StreamTokenizer;
 import java.io.StringReader;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
+
+import net.sourceforge.vrapper.platform.BackgroundTaskService;
 
 public abstract class ProcessHelper {
 
@@ -39,4 +45,190 @@ public abstract class ProcessHelper {
         return r.toString();
     }
 
+    /**
+     * Runs a program without blocking the editor. <code>input</code> is written to the
+     * program's stdin while its output is read, so programs which write before they have read
+     * all of their input don't get stuck on a full pipe.
+     *
+     * @param input text for stdin, or <code>null</code> to close stdin right away.
+     * @param listener called in the editor thread once the program is done.
+     */
+    public static void runInBackground(BackgroundTaskService service, String name,
+            String[] command, String input, ProcessListener listener) {
+        service.schedule(new ProcessTask(service, name, command, input, listener));
+    }
+
+    /**
+     * Runs a program like {@link #runInBackground} does, but waits for it and calls the listener
+     * before returning. For commands whose result the next command depends on.
+     */
+    public static void run(String name, String[] command, String input,
+            ProcessListener listener) {
+        new ProcessTask(null, name, command, input, listener).run();
+    }
+
+    /**
+     * Receives the result of {@link ProcessHelper#runInBackground} or {@link ProcessHelper#run},
+     * in the editor thread.
+     */
+    public interface ProcessListener {
+
+        /** The program exited with code 0. */
+        void finished(String output);
+
+        /** The program exited with another code, <code>errors</code> is what it wrote to stderr. */
+        void failed(int exitCode, String errors);
+
+        /**
+         * The program couldn't be run, or was cancelled, in which case the exception is a
+         * {@link CancellationException}.
+         */
+        void aborted(Exception e);
+    }
+
+    private static class ProcessTask implements BackgroundTaskService.Task {
+
+        private static final int WRITE_CHUNK_SIZE = 8192;
+
+        /** Service delivering the result, or <code>null</code> to call the listener directly. */
+        private final BackgroundTaskService service;
+        private final String name;
+        private final String[] command;
+        private final String input;
+        private final ProcessListener listener;
+        private Process process;
+        private volatile boolean cancelled;
+
+        public ProcessTask(BackgroundTaskService service, String name, String[] command,
+                String input, ProcessListener listener) {
+            this.service = service;
+            this.name = name;
+            this.command = command;
+            this.input = input;
+            this.listener = listener;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            synchronized (this) {
+                if (process != null) {
+                    process.destroy();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                Process p;
+                synchronized (this) {
+                    if (cancelled) {
+                        throw new CancellationException(name + " cancelled");
+                    }
+                    p = process = start(command);
+                }
+                Thread writer = startWriter(p);
+                StreamReaderThread errors = new StreamReaderThread(p, name);
+                errors.start();
+                String output = ReadProcessOutput(new BufferedReader(
+                        new InputStreamReader(p.getInputStream())));
+                final int exitCode = p.waitFor();
+                writer.join();
+                errors.join();
+                if (cancelled) {
+                    throw new CancellationException(name + " cancelled");
+                }
+                if (exitCode == 0) {
+                    deliverOutput(output);
+                } else {
+                    deliverErrors(exitCode, errors.getText());
+                }
+            } catch (final Exception e) {
+                deliver(new Runnable() {
+                    public void run() {
+                        listener.aborted(e);
+                    }
+                });
+            }
+        }
+
+        private Thread startWriter(final Process p) {
+            Thread writer = new Thread(name + " (stdin)") {
+                public void run() {
+                    Writer stdin = new OutputStreamWriter(p.getOutputStream());
+                    try {
+                        if (input != null) {
+                            for (int i = 0; i < input.length() && ! cancelled; i += WRITE_CHUNK_SIZE) {
+                                stdin.write(input, i, Math.min(WRITE_CHUNK_SIZE, input.length() - i));
+                            }
+                        }
+                        stdin.close();
+                    } catch (IOException e) {
+                        // The program exited without reading all of its input. Its exit code
+                        // tells whether that is an error.
+                    }
+                }
+            };
+            writer.setDaemon(true);
+            writer.start();
+            return writer;
+        }
+
+        private void deliver(Runnable result) {
+            if (service == null) {
+                result.run();
+            } else {
+                service.runInEditorThread(result);
+            }
+        }
+
+        private void deliverOutput(final String output) {
+            deliver(new Runnable() {
+                public void run() {
+                    listener.finished(output);
+                }
+            });
+        }
+
+        private void deliverErrors(final int exitCode, final String errors) {
+            deliver(new Runnable() {
+                public void run() {
+                    listener.failed(exitCode, errors);
+                }
+            });
+        }
+    }
+
+    /** Collects stderr so that a chatty program doesn't block on it. */
+    private static class StreamReaderThread extends Thread {
+
+        private final Process process;
+        private String text = "";
+
+        public StreamReaderThread(Process process, String name) {
+            super(name + " (stderr)");
+            this.process = process;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                text = ReadProcessOutput(new BufferedReader(
+                        new InputStreamReader(process.getErrorStream())));
+            } catch (IOException e) {
+                // Errors are only used for the message, use what was read.
+            }
+        }
+
+        public String getText() {
+            return text;
+        }
+    }
 }
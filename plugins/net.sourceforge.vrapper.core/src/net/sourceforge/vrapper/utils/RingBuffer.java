@@ -0,0 +1,116 @@
+package net.sourceforge.vrapper.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * List with a fixed capacity. Adding to a full buffer drops the oldest element, so the memory
+ * used doesn't depend on how many elements were ever added. Index 0 is the oldest element.
+ */
+public class RingBuffer<T> {
+
+    private Object[] elements;
+    /** Array index of the oldest element. */
+    private int head;
+    private int size;
+
+    public RingBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        elements = new Object[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int capacity() {
+        return elements.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        checkIndex(index);
+        return (T) elements[slot(index)];
+    }
+
+    public void set(int index, T element) {
+        checkIndex(index);
+        elements[slot(index)] = element;
+    }
+
+    /**
+     * Appends an element as the newest one.
+     * @return the oldest element if it had to make room, <code>null</code> otherwise.
+     */
+    public T add(T element) {
+        T dropped = null;
+        if (size == elements.length) {
+            dropped = get(0);
+            head = slot(1);
+            size--;
+        }
+        elements[slot(size)] = element;
+        size++;
+        return dropped;
+    }
+
+    /** Removes the element at the given index, later elements move down by one. */
+    public T remove(int index) {
+        T removed = get(index);
+        if (index == 0) {
+            elements[head] = null;
+            head = slot(1);
+            size--;
+            return removed;
+        }
+        for (int i = index; i < size - 1; i++) {
+            elements[slot(i)] = elements[slot(i + 1)];
+        }
+        elements[slot(size - 1)] = null;
+        size--;
+        return removed;
+    }
+
+    /**
+     * Changes the capacity, keeping the newest elements.
+     * @return the oldest elements which didn't fit, oldest first.
+     */
+    public List<T> setCapacity(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        List<T> dropped = new ArrayList<T>();
+        while (size > capacity) {
+            dropped.add(remove(0));
+        }
+        Object[] resized = new Object[capacity];
+        for (int i = 0; i < size; i++) {
+            resized[i] = elements[slot(i)];
+        }
+        elements = resized;
+        head = 0;
+        return dropped;
+    }
+
+    public void clear() {
+        elements = new Object[elements.length];
+        head = 0;
+        size = 0;
+    }
+
+    private int slot(int index) {
+        return (head + index) % elements.length;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package net.sourceforge.vrapper.utils;
+
+/**
+ * Outcome of a substitution over a range of lines: how many matches were
+ * replaced (or counted, with the 'n' flag) and on how many lines.
+ */
+public class SubstitutionResult {
+
+    private final int replaceCount;
+    private final int lineCount;
+
+    public SubstitutionResult(int replaceCount, int lineCount) {
+        super();
+        this.replaceCount = replaceCount;
+        this.lineCount = lineCount;
+    }
+
+    public int getReplaceCount() {
+        return replaceCount;
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+}
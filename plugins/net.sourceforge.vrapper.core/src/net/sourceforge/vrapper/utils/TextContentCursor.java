@@ -0,0 +1,112 @@
+package net.sourceforge.vrapper.utils;
+
+import net.sourceforge.vrapper.platform.TextContent;
+
+/**
+ * Reads a {@link TextContent} character by character in either direction.
+ * <p>
+ * Characters are fetched in chunks, so a motion scanning the text costs one
+ * {@link TextContent#getText(int, int)} call per chunk instead of one per character. The
+ * cursor does not notice changes to the text; create a new one after modifying it.
+ */
+public class TextContentCursor {
+
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+    private final TextContent content;
+    private final int length;
+    private final int chunkSize;
+
+    /** Cached text and the offset of its first character in the content. */
+    private String buffer = "";
+    private int bufferStart;
+
+    private int position;
+
+    public TextContentCursor(TextContent content) {
+        this(content, 0, DEFAULT_CHUNK_SIZE);
+    }
+
+    public TextContentCursor(TextContent content, int position) {
+        this(content, position, DEFAULT_CHUNK_SIZE);
+    }
+
+    public TextContentCursor(TextContent content, int position, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunk size must be positive: " + chunkSize);
+        }
+        this.content = content;
+        this.length = content.getTextLength();
+        this.chunkSize = chunkSize;
+        this.position = position;
+    }
+
+    /**
+     * Returns the character at the given offset without moving the cursor.
+     *
+     * @throws IndexOutOfBoundsException if the offset is not inside the text.
+     */
+    public char charAt(int offset) {
+        int index = offset - bufferStart;
+        if (index < 0 || index >= buffer.length()) {
+            fill(offset);
+            index = offset - bufferStart;
+        }
+        return buffer.charAt(index);
+    }
+
+    /** @return the character at the cursor position. */
+    public char current() {
+        return charAt(position);
+    }
+
+    /** Moves the cursor one character forward and returns the character there. */
+    public char next() {
+        return charAt(++position);
+    }
+
+    /** Moves the cursor one character back and returns the character there. */
+    public char previous() {
+        return charAt(--position);
+    }
+
+    public boolean hasNext() {
+        return position + 1 < length;
+    }
+
+    public boolean hasPrevious() {
+        return position > 0;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public void setPosition(int position) {
+        this.position = position;
+    }
+
+    /** @return length of the text when the cursor was created. */
+    public int getTextLength() {
+        return length;
+    }
+
+    /**
+     * Loads the chunk containing the given offset. When moving backwards the chunk ends at the
+     * offset, otherwise it starts there, so that a scan in either direction refills rarely.
+     */
+    private void fill(int offset) {
+        if (offset < 0 || offset >= length) {
+            throw new IndexOutOfBoundsException("offset " + offset + " outside of text length "
+                    + length);
+        }
+        int start;
+        if (offset < bufferStart) {
+            start = Math.max(0, offset - chunkSize + 1);
+        } else {
+            start = offset;
+        }
+        buffer = content.getText(start, Math.min(chunkSize, length - start));
+        bufferStart = start;
+    }
+}
@@ -63,6 +63,21 @@ public class VimUtils {
         return VimConstants.WHITESPACE.contains(s);
     }
 
+    /**
+     * @return whether c is one of the characters in {@link VimConstants#WHITESPACE}.
+     */
+    public static boolean isWhiteSpace(final char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    /**
+     * @return a cursor reading at most one line at a time, for scanning within the given line.
+     */
+    private static TextContentCursor lineCursor(final TextContent content, final LineInformation line) {
+        return new TextContentCursor(content, line.getBeginOffset(),
+                Math.max(1, Math.min(line.getLength(), TextContentCursor.DEFAULT_CHUNK_SIZE)));
+    }
+
     /**
      * @param line
      *            a line in the text.
@@ -71,9 +86,9 @@ public class VimUtils {
     public static int getFirstNonWhiteSpaceOffset(final TextContent content, final LineInformation line) {
         int index = line.getBeginOffset();
         final int end = line.getEndOffset();
+        final TextContentCursor cursor = lineCursor(content, line);
         while (index < end) {
-            final String s = content.getText(index, 1);
-            if (!isWhiteSpace(s)) {
+            if (!isWhiteSpace(cursor.charAt(index))) {
                 break;
             }
             index += 1;
@@ -92,9 +107,9 @@ public class VimUtils {
         }
         int index = line.getEndOffset() - 1;
         final int begin = line.getBeginOffset();
+        final TextContentCursor cursor = lineCursor(content, line);
         while (index > begin) {
-            final String s = content.getText(index, 1);
-            if (!isWhiteSpace(s)) {
+            if (!isWhiteSpace(cursor.charAt(index))) {
                 break;
             }
             index--;
@@ -110,6 +125,10 @@ public class VimUtils {
      * @return the whitespace at the begin of the given line.
      */
     public static String getIndent(final TextContent content, final LineInformation line) {
+        if (content instanceof LineIndentIndex.Provider) {
+            final LineIndentIndex index = ((LineIndentIndex.Provider) content).getLineIndentIndex();
+            return content.getText(line.getBeginOffset(), index.getIndent(line.getNumber()));
+        }
         final int offset = getFirstNonWhiteSpaceOffset(content, line);
         return content.getText(line.getBeginOffset(), offset - line.getBeginOffset());
     }
@@ -139,13 +158,12 @@ public class VimUtils {
         int max = line.getEndOffset();
         int first = -1;
         int last = -1;
-        String s;
         boolean found = false;
         String keywords = wholeWord ? "\\S" : editorAdaptor.getConfiguration().get(Options.KEYWORDS);
+        TextContentCursor cursor = lineCursor(p, line);
 
         if (index < max) {
-            s = p.getText(index, 1);
-            if (Utils.characterType(s.charAt(0), keywords) == Utils.WORD) {
+            if (Utils.characterType(cursor.charAt(index), keywords) == Utils.WORD) {
                 found = true;
                 first = index;
                 last = index;
@@ -153,8 +171,7 @@ public class VimUtils {
         }
         while (index < max-1) {
             index += 1;
-            s = p.getText(index, 1);
-            if(Utils.characterType(s.charAt(0), keywords) == Utils.WORD) {
+            if(Utils.characterType(cursor.charAt(index), keywords) == Utils.WORD) {
                 last = index;
                 if(!found) {
                     first = index;
@@ -168,8 +185,7 @@ public class VimUtils {
             index = first;
             while (index > min) {
                 index -= 1;
-                s = p.getText(index, 1);
-                if(Utils.characterType(s.charAt(0), keywords) == Utils.WORD) {
+                if(Utils.characterType(cursor.charAt(index), keywords) == Utils.WORD) {
                     first = index;
                 } else {
                     break;
@@ -248,6 +264,9 @@ public class VimUtils {
      * @return true, if line contains only whitespace characters
      */
     public static boolean isLineBlank(final TextContent content, final int lineNo) {
+        if (content instanceof LineIndentIndex.Provider) {
+            return ((LineIndentIndex.Provider) content).getLineIndentIndex().isBlank(lineNo);
+        }
         final LineInformation line = content.getLineInformation(lineNo);
         return VimUtils.isBlank(content.getText(line.getBeginOffset(), line.getLength()));
     }
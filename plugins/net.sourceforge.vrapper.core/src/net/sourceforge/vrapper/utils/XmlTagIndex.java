@@ -0,0 +1,188 @@
+package net.sourceforge.vrapper.utils;
+
+import java.util.Arrays;
+
+import net.sourceforge.vrapper.platform.TextContent;
+
+/**
+ * The XML tags of a text, found in one pass from its start, for the tag text objects.
+ * <p>
+ * A tag is what the old <code>XML_TAG_REGEX</code> of the text objects matched: a
+ * <code>&lt;</code> not followed by <code>%</code> or <code>!</code>, up to 1000 characters
+ * without a bare <code>&lt;</code> (JSP's <code>&lt;%</code> is allowed), and the last
+ * <code>&gt;</code> within them which doesn't follow <code>%</code> or <code>/</code>. Empty
+ * tags, comments and JSP blocks are therefore skipped.
+ * <p>
+ * The index is a snapshot. Text contents which can tell when their text changed implement
+ * {@link Provider} and hand out the same index until then; for all others
+ * {@link #of(TextContent)} tokenizes the text again.
+ */
+public class XmlTagIndex {
+
+    /** Implemented by text contents which keep an index until their text changes. */
+    public interface Provider {
+        XmlTagIndex getXmlTagIndex();
+    }
+
+    /** Most characters between <code>&lt;</code> and <code>&gt;</code> of a tag. */
+    private static final int MAX_TAG_BODY = 1000;
+
+    private final String text;
+    private int[] starts = new int[64];
+    private int[] ends = new int[64];
+    private String[] names;
+    private int count;
+
+    /** Tags remembered by {@link #rememberEnclosingTags}, and the lookup they were found for. */
+    private int enclosingOffset = -1;
+    private int enclosingCount;
+    private int[] enclosingTags;
+
+    public XmlTagIndex(String text) {
+        this.text = text;
+        tokenize();
+        names = new String[count];
+    }
+
+    /** @return the index kept by <code>content</code>, or a new one if it doesn't keep any. */
+    public static XmlTagIndex of(TextContent content) {
+        if (content instanceof Provider) {
+            return ((Provider) content).getXmlTagIndex();
+        }
+        return new XmlTagIndex(content.getText(0, content.getTextLength()));
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /** @return offset of the <code>&lt;</code> of the tag. */
+    public int getStart(int tag) {
+        return starts[tag];
+    }
+
+    /** @return offset after the <code>&gt;</code> of the tag. */
+    public int getEnd(int tag) {
+        return ends[tag];
+    }
+
+    public boolean isCloseTag(int tag) {
+        return text.startsWith("</", starts[tag]);
+    }
+
+    /**
+     * @return the tag's name: the characters after <code>&lt;</code> or <code>&lt;/</code> up to
+     *     the first whitespace, but not its final <code>&gt;</code>.
+     */
+    public String getName(int tag) {
+        String name = names[tag];
+        if (name == null) {
+            int begin = starts[tag] + (isCloseTag(tag) ? 2 : 1);
+            int end = begin;
+            int last = ends[tag] - 1;
+            while (end < last && ! isSpace(text.charAt(end))) {
+                end++;
+            }
+            name = text.substring(begin, end);
+            names[tag] = name;
+        }
+        return name;
+    }
+
+    /** @return the first tag starting at <code>offset</code> or later, or -1. */
+    public int firstStartingAt(int offset) {
+        int i = Arrays.binarySearch(starts, 0, count, offset);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return i < count ? i : -1;
+    }
+
+    /** @return the last tag ending at <code>offset</code> or before, or -1. */
+    public int lastEndingAt(int offset) {
+        int i = Arrays.binarySearch(ends, 0, count, offset);
+        if (i < 0) {
+            i = -i - 2;
+        }
+        return i;
+    }
+
+    /**
+     * Remembers the open and close tag which the tag text object found around
+     * <code>offset</code>, so that looking up its other delimiter doesn't search again.
+     */
+    public void rememberEnclosingTags(int offset, int count, int openTag, int closeTag) {
+        enclosingOffset = offset;
+        enclosingCount = count;
+        enclosingTags = new int[] { openTag, closeTag };
+    }
+
+    /**
+     * @return the open and close tag remembered for <code>offset</code> and <code>count</code>,
+     *     or <code>null</code>.
+     */
+    public int[] getEnclosingTags(int offset, int count) {
+        if (enclosingTags == null || offset != enclosingOffset || count != enclosingCount) {
+            return null;
+        }
+        return enclosingTags;
+    }
+
+    private void tokenize() {
+        int length = text.length();
+        int i = text.indexOf('<');
+        while (i >= 0 && i + 1 < length) {
+            char next = text.charAt(i + 1);
+            int end = -1;
+            if (next != '%' && next != '!') {
+                end = findTagEnd(i);
+            }
+            if (end < 0) {
+                i = text.indexOf('<', i + 1);
+            } else {
+                add(i, end);
+                i = text.indexOf('<', end);
+            }
+        }
+    }
+
+    /** @return offset after the closing <code>&gt;</code> of a tag starting at start, or -1. */
+    private int findTagEnd(int start) {
+        int length = text.length();
+        int limit = Math.min(length - 1, start + 1 + MAX_TAG_BODY);
+        // The body can't contain a '<' unless it opens a JSP block.
+        int bodyEnd = start + 1;
+        while (bodyEnd < limit) {
+            char c = text.charAt(bodyEnd);
+            if (c == '<' && (bodyEnd + 1 >= length || text.charAt(bodyEnd + 1) != '%')) {
+                break;
+            }
+            bodyEnd++;
+        }
+        // Take the last acceptable '>', like the greedy regex did.
+        for (int k = bodyEnd; k > start; k--) {
+            if (text.charAt(k) == '>') {
+                char before = text.charAt(k - 1);
+                if (before != '%' && before != '/') {
+                    return k + 1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private void add(int start, int end) {
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+
+    /** Same characters as the regular expression class <code>\s</code>. */
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
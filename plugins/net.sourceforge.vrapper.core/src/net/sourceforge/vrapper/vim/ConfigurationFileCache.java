@@ -0,0 +1,166 @@
+package net.sourceforge.vrapper.vim;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the commands of configuration files like <code>.vrapperrc</code> in memory, so that a
+ * file is only split into commands once no matter how many editors are opened.
+ * <p>
+ * The cache lives as long as the plugin. A file's commands are taken again when its modification
+ * time, size or content changes; the content is compared by its SHA-256 hash, which catches edits
+ * within the same second that keep the size.
+ * <p>
+ * Only the command lines are cached, not parsed commands: parsing depends on the editor (autocmd
+ * filters on its type, chained commands are executed while parsing) and the commands change its
+ * own configuration, so every editor still runs them.
+ */
+public class ConfigurationFileCache {
+
+    private static final Map<String, Snapshot> snapshots = new HashMap<String, Snapshot>();
+
+    private ConfigurationFileCache() {
+    }
+
+    /**
+     * Returns the command lines of the given file, reading it if it wasn't read before or changed
+     * since. Returns <code>null</code> if the file does not exist.
+     */
+    public static Snapshot getSnapshot(File file) throws IOException {
+        String path = file.getAbsolutePath();
+        long lastModified = file.lastModified();
+        synchronized (snapshots) {
+            if ( ! file.exists()) {
+                snapshots.remove(path);
+                return null;
+            }
+            byte[] content = Files.readAllBytes(file.toPath());
+            byte[] hash = hash(content);
+            Snapshot snapshot = snapshots.get(path);
+            if (snapshot != null && snapshot.lastModified == lastModified
+                    && snapshot.length == content.length
+                    && MessageDigest.isEqual(snapshot.hash, hash)) {
+                return snapshot;
+            }
+            snapshot = read(content, lastModified, hash);
+            snapshots.put(path, snapshot);
+            return snapshot;
+        }
+    }
+
+    public static void clear() {
+        synchronized (snapshots) {
+            snapshots.clear();
+        }
+    }
+
+    private static byte[] hash(byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform has SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Snapshot read(byte[] content, long lastModified, byte[] hash)
+            throws IOException {
+        List<String> commands = new ArrayList<String>();
+        List<Integer> lineNumbers = new ArrayList<Integer>();
+        BufferedReader reader = new BufferedReader(new StringReader(
+                new String(content, StandardCharsets.UTF_8)));
+        try {
+            int lineNr = 0;
+            String line;
+            String trimmed;
+            while((line = reader.readLine()) != null) {
+                lineNr++;
+                //*** skip over everything in a .vimrc file that we don't support ***//
+                trimmed = line.trim().toLowerCase();
+                //ignore comments and key mappings we don't support
+                if(trimmed.equals("") || trimmed.startsWith("\"") || trimmed.contains("<silent>")) {
+                    continue;
+                }
+                if(trimmed.startsWith("if")) {
+                    //skip all conditional statements
+                    lineNr += skipUntil(reader, "endif");
+                    continue; //skip "endif" line
+                }
+                if(trimmed.startsWith("func")) {
+                    //skip all function declarations
+                    lineNr += skipUntil(reader, "endfunc");
+                    continue; //skip "endfunction" line
+                }
+                if(trimmed.startsWith("try")) {
+                    //skip all try declarations
+                    lineNr += skipUntil(reader, "endtry");
+                    continue; //skip "endtry" line
+                }
+                if(trimmed.startsWith(":")) {
+                    //leading ':' is optional, skip it if it exists
+                    line = line.substring(line.indexOf(':') +1);
+                }
+                commands.add(line.trim());
+                lineNumbers.add(lineNr);
+            }
+        } finally {
+            reader.close();
+        }
+        return new Snapshot(lastModified, content.length, hash, commands, lineNumbers);
+    }
+
+    /** Skips lines up to and including one starting with <code>end</code>. */
+    private static int skipUntil(BufferedReader reader, String end) throws IOException {
+        int skipped = 0;
+        String line;
+        while((line = reader.readLine()) != null) {
+            skipped++;
+            if(line.trim().toLowerCase().startsWith(end)) {
+                break;
+            }
+        }
+        return skipped;
+    }
+
+    /** Immutable list of the commands in a configuration file. */
+    public static class Snapshot {
+        private final long lastModified;
+        private final long length;
+        private final byte[] hash;
+        private final List<String> commands;
+        private final int[] lineNumbers;
+
+        private Snapshot(long lastModified, long length, byte[] hash, List<String> commands,
+                List<Integer> lineNumbers) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.hash = hash;
+            this.commands = Collections.unmodifiableList(commands);
+            this.lineNumbers = new int[lineNumbers.size()];
+            for (int i = 0; i < this.lineNumbers.length; i++) {
+                this.lineNumbers[i] = lineNumbers.get(i);
+            }
+        }
+
+        /** Commands without leading ':', in the order they appear in the file. */
+        public List<String> getCommands() {
+            return commands;
+        }
+
+        /** Line in the file (starting with 1) on which the given command is found. */
+        public int getLineNumber(int commandIndex) {
+            return lineNumbers[commandIndex];
+        }
+    }
+}
@@ -2,11 +2,8 @@ package net.sourceforge.vrapper.vim;
 
 import static java.lang.String.format;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -17,10 +14,10 @@ import java.util.Set;
 
 import net.sourceforge.vrapper.keymap.KeyMap;
 import net.sourceforge.vrapper.keymap.KeyStroke;
-import net.sourceforge.vrapper.keymap.SpecialKey;
+import net.sourceforge.vrapper.keymap.Remapping;
 import net.sourceforge.vrapper.keymap.vim.ConstructorWrappers;
-import net.sourceforge.vrapper.keymap.vim.SimpleKeyStroke;
 import net.sourceforge.vrapper.log.VrapperLog;
+import net.sourceforge.vrapper.platform.BackgroundTaskService;
 import net.sourceforge.vrapper.platform.BufferAndTabService;
 import net.sourceforge.vrapper.platform.CommandLineUI;
 import net.sourceforge.vrapper.platform.CursorService;
@@ -49,6 +46,7 @@ import net.sourceforge.vrapper.utils.SearchResult;
 import net.sourceforge.vrapper.utils.SelectionArea;
 import net.sourceforge.vrapper.utils.TextRange;
 import net.sourceforge.vrapper.utils.UnmodifiableTextContentDecorator;
+import net.sourceforge.vrapper.vim.LatencyProfiler.Phase;
 import net.sourceforge.vrapper.vim.commands.Command;
 import net.sourceforge.vrapper.vim.commands.CommandExecutionException;
 import net.sourceforge.vrapper.vim.commands.RecordMacroMode;
@@ -57,6 +55,7 @@ import net.sourceforge.vrapper.vim.commands.YankOperation;
 import net.sourceforge.vrapper.vim.commands.motions.StickyColumnPolicy;
 import net.sourceforge.vrapper.vim.modes.AbstractVisualMode;
 import net.sourceforge.vrapper.vim.modes.BlockwiseVisualMode;
+import net.sourceforge.vrapper.vim.modes.CommandBasedMode;
 import net.sourceforge.vrapper.vim.modes.ConfirmSubstitutionMode;
 import net.sourceforge.vrapper.vim.modes.ContentAssistMode;
 import net.sourceforge.vrapper.vim.modes.EditorMode;
@@ -89,6 +88,97 @@ public class DefaultEditorAdaptor implements EditorAdaptor {
     private static final String WINDOWS_CONFIG_FILE_NAME = "_vrapperrc";
     protected EditorMode currentMode;
     private final Map<String, EditorMode> modeMap = new HashMap<String, EditorMode>();
+    /** Adaptor passed to modes created from {@link #modeFactories}. */
+    private DefaultEditorAdaptor modeOwner;
+
+    private interface ModeFactory {
+        EditorMode create(DefaultEditorAdaptor self);
+    }
+
+    private static final Map<String, ModeFactory> modeFactories = new HashMap<String, ModeFactory>();
+
+    static {
+        modeFactories.put(NormalMode.NAME, new ModeFactory() {
+            public EditorMode create(DefaultEditorAdaptor self) {
+                return new NormalMode(self);
+            }
+        });
+        modeFactories.put(RecordMacroMode.NAME, new ModeFactory() {
+            public EditorMode create(DefaultEditorAdaptor self) {
+                return new RecordMacroMode(self);
+            }
+        });
+        modeFactories.put(TempNormalMode.NAME, new ModeFactory() {
+            public EditorMode create(DefaultEditorAdaptor self) {
+                return new TempNormalMode(self);
+            }
+        });
+        modeFactories.put(VisualMode.NAME, new ModeFactory() {
+            public EditorMode create(DefaultEditorAdaptor self) {
+                return new VisualMode(self);
+            }
+        });
+        modeFactories.put(TempVisualMode.NAME, new ModeFactory() {
+            public EditorMode create(DefaultEditorAdaptor self) {
+                return new TempVisualMode(self);
+            }
+        });
+        modeFactories.put(LinewiseVisualMode.NAME, new ModeFactory() {
+            public EditorMode create(DefaultEditorAdaptor self) {
+                return new LinewiseVisualMode(self);
+            }
+        });
+        modeFactories.put(TempLinewiseVisualMode.NAME, new ModeFactory() {
+            public EditorMode create(DefaultEditorAdaptor self) {
+                return new TempLinewiseVisualMode(self);
+            }
+        });
+        modeFactories.put(BlockwiseVisualMode.NAME, new ModeFactory() {
+            public EditorMode create(DefaultEditorAdaptor self) {
+                return new BlockwiseVisualMode(self);
+            }
+        });
+        modeFactories.put(InsertMode.NAME, new ModeFactory() {
+            public EditorMode create(DefaultEditorAdaptor self) {
+                return new InsertMode(self);
+            }
+        });
+        modeFactories.put(ReplaceMode.NAME, new ModeFactory() {
+            public EditorMode create(DefaultEditorAdaptor self) {
+                return new ReplaceMode(self);
+            }
+        });
+        modeFactories.put(CommandLineMode.NAME, new ModeFactory() {
+            public EditorMode create(DefaultEditorAdaptor self) {
+                return new CommandLineMode(self);
+            }
+        });
+        modeFactories.put(SearchMode.NAME, new ModeFactory() {
+            public EditorMode create(DefaultEditorAdaptor self) {
+                return new SearchMode(self);
+            }
+        });
+        modeFactories.put(ConfirmSubstitutionMode.NAME, new ModeFactory() {
+            public EditorMode create(DefaultEditorAdaptor self) {
+                return new ConfirmSubstitutionMode(self);
+            }
+        });
+        modeFactories.put(MessageMode.NAME, new ModeFactory() {
+            public EditorMode create(DefaultEditorAdaptor self) {
+                return new MessageMode(self);
+            }
+        });
+        modeFactories.put(ContentAssistMode.NAME, new ModeFactory() {
+            public EditorMode create(DefaultEditorAdaptor self) {
+                return new ContentAssistMode(self);
+            }
+        });
+        modeFactories.put(PasteRegisterMode.NAME, new ModeFactory() {
+            public EditorMode create(DefaultEditorAdaptor self) {
+                return new PasteRegisterMode(self);
+            }
+        });
+    }
     private final TextContent modelContent;
     private final TextContent viewContent;
     private final CursorService cursorService;
@@ -110,10 +200,11 @@ public class DefaultEditorAdaptor implements EditorAdaptor {
     private final PlatformSpecificModeProvider platformSpecificModeProvider;
     private final SearchAndReplaceService searchAndReplaceService;
     private final HighlightingService highlightingService;
+    private final BackgroundTaskService backgroundTaskService;
     private MacroRecorder macroRecorder;
     private MacroPlayer macroPlayer;
     private Deque<String> macroStack;
-    private Deque<String> mappingStack;
+    private final MappingStack mappingStack;
     boolean abortRecursion;
     private String recursionErrorMessage;
     private String lastModeName;
@@ -152,12 +243,13 @@ public class DefaultEditorAdaptor implements EditorAdaptor {
         this.searchAndReplaceService = editor.getSearchAndReplaceService();
         viewportService = editor.getViewportService();
         this.highlightingService = editor.getHighlightingService();
+        this.backgroundTaskService = editor.getBackgroundTaskService();
         keyMapProvider = editor.getKeyMapProvider();
         keyStrokeTranslator = new KeyStrokeTranslator();
         macroRecorder = new MacroRecorder(registerManager, userInterfaceService);
         macroPlayer = null;
         macroStack = new LinkedList<String>();
-        mappingStack = new LinkedList<String>();
+        mappingStack = new MappingStack();
         this.editorType = editor.getEditorType();
         listeners = new VrapperEventListeners(this);
         fileService = editor.getFileService();
@@ -213,26 +305,23 @@ public class DefaultEditorAdaptor implements EditorAdaptor {
     // this is public just for test purposes (Mockito spy as self)
     public void __set_modes(final DefaultEditorAdaptor self) {
         modeMap.clear();
-        final EditorMode[] modes = {
-                new NormalMode(self),
-                new RecordMacroMode(self),
-                new TempNormalMode(self),
-                new VisualMode(self),
-                new TempVisualMode(self),
-                new LinewiseVisualMode(self),
-                new TempLinewiseVisualMode(self),
-                new BlockwiseVisualMode(self),
-                new InsertMode(self),
-                new ReplaceMode(self),
-                new CommandLineMode(self),
-                new SearchMode(self),
-                new ConfirmSubstitutionMode(self),
-                new MessageMode(self),
-                new ContentAssistMode(self),
-                new PasteRegisterMode(self)};
-        for (final EditorMode mode: modes) {
-            modeMap.put(mode.getName(), mode);
+        modeOwner = self;
+        // These react to option changes even if the modes were never used.
+        configuration.addListener(new CommandBasedMode.CommandConfigurationListener(self));
+        configuration.addListener(new SearchMode.SearchConfigurationListener(self));
+        // Normal mode is used by every editor, other modes are only created when first used.
+        getMode(NormalMode.NAME);
+    }
+
+    /** Creates and registers a built-in mode, returns <code>null</code> for unknown modes. */
+    private EditorMode loadBuiltinMode(final String modeName) {
+        final ModeFactory factory = modeFactories.get(modeName);
+        if (factory == null) {
+            return null;
         }
+        final EditorMode mode = factory.create(modeOwner);
+        modeMap.put(modeName, mode);
+        return mode;
     }
 
     @Override
@@ -304,91 +393,39 @@ public class DefaultEditorAdaptor implements EditorAdaptor {
             }
         }
 
-        int lineNr = 0;
-        if(config.exists()) {
-        	BufferedReader reader = null;
-        	try {
-        		reader = new BufferedReader(new InputStreamReader(
-        					new FileInputStream(config), "UTF-8"));
-        		String line;
-        		CommandLineMode cmdLineMode = (CommandLineMode) modeMap.get(CommandLineMode.NAME);
-        		final CommandLineParser parser = cmdLineMode.createParser();
-        		String trimmed;
-        		while((line = reader.readLine()) != null) {
-        		    lineNr++;
-        			//*** skip over everything in a .vimrc file that we don't support ***//
-        			trimmed = line.trim().toLowerCase();
-        			//ignore comments and key mappings we don't support
-        			if(trimmed.equals("") || trimmed.startsWith("\"") || trimmed.contains("<silent>")) {
-        				continue;
-        			}
-        			if(trimmed.startsWith("if")) {
-        				//skip all conditional statements
-        				while((line = reader.readLine()) != null) {
-        					if(line.trim().toLowerCase().startsWith("endif")) {
-        						break;
-        					}
-        				}
-        				continue; //skip "endif" line
-        			}
-        			if(trimmed.startsWith("func")) {
-        				//skip all function declarations
-        				while((line = reader.readLine()) != null) {
-        					if(line.trim().toLowerCase().startsWith("endfunc")) {
-        						break;
-        					}
-        				}
-        				continue; //skip "endfunction" line
-        			}
-        			if(trimmed.startsWith("try")) {
-        				//skip all try declarations
-        				while((line = reader.readLine()) != null) {
-        					if(line.trim().toLowerCase().startsWith("endtry")) {
-        						break;
-        					}
-        				}
-        				continue; //skip "endtry" line
-        			}
-        			if(trimmed.startsWith(":")) {
-        			    //leading ':' is optional, skip it if it exists
-        			    line = line.substring(line.indexOf(':') +1);
-        			}
-        			//attempt to parse this line
-        			Command c = parser.parseAndExecute(null, line.trim());
-        			if (c != null) {
-        			    c.execute(this);
-        			}
-        			
-        		}
-        	} catch (final IOException e) {
-        		VrapperLog.error("Failed to parse .vrapperrc", e);
-        	} catch (CommandExecutionException e) {
-        		VrapperLog.error("Failed to execute command on line " + lineNr
-        				+ " of .vrapperrc", e);
-            } finally {
-        		if(reader != null) {
-        			try {
-        				reader.close();
-        			} catch (final IOException e) {
-        				VrapperLog.error("Failed to close reader to .vrapperrc");
-        			}
-        		}
-        	}
-        	return true;
+        ConfigurationFileCache.Snapshot snapshot;
+        try {
+            snapshot = ConfigurationFileCache.getSnapshot(config);
+        } catch (final IOException e) {
+            VrapperLog.error("Failed to parse .vrapperrc", e);
+            return true;
         }
-        else {
-        	return false;
+        if (snapshot == null) {
+            return false;
+        }
+        CommandLineMode cmdLineMode = (CommandLineMode) getMode(CommandLineMode.NAME);
+        final CommandLineParser parser = cmdLineMode.createParser();
+        List<String> commands = snapshot.getCommands();
+        int i = 0;
+        try {
+            for (; i < commands.size(); i++) {
+                //attempt to parse this line
+                Command c = parser.parseAndExecute(null, commands.get(i));
+                if (c != null) {
+                    c.execute(this);
+                }
+            }
+        } catch (CommandExecutionException e) {
+            VrapperLog.error("Failed to execute command on line " + snapshot.getLineNumber(i)
+                    + " of .vrapperrc", e);
         }
+        return true;
     }
 
 
     @Override
     public void changeMode(final String modeName, final ModeSwitchHint... args) throws CommandExecutionException {
-        EditorMode newMode = modeMap.get(modeName);
-        if (newMode == null) {
-            // Check extension modes
-            newMode = getMode(modeName);
-        }
+        EditorMode newMode = getMode(modeName);
         if (currentMode != newMode) {
             listeners.fireModeAboutToSwitch(newMode);
             EditorMode oldMode = currentMode;
@@ -414,7 +451,7 @@ public class DefaultEditorAdaptor implements EditorAdaptor {
                     String msg = "Failed to switch to mode " + newMode
                             + " and failed to switch back to " + oldMode.getName();
                     VrapperLog.error(msg, e);
-                    EditorMode temp = modeMap.get(NormalMode.NAME);
+                    EditorMode temp = getMode(NormalMode.NAME);
                     temp.enterMode();
                     oldMode = temp;
                     currentMode = temp;
@@ -583,15 +620,20 @@ public class DefaultEditorAdaptor implements EditorAdaptor {
     @Override
     public EditorMode getMode(final String modeName) {
         EditorMode result =  modeMap.get(modeName);
+        if (modeName != null && result == null) {
+            result = loadBuiltinMode(modeName);
+        }
         if (modeName != null && result == null) {
             try {
                 // Load extension modes
                 List<EditorMode> modes = platformSpecificModeProvider.getModes(this);
                 for (final EditorMode mode : modes) {
-                    if (modeMap.containsKey(mode.getName())) {
+                    if (modeMap.containsKey(mode.getName())
+                            || modeFactories.containsKey(mode.getName())) {
+                        EditorMode existing = getMode(mode.getName());
                         VrapperLog.error(format("Mode '%s' was already loaded! Mode in registry '%s',"
                                 + " conflicting mode '%s'", mode.getName(),
-                                modeMap.get(mode.getName()).getClass().getName(),
+                                existing.getClass().getName(),
                                 mode.getClass().getName()));
                     } else {
                         modeMap.put(mode.getName(), mode);
@@ -640,6 +682,11 @@ public class DefaultEditorAdaptor implements EditorAdaptor {
         return highlightingService;
     }
 
+    @Override
+    public BackgroundTaskService getBackgroundTaskService() {
+        return backgroundTaskService;
+    }
+
     @Override
     public void useGlobalRegisters() {
         registerManager = globalRegisterManager;
@@ -722,7 +769,9 @@ public class DefaultEditorAdaptor implements EditorAdaptor {
                 map = keyMapProvider.getKeyMap(keyMapName);
             }
             if (map != null) {
+                final long startTime = LatencyProfiler.INSTANCE.start();
                 final boolean inMapping = keyStrokeTranslator.processKeyStroke(map, key);
+                LatencyProfiler.INSTANCE.record(Phase.REMAPPING, startTime, keyMapName);
                 if (inMapping) {
                     final Queue<RemappedKeyStroke> resultingKeyStrokes =
                         keyStrokeTranslator.resultingKeyStrokes();
@@ -754,7 +803,7 @@ public class DefaultEditorAdaptor implements EditorAdaptor {
                                     int pendingChars = cursorService.getPosition().getModelOffset() - cursorBeforeMapping;
                                     //delete all the pending characters we had displayed
                                     for (int i=0; i < pendingChars; i++) {
-                                        currentMode.handleKey(new RemappedKeyStroke(new SimpleKeyStroke(SpecialKey.BACKSPACE), false));
+                                        currentMode.handleKey(KeyStrokeTranslator.BACKSPACE);
                                     }
                                 }
                                 else {
@@ -762,10 +811,7 @@ public class DefaultEditorAdaptor implements EditorAdaptor {
                                     // last key should be dealt with.
 
                                     // check if key is in global map.
-                                    if (KeyMap.GLOBAL_MAP.containsKey(key)) {
-                                        key = new RemappedKeyStroke(KeyMap.GLOBAL_MAP.get(key), false);
-                                    }
-                                    return currentMode.handleKey(key);
+                                    return currentMode.handleKey(KeyStrokeTranslator.translateGlobal(key));
                                 }
                             } finally {
                                 //prepare for next insert mapping
@@ -796,17 +842,18 @@ public class DefaultEditorAdaptor implements EditorAdaptor {
                     } else {
                         // play all key strokes, either the pending characters or the successful map
                         if (didMappingSucceed) {
-                            String mappingId = '[' + map.getMapId() + "] "
-                                    + ConstructorWrappers.keyStrokesToString(
-                                            keyStrokeTranslator.originalKeyStrokes());
+                            Remapping mapping = keyStrokeTranslator.succeededMapping();
                             // Check for infinite recursion - throw away state and return
-                            if (mappingStack.contains(mappingId)) {
+                            if (mappingStack.contains(map, mapping)) {
+                                String mappingId = '[' + map.getMapId() + "] "
+                                        + ConstructorWrappers.keyStrokesToString(
+                                                keyStrokeTranslator.originalKeyStrokes());
                                 recursionErrorMessage = "Mapping " + mappingId + " is called "
                                         + "recursively, mapping execution aborted.";
                                 abortRecursion = true;
                                 return true;
                             }
-                            mappingStack.push(mappingId);
+                            mappingStack.push(map, mapping);
                         }
                         try {
                             while (!resultingKeyStrokes.isEmpty() && ! abortRecursion) {
@@ -826,10 +873,7 @@ public class DefaultEditorAdaptor implements EditorAdaptor {
                     return true;
                 } // else the character matches no mapping.
             } // else mode does not allow remapping at this point.
-            if (KeyMap.GLOBAL_MAP.containsKey(key)) {
-                key = new RemappedKeyStroke(KeyMap.GLOBAL_MAP.get(key), false);
-            }
-            return currentMode.handleKey(key);
+            return currentMode.handleKey(KeyStrokeTranslator.translateGlobal(key));
         }
         return false;
     }
@@ -1,6 +1,7 @@
 package net.sourceforge.vrapper.vim;
 
 import net.sourceforge.vrapper.keymap.KeyStroke;
+import net.sourceforge.vrapper.platform.BackgroundTaskService;
 import net.sourceforge.vrapper.platform.BufferAndTabService;
 import net.sourceforge.vrapper.platform.CommandLineUI;
 import net.sourceforge.vrapper.platform.CursorService;
@@ -75,6 +76,7 @@ public interface EditorAdaptor {
     PlatformSpecificStateProvider getPlatformSpecificStateProvider();
     SearchAndReplaceService getSearchAndReplaceService();
     HighlightingService getHighlightingService();
+    BackgroundTaskService getBackgroundTaskService();
 
     boolean sourceConfigurationFile(String filename);
     Position getPosition();
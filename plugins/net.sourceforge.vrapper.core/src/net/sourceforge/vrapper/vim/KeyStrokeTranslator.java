@@ -1,15 +1,19 @@
 package net.sourceforge.vrapper.vim;
 
 
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 
 import net.sourceforge.vrapper.keymap.KeyMap;
 import net.sourceforge.vrapper.keymap.KeyStroke;
 import net.sourceforge.vrapper.keymap.Remapping;
+import net.sourceforge.vrapper.keymap.SpecialKey;
 import net.sourceforge.vrapper.keymap.State;
 import net.sourceforge.vrapper.keymap.Transition;
+import net.sourceforge.vrapper.keymap.vim.SimpleKeyStroke;
 import net.sourceforge.vrapper.utils.CollectionUtils;
 
 /**
@@ -20,19 +24,43 @@ import net.sourceforge.vrapper.utils.CollectionUtils;
  */
 public class KeyStrokeTranslator {
 
+    /** Non-recursive backspace, used to remove pending characters of insert mode mappings. */
+    public static final RemappedKeyStroke BACKSPACE =
+            new RemappedKeyStroke(new SimpleKeyStroke(SpecialKey.BACKSPACE), false);
+
+    /** Translations of {@link KeyMap#GLOBAL_MAP}, created once so that using them is free. */
+    private static final Map<KeyStroke, RemappedKeyStroke> GLOBAL_TRANSLATIONS =
+            new HashMap<KeyStroke, RemappedKeyStroke>();
+
+    static {
+        for (Map.Entry<KeyStroke, KeyStroke> entry : KeyMap.GLOBAL_MAP.entrySet()) {
+            GLOBAL_TRANSLATIONS.put(entry.getKey(), new RemappedKeyStroke(entry.getValue(), false));
+        }
+    }
+
     private State<Remapping> currentState;
     private Remapping lastValue;
+    private Remapping succeededMapping;
     private final List<RemappedKeyStroke> unconsumedKeyStrokes;
-    private final List<RemappedKeyStroke> originalKeyStrokes;
+    private final List<KeyStroke> originalKeyStrokes;
     private final LinkedList<RemappedKeyStroke> resultingKeyStrokes;
     private boolean mappingSucceeded = false;
 
     public KeyStrokeTranslator() {
         unconsumedKeyStrokes = new LinkedList<RemappedKeyStroke>();
-        originalKeyStrokes = new LinkedList<RemappedKeyStroke>();
+        originalKeyStrokes = new LinkedList<KeyStroke>();
         resultingKeyStrokes  = new LinkedList<RemappedKeyStroke>();
     }
 
+    /**
+     * Returns what <code>key</code> stands for according to {@link KeyMap#GLOBAL_MAP}, or
+     * <code>key</code> itself if it is not in there.
+     */
+    public static KeyStroke translateGlobal(KeyStroke key) {
+        RemappedKeyStroke translation = GLOBAL_TRANSLATIONS.get(key);
+        return translation == null ? key : translation;
+    }
+
     public boolean processKeyStroke(KeyMap keymap, KeyStroke key) {
         Transition<Remapping> trans;
         if (currentState == null) {
@@ -46,17 +74,19 @@ public class KeyStrokeTranslator {
             unconsumedKeyStrokes.clear();
             originalKeyStrokes.clear();
             mappingSucceeded = false;
+            succeededMapping = null;
         } else {
             trans = currentState.press(key);
         }
         if (trans != null) {
             // mapping exists
-            originalKeyStrokes.add(new RemappedKeyStroke(key, false));
+            originalKeyStrokes.add(key);
             if (trans.getValue() != null) {
                 //mapping completed successfully
                 lastValue = trans.getValue();
                 unconsumedKeyStrokes.clear();
                 mappingSucceeded = true;
+                succeededMapping = lastValue;
             } else { //mapping pending
                 // as long as no preliminary result is found, keystrokes
                 // should not be evaluated again
@@ -78,16 +108,17 @@ public class KeyStrokeTranslator {
             prependLastValue();
             currentState = null;
             mappingSucceeded = false;
+            succeededMapping = null;
         }
         return true;
     }
 
-    public Queue<RemappedKeyStroke> originalKeyStrokes() {
+    public Queue<KeyStroke> originalKeyStrokes() {
         // This is unlikely to happen
         if (originalKeyStrokes.isEmpty()) {
             return CollectionUtils.emptyQueue();
         } else {
-            return new LinkedList<RemappedKeyStroke>(originalKeyStrokes);
+            return new LinkedList<KeyStroke>(originalKeyStrokes);
         }
     }
 
@@ -103,12 +134,20 @@ public class KeyStrokeTranslator {
         return mappingSucceeded;
     }
 
+    /**
+     * Returns the mapping which was completed by the last keystroke, or <code>null</code> if
+     * {@link #didMappingSucceed()} is false.
+     */
+    public Remapping succeededMapping() {
+        return succeededMapping;
+    }
+
     private void prependUnconsumed() {
         //Check if any unmatched keys are in the global map 
         for (int i = 0; i < unconsumedKeyStrokes.size(); i++) {
-            KeyStroke key = unconsumedKeyStrokes.get(i);
-            if (KeyMap.GLOBAL_MAP.containsKey(key)) {
-                unconsumedKeyStrokes.set(i, new RemappedKeyStroke(KeyMap.GLOBAL_MAP.get(key), false));
+            RemappedKeyStroke translation = GLOBAL_TRANSLATIONS.get(unconsumedKeyStrokes.get(i));
+            if (translation != null) {
+                unconsumedKeyStrokes.set(i, translation);
             }
         }
         resultingKeyStrokes.addAll(0, unconsumedKeyStrokes);
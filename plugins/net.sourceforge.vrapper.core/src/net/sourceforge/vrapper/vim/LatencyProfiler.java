@@ -0,0 +1,213 @@
+package net.sourceforge.vrapper.vim;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records how long each phase of handling a keystroke takes, to find the mappings and commands
+ * behind typing lag.
+ * <p>
+ * Recording is off until enabled with <code>:profile start</code> or through JMX; when off the
+ * instrumented code only reads one flag. Timings go into histograms with one bucket per power of
+ * two nanoseconds, kept in lock-free arrays. The slowest single timings are remembered together
+ * with the command or key map which took that long.
+ */
+public class LatencyProfiler implements LatencyProfilerMBean {
+
+    /** Phases of handling a keystroke, in the order they happen. */
+    public enum Phase {
+        /** Turning the platform's key event into a key stroke. */
+        KEY_TRANSLATION("key translation"),
+        /** Looking the key stroke up in the mappings. */
+        REMAPPING("remapping"),
+        /** Moving the mode's state machine to the next state. */
+        DISPATCH("dispatch"),
+        /** Running the command the key sequence resolved to. */
+        EXECUTION("execution"),
+        /** From the end of key handling until the editor painted the result. */
+        REPAINT("repaint");
+
+        private final String label;
+
+        private Phase(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    private static final int BUCKETS = 64;
+    private static final int SLOWEST = 10;
+    private static final Phase[] PHASES = Phase.values();
+
+    public static final LatencyProfiler INSTANCE = new LatencyProfiler();
+
+    private volatile boolean enabled;
+    private final AtomicLongArray histogram = new AtomicLongArray(PHASES.length * BUCKETS);
+    private final AtomicLongArray totals = new AtomicLongArray(PHASES.length);
+    private final AtomicLongArray maxima = new AtomicLongArray(PHASES.length);
+    /** Slowest timings sorted from slow to fast, guarded by this. */
+    private final long[] slowestNanos = new long[SLOWEST];
+    private final String[] slowestLabels = new String[SLOWEST];
+    private volatile long slowestThreshold;
+
+    private LatencyProfiler() {
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @return the start time to pass to {@link #record(Phase, long, Object)}, or 0 if
+     *     profiling is off.
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time elapsed since <code>startTime</code>.
+     * @param startTime value returned by {@link #start()}; nothing is recorded for 0.
+     * @param subject command or key map the time was spent on, may be <code>null</code>.
+     */
+    public void record(Phase phase, long startTime, Object subject) {
+        if (startTime == 0 || ! enabled) {
+            return;
+        }
+        long nanos = System.nanoTime() - startTime;
+        if (nanos < 0) {
+            return;
+        }
+        int index = phase.ordinal();
+        histogram.incrementAndGet(index * BUCKETS + bucketOf(nanos));
+        totals.addAndGet(index, nanos);
+        long max;
+        while (nanos > (max = maxima.get(index)) && ! maxima.compareAndSet(index, max, nanos)) {
+            // Retry, another thread raised the maximum meanwhile.
+        }
+        if (nanos > slowestThreshold) {
+            addSlowest(phase, nanos, subject);
+        }
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < histogram.length(); i++) {
+            histogram.set(i, 0);
+        }
+        for (int i = 0; i < PHASES.length; i++) {
+            totals.set(i, 0);
+            maxima.set(i, 0);
+        }
+        synchronized (this) {
+            for (int i = 0; i < SLOWEST; i++) {
+                slowestNanos[i] = 0;
+                slowestLabels[i] = null;
+            }
+            slowestThreshold = 0;
+        }
+    }
+
+    @Override
+    public String getReport() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-16s %8s %9s %9s %9s %9s %9s%n",
+                "phase", "count", "mean ms", "p50 ms", "p90 ms", "p99 ms", "max ms"));
+        for (Phase phase : PHASES) {
+            int index = phase.ordinal();
+            long count = 0;
+            for (int b = 0; b < BUCKETS; b++) {
+                count += histogram.get(index * BUCKETS + b);
+            }
+            if (count == 0) {
+                sb.append(String.format("%-16s %8d%n", phase.getLabel(), 0));
+                continue;
+            }
+            sb.append(String.format("%-16s %8d %9.3f %9.3f %9.3f %9.3f %9.3f%n",
+                    phase.getLabel(), count,
+                    millis(totals.get(index) / count),
+                    millis(percentile(index, count, 0.50)),
+                    millis(percentile(index, count, 0.90)),
+                    millis(percentile(index, count, 0.99)),
+                    millis(maxima.get(index))));
+        }
+        synchronized (this) {
+            if (slowestLabels[0] != null) {
+                sb.append("\nslowest:\n");
+                for (int i = 0; i < SLOWEST && slowestLabels[i] != null; i++) {
+                    sb.append(String.format("%9.3f ms  %s%n", millis(slowestNanos[i]),
+                            slowestLabels[i]));
+                }
+            }
+        }
+        sb.append("\nPercentiles are rounded up to a power of two nanoseconds.\n");
+        return sb.toString();
+    }
+
+    @Override
+    public void dump(String fileName) throws IOException {
+        Writer writer = new FileWriter(fileName);
+        try {
+            writer.write(getReport());
+        } finally {
+            writer.close();
+        }
+    }
+
+    private synchronized void addSlowest(Phase phase, long nanos, Object subject) {
+        int i = SLOWEST - 1;
+        if (nanos <= slowestNanos[i]) {
+            return;
+        }
+        while (i > 0 && slowestNanos[i - 1] < nanos) {
+            slowestNanos[i] = slowestNanos[i - 1];
+            slowestLabels[i] = slowestLabels[i - 1];
+            i--;
+        }
+        slowestNanos[i] = nanos;
+        slowestLabels[i] = phase.getLabel() + (subject == null ? "" : ": " + describe(subject));
+        slowestThreshold = slowestNanos[SLOWEST - 1];
+    }
+
+    private static String describe(Object subject) {
+        if (subject instanceof String) {
+            return (String) subject;
+        }
+        // Most commands don't implement toString(), their class tells more.
+        String name = subject.getClass().getName();
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    /** @return upper bound of the bucket holding the given fraction of the timings. */
+    private long percentile(int index, long count, double fraction) {
+        long wanted = (long) Math.ceil(count * fraction);
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += histogram.get(index * BUCKETS + b);
+            if (seen >= wanted) {
+                return Math.min(maxima.get(index), b >= 63 ? Long.MAX_VALUE : (1L << b) - 1);
+            }
+        }
+        return maxima.get(index);
+    }
+
+    /** Bucket b holds timings below 2^b nanoseconds and at least 2^(b-1). */
+    private static int bucketOf(long nanos) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1000000.0;
+    }
+}
@@ -0,0 +1,20 @@
+package net.sourceforge.vrapper.vim;
+
+/**
+ * Management interface of {@link LatencyProfiler}, so that it can be watched through JMX.
+ */
+public interface LatencyProfilerMBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    /** Forgets all recorded timings. */
+    void reset();
+
+    /** @return the timings as a table, the same one <code>:profile</code> shows. */
+    String getReport();
+
+    /** Writes the report to the given file. */
+    void dump(String fileName) throws java.io.IOException;
+}
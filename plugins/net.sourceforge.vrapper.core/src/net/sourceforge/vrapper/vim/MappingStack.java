@@ -0,0 +1,56 @@
+package net.sourceforge.vrapper.vim;
+
+import java.util.Arrays;
+
+import net.sourceforge.vrapper.keymap.KeyMap;
+import net.sourceforge.vrapper.keymap.Remapping;
+
+/**
+ * Mappings which are currently being executed, used to detect mappings which call themselves.
+ * <p>
+ * A mapping is identified by its {@link KeyMap} and {@link Remapping} instances, so nothing needs
+ * to be allocated when a mapping is entered unless nesting gets deeper than ever before.
+ */
+class MappingStack {
+
+    private static final int INITIAL_DEPTH = 16;
+
+    private KeyMap[] maps = new KeyMap[INITIAL_DEPTH];
+    private Remapping[] mappings = new Remapping[INITIAL_DEPTH];
+    private int depth;
+
+    public boolean contains(KeyMap map, Remapping mapping) {
+        for (int i = 0; i < depth; i++) {
+            if (mappings[i] == mapping && maps[i] == map) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void push(KeyMap map, Remapping mapping) {
+        if (depth == mappings.length) {
+            maps = Arrays.copyOf(maps, depth * 2);
+            mappings = Arrays.copyOf(mappings, depth * 2);
+        }
+        maps[depth] = map;
+        mappings[depth] = mapping;
+        depth++;
+    }
+
+    public void pop() {
+        depth--;
+        maps[depth] = null;
+        mappings[depth] = null;
+    }
+
+    public boolean isEmpty() {
+        return depth == 0;
+    }
+
+    public void clear() {
+        while (depth > 0) {
+            pop();
+        }
+    }
+}
@@ -91,7 +91,10 @@ public interface Options {
     //       Changing this value should change the Eclipse configuration too. -- BRD
     public static final Option<Integer> TAB_STOP      = integer("tabstop",     8, "ts");
     public static final Option<Integer> SHIFT_WIDTH   = integer("shiftwidth",  8, "sw");
+    public static final Option<Integer> SEARCH_HL_LIMIT = integer("hlsearchlimit", 10000, "hll");
+    public static final Option<Integer> CHANGELIST_SIZE = integer("changelistsize", 100);
 
     @SuppressWarnings("unchecked")
-    public static final Set<Option<Integer>> INT_OPTIONS = set(SCROLL_JUMP, SCROLL, SCROLL_OFFSET, TEXT_WIDTH, SOFT_TAB, TAB_STOP, SHIFT_WIDTH);
+    public static final Set<Option<Integer>> INT_OPTIONS = set(SCROLL_JUMP, SCROLL, SCROLL_OFFSET, TEXT_WIDTH, SOFT_TAB, TAB_STOP, SHIFT_WIDTH,
+            SEARCH_HL_LIMIT, CHANGELIST_SIZE);
 }
@@ -7,7 +7,15 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import net.sourceforge.vrapper.platform.Configuration;
 import net.sourceforge.vrapper.platform.SimpleConfiguration;
 
-/** Wraps a {@link Configuration}, allowing to notify {@link ConfigurationListener}. */
+/**
+ * Wraps a {@link Configuration}, allowing to notify {@link ConfigurationListener}.
+ * <p>
+ * Motions read options on every keystroke, and looking an option up walks this configuration,
+ * its default providers and the shared configuration. Resolved values are therefore cached by
+ * {@link Option#getSlot() slot} until an option is set anywhere or
+ * {@link SimpleConfiguration#defaultsChanged()} is called. Values from the editor's own default
+ * providers are not cached, as the editor's settings can change without notice.
+ */
 public class SimpleLocalConfiguration extends SimpleConfiguration implements LocalConfiguration {
 
     protected Configuration sharedConfiguration;
@@ -16,10 +24,18 @@ public class SimpleLocalConfiguration extends SimpleConfiguration implements Loc
             new CopyOnWriteArrayList<ConfigurationListener>();
     private boolean listenersEnabled;
 
+    /** Marks cache slots of options whose value comes from {@link #editorConfigProviders}. */
+    private static final Object FROM_EDITOR = new Object();
+
+    private final List<DefaultConfigProvider> editorConfigProviders;
+    private Object[] cachedValues = new Object[0];
+    private int cachedModificationCount = -1;
+
     public SimpleLocalConfiguration(List<DefaultConfigProvider> defaultConfigProviders,
             Configuration sharedConfiguration) {
         super(hookSharedConfigurationProviders(defaultConfigProviders, sharedConfiguration));
         this.sharedConfiguration = sharedConfiguration;
+        this.editorConfigProviders = new ArrayList<DefaultConfigProvider>(defaultConfigProviders);
         //Don't share the newline.  Each file has its own newline.
         //(in case you have one windows file open
         //  and one unix file open at the same time)
@@ -34,6 +50,49 @@ public class SimpleLocalConfiguration extends SimpleConfiguration implements Loc
         return list;
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Option<T> key) {
+        int modificationCount = SimpleConfiguration.getModificationCount();
+        if (modificationCount != cachedModificationCount) {
+            cachedValues = new Object[Option.getSlotCount()];
+            cachedModificationCount = modificationCount;
+        }
+        int slot = key.getSlot();
+        if (slot >= cachedValues.length) {
+            // Option was created after the cache (e.g. by a plugin loaded later).
+            Object[] values = new Object[Option.getSlotCount()];
+            System.arraycopy(cachedValues, 0, values, 0, cachedValues.length);
+            cachedValues = values;
+        }
+        Object value = cachedValues[slot];
+        if (value == FROM_EDITOR) {
+            return super.get(key);
+        }
+        if (value == null) {
+            if ( ! isSet(key) && ! sharedConfiguration.isSet(key)) {
+                T editorDefault = getEditorDefault(key);
+                if (editorDefault != null) {
+                    cachedValues[slot] = FROM_EDITOR;
+                    return editorDefault;
+                }
+            }
+            value = super.get(key);
+            cachedValues[slot] = value;
+        }
+        return (T) value;
+    }
+
+    private <T> T getEditorDefault(Option<T> key) {
+        for (DefaultConfigProvider provider : editorConfigProviders) {
+            T value = provider.getDefault(key);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
     public <T> void set(Option<T> key, T value) {
         T oldValue = sharedConfiguration.get(key);
         if ( ! key.getScope().equals(OptionScope.LOCAL)) {
@@ -0,0 +1,20 @@
+package net.sourceforge.vrapper.vim.commands;
+
+import net.sourceforge.vrapper.vim.EditorAdaptor;
+
+/**
+ * A command which can do the work of several executions at once.
+ * <p>
+ * {@link MultipleExecutionCommand} hands the whole count to such commands instead of executing
+ * them again and again, so that e.g. <code>10000ifoo&lt;Esc&gt;</code> changes the document once
+ * rather than ten thousand times.
+ */
+public interface BulkRepeatableCommand extends Command {
+
+    /**
+     * Executes this command as if it was repeated <code>count</code> times, the way Vim repeats
+     * it for a count.
+     */
+    void executeRepeatedly(EditorAdaptor editorAdaptor, int count)
+            throws CommandExecutionException;
+}
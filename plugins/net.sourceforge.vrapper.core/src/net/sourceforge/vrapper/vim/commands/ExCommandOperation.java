@@ -1,6 +1,9 @@
 package net.sourceforge.vrapper.vim.commands;
 
+import java.util.function.IntConsumer;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.IntStream;
 
 import net.sourceforge.vrapper.log.VrapperLog;
 import net.sourceforge.vrapper.platform.CursorService;
@@ -30,8 +33,13 @@ import net.sourceforge.vrapper.vim.EditorAdaptor;
  */
 public class ExCommandOperation extends AbstractLinewiseOperation {
 
+	protected static final String TARGET_MARK_PREFIX = CursorService.INTERNAL_MARK_PREFIX + "-ex-target";
 	protected static final String NEXTLINE_MARK = CursorService.INTERNAL_MARK_PREFIX + "-ex-nextline";
 
+	/** Ranges with fewer lines are always searched on the calling thread. */
+	private static final int PARALLEL_SCAN_MIN_LINES = 20000;
+	private static final int SCAN_CHUNK_LINES = 5000;
+
 	String originalDefinition;
 
 	public ExCommandOperation(String definition) {
@@ -183,53 +191,145 @@ public class ExCommandOperation extends AbstractLinewiseOperation {
 		}
 	}
 
+	/**
+	 * Like Vim, first marks all lines on which to execute and only then executes the operation
+	 * on those lines, skipping those which an earlier execution deleted.
+	 * <p>
+	 * Each target line gets a mark at its start and one at the start of the line after it. A
+	 * mark at the start of a change survives it, so the start mark alone doesn't tell whether
+	 * the line was deleted; the line is gone when one of its marks is deleted or both marks
+	 * ended up at the same offset.
+	 */
 	private void processMultipleLines(Pattern regex, boolean findMatch,
 			LineWiseOperation operation, LineInformation line, EditorAdaptor editorAdaptor, 
 			int startLine, int endLine, TextContent modelContent) {
-		int linesProcessed = 0;
-		int nLines = modelContent.getNumberOfLines();
-		// Hard limit ( + 1 because endLine is inclusive )
-		int maxLinesToProcess = endLine - startLine + 1;
-		CursorService cs = editorAdaptor.getCursorService();
+		LineInformation lastLine = modelContent.getLineInformation(endLine);
+		String text = modelContent.getText(line.getBeginOffset(),
+				lastLine.getEndOffset() - line.getBeginOffset());
+		int[] targets = findMatchingLines(text, regex, findMatch);
+		if (targets.length == 0) {
+			return;
+		}
 
-		while (linesProcessed < maxLinesToProcess && line != null) {
-			nLines = modelContent.getNumberOfLines();
-			if (nLines > line.getNumber() + 1) {
-				LineInformation nextLine = modelContent.getLineInformation(line.getNumber() + 1);
-				cs.setMark(NEXTLINE_MARK, cs.newPositionForModelOffset(nextLine.getBeginOffset()));
-			} else {
-				// Remove mark for exit condition
-				cs.deleteMark(NEXTLINE_MARK);
+		CursorService cs = editorAdaptor.getCursorService();
+		int nLines = modelContent.getNumberOfLines();
+		int marked = 0;
+		try {
+			for (; marked < targets.length; marked++) {
+				int targetLine = startLine + targets[marked];
+				LineInformation target = modelContent.getLineInformation(targetLine);
+				cs.setMark(startMark(marked), cs.newPositionForModelOffset(target.getBeginOffset()));
+				if (targetLine + 1 < nLines) {
+					int nextStart = modelContent.getLineInformation(targetLine + 1).getBeginOffset();
+					cs.setMark(nextLineMark(marked), cs.newPositionForModelOffset(nextStart));
+				}
 			}
-			processLine(regex, findMatch, operation, line, editorAdaptor);
-			Position nextLineStart = cs.getMark(NEXTLINE_MARK);
-			// Try to guess our position if user ran something like 2d and removed next line
-			int updatedNLines = modelContent.getNumberOfLines();
-			if (nextLineStart == null && nLines > updatedNLines) {
-				// Do nothing except check end of document - "line" object should stay the same if still in bounds
-				if (line.getNumber() >= updatedNLines) {
-					line = null;
+
+			for (int i = 0; i < targets.length; i++) {
+				Position start = cs.getMark(startMark(i));
+				if (start == null) {
+					continue;
 				}
-				else {
-					//this line only runs in unit tests because we've mocked out the setMark functionality
-					//(fix CommandLineTests.testExCommand by refreshing current line length)
-					line = modelContent.getLineInformation(line.getNumber());
+				if (startLine + targets[i] + 1 < nLines) {
+					Position nextStart = cs.getMark(nextLineMark(i));
+					if (nextStart == null || nextStart.getModelOffset() <= start.getModelOffset()) {
+						continue;
+					}
 				}
-			} else if (nextLineStart == null) {
-				// Either we ran out of lines or somebody replaced the contents of the next
-				// line (and the mark) without the file getting shorter
-				if (line.getNumber() + 1 >= updatedNLines) {
-					line = null;
-				} else {
-					// Assume that line + 1 is our target.
-					line = modelContent.getLineInformation(line.getNumber() + 1);
+				executeOnLine(operation,
+						modelContent.getLineInformationOfOffset(start.getModelOffset()), editorAdaptor);
+			}
+		} finally {
+			for (int i = 0; i < marked; i++) {
+				cs.deleteMark(startMark(i));
+				cs.deleteMark(nextLineMark(i));
+			}
+		}
+	}
+
+	private static String startMark(int target) {
+		return TARGET_MARK_PREFIX + target;
+	}
+
+	private static String nextLineMark(int target) {
+		return NEXTLINE_MARK + target;
+	}
+
+	/**
+	 * Finds the lines of <code>text</code> on which <code>regex</code> matches (or doesn't match
+	 * if <code>findMatch</code> is false) with a single scan over the text. Big texts are split
+	 * into chunks of lines which are searched in parallel.
+	 * @return line numbers relative to the start of <code>text</code>, in ascending order.
+	 */
+	static int[] findMatchingLines(final String text, final Pattern regex, final boolean findMatch) {
+		int nLines = 1;
+		for (int i = 0; i < text.length(); i++) {
+			if (isLineDelimiterEnd(text, i)) {
+				nLines++;
+			}
+		}
+		final int[] lineStarts = new int[nLines + 1];
+		int line = 1;
+		for (int i = 0; i < text.length(); i++) {
+			if (isLineDelimiterEnd(text, i)) {
+				lineStarts[line++] = i + 1;
+			}
+		}
+		// Fake start of the line after the text, so that line ends can be derived from it.
+		lineStarts[nLines] = text.length() + 1;
+
+		final boolean[] selected = new boolean[nLines];
+		int nChunks = nLines < PARALLEL_SCAN_MIN_LINES ? 1 : (nLines + SCAN_CHUNK_LINES - 1) / SCAN_CHUNK_LINES;
+		IntStream chunks = IntStream.range(0, nChunks);
+		if (nChunks > 1) {
+			chunks = chunks.parallel();
+		}
+		final int linesPerChunk = nChunks == 1 ? nLines : SCAN_CHUNK_LINES;
+		chunks.forEach(new IntConsumer() {
+			@Override
+			public void accept(int chunk) {
+				Matcher matcher = regex.matcher(text);
+				int last = Math.min(lineStarts.length - 1, (chunk + 1) * linesPerChunk);
+				for (int i = chunk * linesPerChunk; i < last; i++) {
+					int lineEnd = lineStarts[i + 1] - 1;
+					if (lineEnd > lineStarts[i] && text.charAt(lineEnd - 1) == '\r'
+							&& lineEnd < text.length() && text.charAt(lineEnd) == '\n') {
+						lineEnd--;
+					}
+					matcher.region(lineStarts[i], lineEnd);
+					selected[i] = matcher.find() == findMatch;
 				}
-			} else {
-				line = modelContent.getLineInformationOfOffset(nextLineStart.getModelOffset());
 			}
-			linesProcessed++;
+		});
+
+		int count = 0;
+		for (boolean isSelected : selected) {
+			if (isSelected) {
+				count++;
+			}
+		}
+		int[] result = new int[count];
+		count = 0;
+		for (int i = 0; i < nLines; i++) {
+			if (selected[i]) {
+				result[count++] = i;
+			}
+		}
+		return result;
+	}
+
+	private static boolean isLineDelimiterEnd(String text, int index) {
+		char c = text.charAt(index);
+		return c == '\n' || (c == '\r' && (index + 1 == text.length() || text.charAt(index + 1) != '\n'));
+	}
+
+	private void executeOnLine(LineWiseOperation operation, LineInformation line,
+			EditorAdaptor editorAdaptor) {
+		try {
+			LineRange singleLine = SimpleLineRange.singleLineInModel(editorAdaptor, line);
+			operation.execute(editorAdaptor, singleLine);
+		} catch (CommandExecutionException e) {
 		}
-		cs.deleteMark(NEXTLINE_MARK);
 	}
 
 	private boolean processLine(Pattern regex, boolean findMatch, LineWiseOperation operation,
@@ -85,11 +85,7 @@ public final class InsertLineCommand implements Command {
             @Override
             void dumb(EditorAdaptor vim, LineInformation line, String indent) {
                 TextContent p = vim.getModelContent();
-                int begin = line.getEndOffset();
-                if (line.getNumber() == p.getNumberOfLines()-1) {
-                    // there is a character at the end offset, which belongs to the line
-                    begin += 1;
-                }
+                int begin = lineBreakOffset(p, line);
                 String newline = vim.getConfiguration().getNewLine();
                 p.replace(begin, 0, newline+indent);
                 CursorService cursorService = vim.getCursorService();
@@ -111,6 +107,19 @@ public final class InsertLineCommand implements Command {
 
         };
 
+        /**
+         * @return where {@link #POST_CURSOR} inserts the line break when auto-indenting is
+         *     done by Vrapper.
+         */
+        public static int lineBreakOffset(TextContent content, LineInformation line) {
+            int begin = line.getEndOffset();
+            if (line.getNumber() == content.getNumberOfLines()-1) {
+                // there is a character at the end offset, which belongs to the line
+                begin += 1;
+            }
+            return begin;
+        }
+
         abstract void smart(EditorAdaptor vim, LineInformation line);
 
         abstract void dumb(EditorAdaptor vim, LineInformation line, String indent);
@@ -44,6 +44,9 @@ public class JoinLinesCommand extends CountAwareCommand {
     }
 
     /**
+     * Joins the lines in one pass over their text and a single replacement, placing the cursor
+     * where the last two lines were glued together.
+     *
      * @param editorAdaptor
      * @param count
      *            number of lines to be joined from current position. If count <
@@ -58,17 +61,28 @@ public class JoinLinesCommand extends CountAwareCommand {
         }
         
         TextContent modelContent = editorAdaptor.getModelContent();
-        for (int i = 1; i < count; i++) {
-            int modelOffset = editorAdaptor.getPosition().getModelOffset();
-            LineInformation firstLnInfo = modelContent.getLineInformationOfOffset(modelOffset);
-            if (firstLnInfo.getNumber() + 1 == modelContent.getNumberOfLines())
-                throw new CommandExecutionException("there is nothing to join below last line");
-            LineInformation secondLnInfo = modelContent.getLineInformation(firstLnInfo.getNumber() + 1);
-            int eolOffset = firstLnInfo.getEndOffset();
-            int bolOffset = secondLnInfo.getBeginOffset();
-            String secondLineText = modelContent.getText(bolOffset, secondLnInfo.getLength());
-            LineInformation lastLineInfo = modelContent.getLineInformation(modelContent.getNumberOfLines() - 1);
-            String glue;
+        int modelOffset = editorAdaptor.getPosition().getModelOffset();
+        LineInformation firstLnInfo = modelContent.getLineInformationOfOffset(modelOffset);
+        int lastLineNo = modelContent.getNumberOfLines() - 1;
+        if (firstLnInfo.getNumber() == lastLineNo)
+            throw new CommandExecutionException("there is nothing to join below last line");
+        int lastJoinedNo = Math.min(lastLineNo, firstLnInfo.getNumber() + count - 1);
+        LineInformation lastJoinedInfo = modelContent.getLineInformation(lastJoinedNo);
+
+        // Everything from the end of the first line to the end of the last one is rebuilt.
+        int eolOffset = firstLnInfo.getEndOffset();
+        String text = modelContent.getText(eolOffset, lastJoinedInfo.getEndOffset() - eolOffset);
+        StringBuilder joined = new StringBuilder(text.length());
+        // Whether the line joined so far is empty, and whether it ends with whitespace.
+        boolean joinedEmpty = firstLnInfo.getLength() == 0;
+        boolean endsWithWhitespace = ! joinedEmpty && Character.isWhitespace(
+                modelContent.getText(eolOffset - 1, 1).charAt(0));
+        int cursorOffset = eolOffset;
+        for (int lineNo = firstLnInfo.getNumber() + 1; lineNo <= lastJoinedNo; lineNo++) {
+            LineInformation secondLnInfo = modelContent.getLineInformation(lineNo);
+            int bol = secondLnInfo.getBeginOffset() - eolOffset;
+            int eol = bol + secondLnInfo.getLength();
+            String glue = "";
             if (isSmart) {
                 glue = " ";
                 
@@ -76,24 +90,33 @@ public class JoinLinesCommand extends CountAwareCommand {
                 // any space between joined lines (this behavior is not
                 // documented in Vim manual, but experiments show that it works
                 // this way)
-                if (firstLnInfo.getLength() == 0)
+                if (joinedEmpty)
                     glue = "";
-                else if (Character.isWhitespace(modelContent.getText(eolOffset - 1, 1).charAt(0)))
+                else if (endsWithWhitespace)
                     glue = "";
-                for (int j = 0; j < secondLineText.length() && Character.isWhitespace(secondLineText.charAt(j)); j++)
-                    bolOffset++;
+                int textStart = bol;
+                while (textStart < eol && Character.isWhitespace(text.charAt(textStart)))
+                    textStart++;
                 // On last line of file, if it's a blank line, we don't want to append a space
-                if(secondLnInfo.getNumber() == lastLineInfo.getNumber() && secondLineText.length() == 0)
-                     glue = "";
-                else if (modelContent.getText(bolOffset, 1).charAt(0) == ')')
+                if (lineNo == lastLineNo && eol == bol)
                     glue = "";
-            } else
-                glue = "";
-                
-            modelContent.replace(eolOffset, bolOffset - eolOffset, glue);
-            editorAdaptor.setPosition(editorAdaptor.getCursorService().newPositionForModelOffset(eolOffset),
-                    StickyColumnPolicy.ON_CHANGE);
+                else if (textStart < text.length() && text.charAt(textStart) == ')')
+                    glue = "";
+                bol = textStart;
+            }
+            cursorOffset = eolOffset + joined.length();
+            joined.append(glue).append(text, bol, eol);
+            if (joined.length() > 0) {
+                joinedEmpty = false;
+                endsWithWhitespace = Character.isWhitespace(joined.charAt(joined.length() - 1));
+            }
         }
+
+        modelContent.replace(eolOffset, text.length(), joined.toString());
+        editorAdaptor.setPosition(editorAdaptor.getCursorService().newPositionForModelOffset(cursorOffset),
+                StickyColumnPolicy.ON_CHANGE);
+        if (lastJoinedNo < firstLnInfo.getNumber() + count - 1)
+            throw new CommandExecutionException("there is nothing to join below last line");
     }
 
     @Override
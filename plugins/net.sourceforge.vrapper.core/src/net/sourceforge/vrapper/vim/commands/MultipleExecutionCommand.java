@@ -20,8 +20,12 @@ public class MultipleExecutionCommand implements Command {
         try {
             history.beginCompoundChange();
             history.lock("multipleexecution");
-            for (int i = 0; i < count; i++) {
-                command.execute(editorAdaptor);
+            if (count > 1 && command instanceof BulkRepeatableCommand) {
+                ((BulkRepeatableCommand) command).executeRepeatedly(editorAdaptor, count);
+            } else {
+                for (int i = 0; i < count; i++) {
+                    command.execute(editorAdaptor);
+                }
             }
         } finally {
             history.unlock("multipleexecution");
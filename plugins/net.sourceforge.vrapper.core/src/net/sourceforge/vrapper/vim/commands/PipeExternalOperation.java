@@ -1,13 +1,10 @@
 package net.sourceforge.vrapper.vim.commands;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import net.sourceforge.vrapper.log.VrapperLog;
+import net.sourceforge.vrapper.platform.HistoryService;
 import net.sourceforge.vrapper.platform.TextContent;
 import net.sourceforge.vrapper.utils.LineRange;
 import net.sourceforge.vrapper.utils.Position;
@@ -44,19 +41,15 @@ public class PipeExternalOperation extends AbstractLinewiseOperation {
     @Override
     public void execute(EditorAdaptor editorAdaptor, LineRange lineRange)
             throws CommandExecutionException {
-        editorAdaptor.getHistory().beginCompoundChange();
-        try {
-            doIt(editorAdaptor, lineRange.getRegion(editorAdaptor, 0));
-        } finally {
-            editorAdaptor.getHistory().endCompoundChange();
-        }
+        // The text is replaced in one compound change once the program is done.
+        doIt(editorAdaptor, lineRange.getRegion(editorAdaptor, 0));
     }
 
     public TextOperation repetition() {
         return this;
     }
 
-    protected void doIt(EditorAdaptor editorAdaptor, TextRange range) {
+    protected void doIt(final EditorAdaptor editorAdaptor, final TextRange range) {
         if (externalCommand.isEmpty()) {
             editorAdaptor.getUserInterfaceService().setErrorMessage("syntax error for '!'");
         }
@@ -74,46 +67,71 @@ public class PipeExternalOperation extends AbstractLinewiseOperation {
         	}
         }
 
-        TextContent txt = editorAdaptor.getModelContent();
-        int position = range.getLeftBound().getModelOffset();
-        int length = range.getModelLength();
-        String s = txt.getText(range);
-        try {
-            Process p = ProcessHelper.start(ProcessHelper.splitArgs(externalCommand));
-            BufferedReader stdInput = new BufferedReader(new InputStreamReader(p.getInputStream()));
-            BufferedWriter stdOut   = new BufferedWriter(new OutputStreamWriter(p.getOutputStream()));
-            BufferedReader stdError = new BufferedReader(new InputStreamReader(p.getErrorStream()));
-            boolean endsWithNL = s.endsWith(editorAdaptor.getConfiguration().getNewLine());
-            stdOut.write(s);
-            if (!endsWithNL) {
-                stdOut.write(editorAdaptor.getConfiguration().getNewLine());
-            }
-            stdOut.close();
-            s = ProcessHelper.ReadProcessOutput(stdInput);
-            if (p.waitFor() != 0) {
-                StringBuffer errorMsg = new StringBuffer();
-                while ((s = stdError.readLine()) != null) {
-                    errorMsg.append('\n');
-                    errorMsg.append(s);
+        final TextContent txt = editorAdaptor.getModelContent();
+        final int position = range.getLeftBound().getModelOffset();
+        final int length = range.getModelLength();
+        final int textLength = txt.getTextLength();
+        final String original = txt.getText(range);
+        final boolean endsWithNL = original.endsWith(editorAdaptor.getConfiguration().getNewLine());
+        final String command = externalCommand;
+        String input = original;
+        if (!endsWithNL) {
+            input += editorAdaptor.getConfiguration().getNewLine();
+        }
+        ProcessHelper.ProcessListener listener = new ProcessHelper.ProcessListener() {
+            public void finished(String output) {
+                if (txt.getTextLength() != textLength
+                        || ! txt.getText(position, length).equals(original)) {
+                    editorAdaptor.getUserInterfaceService().setErrorMessage(
+                            "!<cmd> result dropped, text changed while running " + command);
+                    return;
+                }
+                if (!endsWithNL) {
+                    output = VimUtils.stripLastNewline(output);
                 }
-                VrapperLog.error("!<cmd> failed with code " + p.exitValue() + " command: " + externalCommand + errorMsg);
+                HistoryService history = editorAdaptor.getHistory();
+                history.beginCompoundChange();
+                try {
+                    txt.replace(position, length, output);
+                    editorAdaptor.getCursorService().setPosition(range.getLeftBound(),
+                            StickyColumnPolicy.ON_CHANGE);
+                } finally {
+                    history.endCompoundChange();
+                }
+            }
+
+            public void failed(int exitCode, String errors) {
+                String errorMsg = errors.isEmpty() ? "" : "\n" + VimUtils.stripLastNewline(errors);
+                VrapperLog.error("!<cmd> failed with code " + exitCode + " command: " + command + errorMsg);
                 editorAdaptor.getUserInterfaceService().setErrorMessage(
-                        "!<cmd> failed with code " + p.exitValue() + " command: " + externalCommand + " (Check error log).");
+                        "!<cmd> failed with code " + exitCode + " command: " + command + " (Check error log).");
+            }
+
+            public void aborted(Exception e) {
+                reportError(editorAdaptor, e);
+            }
+        };
+        try {
+            String name = "Filtering lines through " + command;
+            String[] args = ProcessHelper.splitArgs(command);
+            // Inside a macro, :normal, :g or a counted command the next command works on the
+            // filtered text, so it has to be in place already.
+            if (editorAdaptor.getHistory().isLocked()) {
+                ProcessHelper.run(name, args, input, listener);
             } else {
-                if (!endsWithNL)
-                {
-                    s = VimUtils.stripLastNewline(s);
-                }
-                txt.replace(position, length, s);
-                editorAdaptor.getCursorService().setPosition(range.getLeftBound(),
-                        StickyColumnPolicy.ON_CHANGE);
+                ProcessHelper.runInBackground(editorAdaptor.getBackgroundTaskService(), name, args,
+                        input, listener);
             }
         } catch (Exception e) {
-            VrapperLog.error("!<cmd> failed : " + e.getMessage(), e);
-            editorAdaptor.getUserInterfaceService().setErrorMessage("!<cmd> failed : " + e.getMessage());
+            reportError(editorAdaptor, e);
         }
     }
 
+    private static void reportError(EditorAdaptor editorAdaptor, Exception e) {
+        VrapperLog.error("!<cmd> failed : " + e.getMessage(), e);
+        editorAdaptor.getUserInterfaceService().setErrorMessage("!<cmd> failed : " + e.getMessage());
+    }
+
     public static boolean isValid(EditorAdaptor vim, String command) {
         return PIPE_RE.matcher(command).matches();
     }
@@ -0,0 +1,63 @@
+package net.sourceforge.vrapper.vim.commands;
+
+import java.io.IOException;
+import java.util.Queue;
+
+import net.sourceforge.vrapper.vim.EditorAdaptor;
+import net.sourceforge.vrapper.vim.LatencyProfiler;
+
+/**
+ * :profile [start|stop|clear|dump {file}]
+ * Controls the keystroke latency profiler. Without arguments the timings recorded so far are
+ * listed.
+ */
+public class ProfileCommand extends AbstractMessagesCommand {
+
+    private final String action;
+    private final String fileName;
+
+    public ProfileCommand(Queue<String> args) {
+        action = args.isEmpty() ? "" : args.poll();
+        fileName = args.isEmpty() ? null : args.poll();
+    }
+
+    @Override
+    public void execute(EditorAdaptor editorAdaptor) throws CommandExecutionException {
+        LatencyProfiler profiler = LatencyProfiler.INSTANCE;
+        if (action.isEmpty()) {
+            super.execute(editorAdaptor);
+        } else if (action.equals("start")) {
+            profiler.setEnabled(true);
+            editorAdaptor.getUserInterfaceService().setInfoMessage("Profiling keystrokes");
+        } else if (action.equals("stop")) {
+            profiler.setEnabled(false);
+            editorAdaptor.getUserInterfaceService().setInfoMessage("Profiling stopped");
+        } else if (action.equals("clear")) {
+            profiler.reset();
+        } else if (action.equals("dump")) {
+            if (fileName == null) {
+                throw new CommandExecutionException("Argument required");
+            }
+            try {
+                profiler.dump(fileName);
+            } catch (IOException e) {
+                throw new CommandExecutionException("Can't write " + fileName + ": " + e.getMessage());
+            }
+            editorAdaptor.getUserInterfaceService().setInfoMessage("\"" + fileName + "\" written");
+        } else {
+            throw new CommandExecutionException("Invalid argument: " + action);
+        }
+    }
+
+    @Override
+    public boolean isClipped() {
+        return true;
+    }
+
+    @Override
+    protected String getMessages(EditorAdaptor editorAdaptor) {
+        LatencyProfiler profiler = LatencyProfiler.INSTANCE;
+        String state = profiler.isEnabled() ? "" : "Profiling is off, use :profile start\n";
+        return state + profiler.getReport();
+    }
+}
@@ -1,16 +1,17 @@
 package net.sourceforge.vrapper.vim.commands;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import net.sourceforge.vrapper.log.VrapperLog;
+import net.sourceforge.vrapper.platform.HistoryService;
+import net.sourceforge.vrapper.platform.TextContent;
 import net.sourceforge.vrapper.utils.LineRange;
 import net.sourceforge.vrapper.utils.Position;
 import net.sourceforge.vrapper.utils.ProcessHelper;
 import net.sourceforge.vrapper.utils.SimpleLineRange;
 import net.sourceforge.vrapper.utils.TextRange;
+import net.sourceforge.vrapper.utils.VimUtils;
 import net.sourceforge.vrapper.vim.EditorAdaptor;
 import net.sourceforge.vrapper.vim.commands.motions.StickyColumnPolicy;
 
@@ -36,19 +37,15 @@ public class ReadExternalOperation extends AbstractLinewiseOperation {
     @Override
     public void execute(EditorAdaptor editorAdaptor, LineRange lineRange)
             throws CommandExecutionException {
-        editorAdaptor.getHistory().beginCompoundChange();
-        try {
-            doIt(editorAdaptor, lineRange.getRegion(editorAdaptor, 0));
-        } finally {
-            editorAdaptor.getHistory().endCompoundChange();
-        }
+        // The output is inserted in one compound change once the program is done.
+        doIt(editorAdaptor, lineRange.getRegion(editorAdaptor, 0));
     }
 
     public TextOperation repetition() {
         return this;
     }
 
-    protected void doIt(EditorAdaptor editorAdaptor, TextRange range) {
+    protected void doIt(final EditorAdaptor editorAdaptor, final TextRange range) {
         if (externalCommand.isEmpty()) {
             editorAdaptor.getUserInterfaceService().setErrorMessage("syntax error for 'r!'");
         }
@@ -66,33 +63,65 @@ public class ReadExternalOperation extends AbstractLinewiseOperation {
         	}
         }
 
-        try {
-            Process p = ProcessHelper.start(ProcessHelper.splitArgs(externalCommand));
-            BufferedReader stdInput = new BufferedReader(new InputStreamReader(p.getInputStream()));
-            BufferedReader stdError = new BufferedReader(new InputStreamReader(p.getErrorStream()));
-            String s = ProcessHelper.ReadProcessOutput(stdInput);
-            if (p.waitFor() != 0) {
-                StringBuffer errorMsg = new StringBuffer();
-                while ((s = stdError.readLine()) != null) {
-                    errorMsg.append('\n');
-                    errorMsg.append(s);
+        final TextContent txt = editorAdaptor.getModelContent();
+        final int position = range.getLeftBound().getModelOffset();
+        final int length = range.getModelLength();
+        final int textLength = txt.getTextLength();
+        final String original = txt.getText(range);
+        final String command = externalCommand;
+        ProcessHelper.ProcessListener listener = new ProcessHelper.ProcessListener() {
+            public void finished(String output) {
+                if (txt.getTextLength() != textLength
+                        || ! txt.getText(position, length).equals(original)) {
+                    editorAdaptor.getUserInterfaceService().setErrorMessage(
+                            "r!<cmd> result dropped, text changed while running " + command);
+                    return;
                 }
-                VrapperLog.error("r!<cmd> failed with code " + p.exitValue() + " command: " + externalCommand + errorMsg);
+                HistoryService history = editorAdaptor.getHistory();
+                history.beginCompoundChange();
+                try {
+                    // Get start of line after end line
+                    int insertAt = range.getRightBound().getModelOffset();
+                    txt.replace(insertAt, 0, output);
+                    editorAdaptor.getCursorService().setPosition(range.getRightBound(),
+                            StickyColumnPolicy.ON_CHANGE);
+                } finally {
+                    history.endCompoundChange();
+                }
+            }
+
+            public void failed(int exitCode, String errors) {
+                String errorMsg = errors.isEmpty() ? "" : "\n" + VimUtils.stripLastNewline(errors);
+                VrapperLog.error("r!<cmd> failed with code " + exitCode + " command: " + command + errorMsg);
                 editorAdaptor.getUserInterfaceService().setErrorMessage(
-                        "r!<cmd> failed with code " + p.exitValue() + " command: " + externalCommand + " (Check error log).");
+                        "r!<cmd> failed with code " + exitCode + " command: " + command + " (Check error log).");
+            }
+
+            public void aborted(Exception e) {
+                reportError(editorAdaptor, e);
+            }
+        };
+        try {
+            String name = "Reading output of " + command;
+            String[] args = ProcessHelper.splitArgs(command);
+            // Inside a macro, :normal, :g or a counted command the next command works on the
+            // inserted text, so it has to be in place already.
+            if (editorAdaptor.getHistory().isLocked()) {
+                ProcessHelper.run(name, args, null, listener);
             } else {
-                // Get start of line after end line
-                int position = range.getRightBound().getModelOffset();
-                editorAdaptor.getModelContent().replace(position, 0, s);
-                editorAdaptor.getCursorService().setPosition(range.getRightBound(),
-                        StickyColumnPolicy.ON_CHANGE);
+                ProcessHelper.runInBackground(editorAdaptor.getBackgroundTaskService(), name, args,
+                        null, listener);
             }
         } catch (Exception e) {
-            VrapperLog.error("r!<cmd> failed : " + e.getMessage(), e);
-            editorAdaptor.getUserInterfaceService().setErrorMessage("r!<cmd> failed : " + e.getMessage());
+            reportError(editorAdaptor, e);
         }
     }
 
+    private static void reportError(EditorAdaptor editorAdaptor, Exception e) {
+        VrapperLog.error("r!<cmd> failed : " + e.getMessage(), e);
+        editorAdaptor.getUserInterfaceService().setErrorMessage("r!<cmd> failed : " + e.getMessage());
+    }
+
     public static boolean isValid(EditorAdaptor vim, String command) {
         return READ_PIPE_RE.matcher(command).matches();
     }
@@ -0,0 +1,160 @@
+package net.sourceforge.vrapper.vim.commands;
+
+import net.sourceforge.vrapper.platform.CursorService;
+import net.sourceforge.vrapper.platform.HistoryService;
+import net.sourceforge.vrapper.platform.TextContent;
+import net.sourceforge.vrapper.utils.ContentType;
+import net.sourceforge.vrapper.utils.LineInformation;
+import net.sourceforge.vrapper.utils.StringUtils;
+import net.sourceforge.vrapper.utils.VimUtils;
+import net.sourceforge.vrapper.vim.EditorAdaptor;
+import net.sourceforge.vrapper.vim.Options;
+import net.sourceforge.vrapper.vim.commands.motions.StickyColumnPolicy;
+import net.sourceforge.vrapper.vim.register.Register;
+import net.sourceforge.vrapper.vim.register.RegisterContent;
+
+/**
+ * Inserts the text typed in the last Insert mode session again, after running the command which
+ * started that session (e.g. opening a line).
+ * <p>
+ * Repeated insertions are done in bulk: plain insertions paste all copies at once, and lines
+ * opened below the cursor are built into one string whose cursor position is computed instead
+ * of being found by opening them one by one. Other starting commands are simply repeated.
+ */
+public class ReplayInsertionCommand extends CountIgnoringNonRepeatableCommand
+        implements BulkRepeatableCommand {
+
+    private final Command startCommand;
+    private final Register register;
+    private final CountAwareCommand paste;
+
+    /**
+     * @param startCommand command to run before inserting, may be <code>null</code>.
+     * @param register register holding the inserted text.
+     * @param paste {@link PasteAfterCommand#CURSOR_ON_TEXT} or
+     *     {@link PasteBeforeCommand#CURSOR_ON_TEXT}.
+     */
+    public ReplayInsertionCommand(Command startCommand, Register register, CountAwareCommand paste) {
+        this.startCommand = startCommand;
+        this.register = register;
+        this.paste = paste;
+    }
+
+    public void execute(EditorAdaptor editorAdaptor) throws CommandExecutionException {
+        HistoryService history = editorAdaptor.getHistory();
+        try {
+            history.beginCompoundChange();
+            history.lock();
+            replay(editorAdaptor);
+        } finally {
+            history.unlock();
+            history.endCompoundChange();
+        }
+    }
+
+    public void executeRepeatedly(EditorAdaptor editorAdaptor, int count)
+            throws CommandExecutionException {
+        HistoryService history = editorAdaptor.getHistory();
+        try {
+            history.beginCompoundChange();
+            history.lock();
+            if (startCommand == null && paste == PasteBeforeCommand.CURSOR_ON_TEXT) {
+                // Pasting before the cursor one by one would nest the copies into each other,
+                // Vim inserts them next to each other for a counted '.'.
+                paste(editorAdaptor, count);
+            } else if (startCommand == null) {
+                // The first paste may land on an empty line, where the cursor ends up behind the
+                // text instead of on its last character. After that all pastes append.
+                replay(editorAdaptor);
+                if (count > 1) {
+                    paste(editorAdaptor, count - 1);
+                }
+            } else if (startCommand == InsertLineCommand.POST_CURSOR && canOpenLinesAtOnce(editorAdaptor)) {
+                replay(editorAdaptor);
+                if (count > 1) {
+                    openLines(editorAdaptor, count - 1);
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    replay(editorAdaptor);
+                }
+            }
+        } finally {
+            history.unlock();
+            history.endCompoundChange();
+        }
+    }
+
+    private void replay(EditorAdaptor editorAdaptor) throws CommandExecutionException {
+        if (startCommand != null) {
+            startCommand.execute(editorAdaptor);
+        }
+        paste(editorAdaptor, 1);
+    }
+
+    private void paste(EditorAdaptor editorAdaptor, int count) throws CommandExecutionException {
+        editorAdaptor.getRegisterManager().setActiveRegister(register);
+        try {
+            paste.execute(editorAdaptor, count);
+        } finally {
+            //LastEdit register is an internal affair, don't keep the register active.
+            editorAdaptor.getRegisterManager().activateDefaultRegister();
+        }
+    }
+
+    /**
+     * Lines can be computed up front if Vrapper indents them itself and every new line gets the
+     * indent of the one before.
+     */
+    private boolean canOpenLinesAtOnce(EditorAdaptor editorAdaptor) {
+        RegisterContent content = register.getContent();
+        if (content.getPayloadType() != ContentType.TEXT
+                || editorAdaptor.getConfiguration().get(Options.SMART_INDENT)) {
+            return false;
+        }
+        String text = content.getText();
+        if (text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            return false;
+        }
+        return ! editorAdaptor.getConfiguration().get(Options.AUTO_INDENT)
+                || text.isEmpty() || ! Character.isWhitespace(text.charAt(0));
+    }
+
+    /**
+     * Does what opening a line below the cursor line and pasting the text after the cursor does,
+     * <code>count</code> times, with a single change to the document.
+     */
+    private void openLines(EditorAdaptor editorAdaptor, int count) {
+        TextContent content = editorAdaptor.getModelContent();
+        CursorService cursorService = editorAdaptor.getCursorService();
+        LineInformation line = content.getLineInformationOfOffset(
+                cursorService.getPosition().getModelOffset());
+        String newLine = editorAdaptor.getConfiguration().getNewLine();
+        String indent = editorAdaptor.getConfiguration().get(Options.AUTO_INDENT)
+                ? VimUtils.getIndent(content, line) : "";
+        String text = register.getContent().getText();
+        String openedLine = newLine + indent + text;
+        int begin = InsertLineCommand.Type.lineBreakOffset(content, line);
+        content.replace(begin, 0, StringUtils.multiply(openedLine, count));
+
+        int lastTextStart = begin + openedLine.length() * (count - 1) + newLine.length()
+                + indent.length();
+        int position = lastTextStart + text.length();
+        // Pasting after the cursor leaves the cursor on the last character, unless the line was
+        // empty before.
+        if (indent.length() > 0) {
+            position -= 1;
+        }
+        cursorService.setMark(CursorService.LAST_CHANGE_START,
+                cursorService.newPositionForModelOffset(lastTextStart));
+        cursorService.setMark(CursorService.LAST_CHANGE_END,
+                cursorService.newPositionForModelOffset(lastTextStart + text.length() - 1));
+        editorAdaptor.setPosition(cursorService.newPositionForModelOffset(position),
+                StickyColumnPolicy.ON_CHANGE);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("replayInsertion(%s, %s)", startCommand, paste);
+    }
+}
@@ -1,17 +1,15 @@
 package net.sourceforge.vrapper.vim.commands;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Set;
-import java.util.TreeSet;
 
 import net.sourceforge.vrapper.platform.TextContent;
 import net.sourceforge.vrapper.utils.LineInformation;
 import net.sourceforge.vrapper.utils.LineRange;
-import net.sourceforge.vrapper.utils.NumericStringComparator;
-import net.sourceforge.vrapper.utils.PatternSortComparator;
 import net.sourceforge.vrapper.utils.Position;
 import net.sourceforge.vrapper.utils.SimpleLineRange;
 import net.sourceforge.vrapper.utils.VimUtils;
@@ -140,6 +138,9 @@ public class SortOperation extends AbstractLinewiseOperation {
 
     private String pattern = null;
 
+    /** Ranges with at least this many lines are sorted on all processors. */
+    private static final int PARALLEL_SORT_MIN_LINES = 50000;
+
     public SortOperation(String commandStr) {
         super();
         
@@ -228,23 +229,78 @@ public class SortOperation extends AbstractLinewiseOperation {
      * @return
      */
     private boolean hasNumber(String str, int offset) {
-    	int radix = 10;
-    	     if(binary) radix = 2;
-    	else if(octal)  radix = 8;
-    	else if(hex)    radix = 16;
-    	
-    	if(offset > 0) {
-    		str = str.substring(offset);
-    	}
-        char[] strArr = str.toCharArray();
-        for (char c : strArr) {
-            if (Character.digit(c, radix) != -1)
+        int radix = getRadix();
+        for (int i = Math.max(offset, 0); i < str.length(); i++) {
+            if (Character.digit(str.charAt(i), radix) != -1)
                 return true;
         }
 
         return false;
     }
 
+    private int getRadix() {
+        if(binary) return 2;
+        if(octal)  return 8;
+        if(hex)    return 16;
+        return 10;
+    }
+
+    /**
+     * Gets the value of the first number in the string starting at <code>offset</code>. In
+     * decimal mode, one leading '-' is included. Binary and octal numbers are read as if their
+     * digits were decimal, which keeps their order. Returns 0 if there is no number.
+     */
+    private double getFirstNumber(String str, int offset) {
+        int radix = getRadix();
+        int start = offset;
+        while (start < str.length() && ! isAsciiDigit(str.charAt(start), radix)) {
+            start++;
+        }
+        if (start == str.length()) {
+            return 0;
+        }
+        int end = start + 1;
+        while (end < str.length() && isAsciiDigit(str.charAt(end), radix)) {
+            end++;
+        }
+        boolean negative = radix == 10 && start > offset && str.charAt(start - 1) == '-';
+        double value;
+        if (radix == 16) {
+            value = end - start <= 15 ? Long.parseLong(str.substring(start, end), 16)
+                    : new BigInteger(str.substring(start, end), 16).doubleValue();
+        } else if (end - start <= 18) {
+            // Exact, so converting it gives the same double as parsing the digits would.
+            long digits = 0;
+            for (int i = start; i < end; i++) {
+                digits = digits * 10 + (str.charAt(i) - '0');
+            }
+            value = digits;
+        } else {
+            value = Double.parseDouble(str.substring(start, end));
+        }
+        // Adding 0.0 turns -0.0 into 0.0, "-0" and "0" compare equal.
+        return (negative ? -value : value) + 0.0;
+    }
+
+    private static boolean isAsciiDigit(char c, int radix) {
+        if (c >= '0' && c <= '9') {
+            return c - '0' < radix;
+        }
+        return radix == 16 && ((c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F'));
+    }
+
+    /**
+     * Same as the case folding of {@link String#CASE_INSENSITIVE_ORDER}, so that folded strings
+     * can be compared with {@link String#compareTo(String)} instead.
+     */
+    private static String foldCase(String str) {
+        char[] chars = str.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        }
+        return new String(chars);
+    }
+
 	@Override
     public void execute(EditorAdaptor editorAdaptor, LineRange lineRange) throws CommandExecutionException {
         try {
@@ -281,134 +337,214 @@ public class SortOperation extends AbstractLinewiseOperation {
      */
     public void doIt(EditorAdaptor editorAdaptor, LineInformation startLine,
     		LineInformation endLine, int totalLengthOfRange) throws Exception {
-        // Throw the whole editor into an array separated by newlines
         String newline = editorAdaptor.getConfiguration().getNewLine();
         TextContent content = editorAdaptor.getModelContent();
-        int totalLinesInEditor = content.getNumberOfLines();
-        List<String> editorContentList = new ArrayList<String>();
-        Comparator<String> comp = null;
-        LineInformation line = null;
-       
+
         /* 
-         * Step 1: Put editor text into a sortable array
+         * Step 1: Put editor text into a sortable list
          *         This may be the whole editor or a range
          */
+        int rangeStart = startLine.getBeginOffset();
+        String rangeText = content.getText(rangeStart, endLine.getEndOffset() - rangeStart);
+        List<String> lines = new ArrayList<String>(endLine.getNumber() - startLine.getNumber() + 1);
         for(int i = startLine.getNumber(); i <= endLine.getNumber(); ++i) {
-            line = content.getLineInformation(i);
-            String lineStr = content.getText(line.getBeginOffset(), line.getLength());
-            editorContentList.add(lineStr);
+            LineInformation line = content.getLineInformation(i);
+            lines.add(rangeText.substring(line.getBeginOffset() - rangeStart,
+                    line.getEndOffset() - rangeStart));
+        }
+
+        /*
+         * Step 2: Sort
+         */
+        List<String> sorted = sortLines(lines);
+
+        /*
+         * Step 3: Append newlines to everything but the very last line of the editor
+         */
+        boolean endsWithNewline = endLine.getNumber() < content.getNumberOfLines() - 1;
+        StringBuilder replacementText = new StringBuilder(rangeText.length() + newline.length());
+        for (int i = 0; i < sorted.size(); i++) {
+            replacementText.append(sorted.get(i));
+            if (i < sorted.size() - 1 || endsWithNewline) {
+                replacementText.append(newline);
+            }
         }
-       
+        
+        /*
+         * Step 4: Replace the contents of the editor with the freshly sorted text
+         *         This applies to a range, or the whole editor
+         */
+        editorAdaptor.getModelContent().replace(
+        		startLine.getBeginOffset(),
+        		totalLengthOfRange,
+        		replacementText.toString()
+        		
+		);
+        //put cursor at beginning of sorted text
+        editorAdaptor.setPosition(
+        		editorAdaptor.getCursorService().newPositionForModelOffset(startLine.getBeginOffset()),
+        		StickyColumnPolicy.ON_CHANGE
+        );
+    }
+
+    /**
+     * Sorts lines according to the options of this operation.
+     * <p>
+     * The sort key of every line (the text after the pattern, case folded if needed, or the
+     * number) is extracted once up front into an array, numbers into a <code>double[]</code>.
+     * Only the keys are sorted; each line is then put at the first position of its key, after
+     * the lines with the same key before it, which keeps the sort stable. Lines which have no key
+     * (no match for the pattern, no number) are kept in their order before the sorted lines.
+     * Ranges with at least {@value #PARALLEL_SORT_MIN_LINES} lines are sorted in parallel.
+     */
+    public List<String> sortLines(List<String> lines) {
+        boolean numberSort = numeric || binary || octal || hex;
+        Comparator<String> lineComparator = ignoreCase ? String.CASE_INSENSITIVE_ORDER : null;
+        String[] input = lines.toArray(new String[lines.size()]);
+        int inputCount = input.length;
+
         /*
-         * Step 2: If u was specified, get all unique lines 
-         *         and remove the rest
+         * If u was specified, only keep the first of identical lines. The result is in string
+         * order, which is how ties in the sort below are resolved.
          */
         if (unique) {
-        	//use a Set to remove all duplicates for us
-        	Set<String> set;
-        	if(ignoreCase) {
-        		//TreeSet can take a Comparator as an argument to constructor
-        		set = new TreeSet<String>(String.CASE_INSENSITIVE_ORDER);
-        	} else {
-        		set = new TreeSet<String>();
-        	}
-        	set.addAll(editorContentList);
-            editorContentList = new ArrayList<String>(set);
-            totalLinesInEditor = editorContentList.size();
+            sort(input, inputCount, lineComparator);
+            inputCount = removeAdjacentDuplicates(input, lineComparator);
         }
-       
+
         /*
-         * Step 3: If a pattern was used, handle it
+         * Plain sorts need no keys, compare the lines themselves
          */
-        List<String> candidateList = editorContentList;
-        List<Integer> candidateOffsetList = new ArrayList<Integer>();
-        List<String> nonCandidateList = new ArrayList<String>();
-        if(usePattern) {
-            String candidate;
-            for (int i = 0; i < candidateList.size(); i++) {
-            	candidate = candidateList.get(i);
-
-            	if(candidate.contains(pattern)) {
-            		candidateOffsetList.add( usePatternR ? candidate.indexOf(pattern) : candidate.indexOf(pattern) + pattern.length() );
-            	}
-            	else {
-                	candidateList.remove(i);
-                	i--;
-            		nonCandidateList.add(candidate);
-            	}
+        if ( ! numberSort && ! usePattern) {
+            if ( ! unique) {
+                sort(input, inputCount, lineComparator);
+            }
+            List<String> result = new ArrayList<String>(Arrays.asList(input).subList(0, inputCount));
+            if (reversed) {
+                Collections.reverse(result);
             }
-            
-            comp = new PatternSortComparator(pattern, usePatternR);
+            return result;
         }
 
         /*
-         * Step 4: If a numeric sort was called, separate numeric vs. non-numeric
-         *         Also handle ignore case
+         * Extract sort keys, separating lines which don't have one
          */
-        if (numeric || binary || octal || hex) {
-        	String newLine = editorAdaptor.getConfiguration().getNewLine();
-        	comp = new NumericStringComparator(newLine, binary, octal, hex, pattern, usePatternR);
-
-        	String candidate;
-        	int candidateOffset;
-            for (int i=0; i < candidateList.size(); i++) {
-            	candidate = candidateList.get(i);
-            	candidateOffset = candidateOffsetList.size() > i ? candidateOffsetList.get(i) : -1;
-                if (! hasNumber(candidate, candidateOffset)) {
-                	candidateList.remove(candidate);
-                	i--;
-                    nonCandidateList.add(candidate);
+        String[] keyedLines = new String[inputCount];
+        double[] numbers = numberSort ? new double[inputCount] : null;
+        String[] texts = numberSort ? null : new String[inputCount];
+        int keyCount = 0;
+        List<String> result = new ArrayList<String>(inputCount);
+        List<String> withoutNumber = new ArrayList<String>();
+        for (int i = 0; i < inputCount; i++) {
+            String line = input[i];
+            int offset = 0;
+            if (usePattern) {
+                int index = line.indexOf(pattern);
+                if (index == -1) {
+                    result.add(line);
+                    continue;
+                }
+                offset = usePatternR ? index : index + pattern.length();
+            }
+            if (numberSort) {
+                if ( ! hasNumber(line, offset)) {
+                    withoutNumber.add(line);
+                    continue;
                 }
+                numbers[keyCount] = getFirstNumber(line, offset);
+            } else {
+                String text = line.substring(offset);
+                texts[keyCount] = ignoreCase ? foldCase(text) : text;
             }
-        } else if(ignoreCase) {
-        	comp = String.CASE_INSENSITIVE_ORDER;
+            keyedLines[keyCount++] = line;
         }
-        
+
         /*
-         * Step 5: Perform the actual sorting on all sortable candidates
+         * Perform the actual sorting on the keys, then put the lines where their keys went
          */
-        if(comp == null) { // normal ascii sort
-            Collections.sort(candidateList);
+        String[] sortedLines = new String[keyCount];
+        int[] placed = new int[keyCount];
+        if (numberSort) {
+            double[] sortedNumbers = Arrays.copyOf(numbers, keyCount);
+            if (keyCount >= PARALLEL_SORT_MIN_LINES) {
+                Arrays.parallelSort(sortedNumbers);
+            } else {
+                Arrays.sort(sortedNumbers);
+            }
+            for (int i = 0; i < keyCount; i++) {
+                int first = lowerBound(sortedNumbers, numbers[i]);
+                sortedLines[first + placed[first]++] = keyedLines[i];
+            }
         } else {
-            Collections.sort(candidateList, comp);
+            String[] sortedTexts = Arrays.copyOf(texts, keyCount);
+            sort(sortedTexts, keyCount, null);
+            for (int i = 0; i < keyCount; i++) {
+                int first = lowerBound(sortedTexts, texts[i]);
+                sortedLines[first + placed[first]++] = keyedLines[i];
+            }
         }
-        
-        // Add non-sorted rows before sorted rows, per Vim behavior
-        editorContentList = new ArrayList<String>(nonCandidateList);
-        editorContentList.addAll(candidateList);
+        // Lines without a match come first, then those without a number, then the sorted ones.
+        result.addAll(withoutNumber);
+        result.addAll(Arrays.asList(sortedLines));
 
         if (reversed) {
-            Collections.reverse(editorContentList);
+            Collections.reverse(result);
         }
+        return result;
+    }
 
-        /*
-         * Step 6: Append newlines to everything but the very last line of the editor
-         */
-        StringBuilder replacementText = new StringBuilder();
-        int count = startLine.getNumber();
-        for (String editorLine : editorContentList) {
-            if(count != totalLinesInEditor - 1) {
-                editorLine += newline;
+    /** Stable sort of the first <code>count</code> elements, in parallel for large ranges. */
+    private static <T> void sort(T[] elements, int count, Comparator<? super T> comparator) {
+        if (count >= PARALLEL_SORT_MIN_LINES) {
+            Arrays.parallelSort(elements, 0, count, comparator);
+        } else {
+            Arrays.sort(elements, 0, count, comparator);
+        }
+    }
+
+    /**
+     * Keeps the first line of every run of identical lines of a sorted array, moving them to the
+     * front. Returns how many lines are left.
+     */
+    private static int removeAdjacentDuplicates(String[] lines, Comparator<String> comparator) {
+        int count = 0;
+        for (int i = 0; i < lines.length; i++) {
+            if (count == 0 || (comparator == null ? ! lines[i].equals(lines[count - 1])
+                    : comparator.compare(lines[i], lines[count - 1]) != 0)) {
+                lines[count++] = lines[i];
             }
-            ++count;
-            replacementText.append(editorLine);
         }
-        
-        /*
-         * Step 7: Replace the contents of the editor with the freshly sorted text
-         *         This applies to a range, or the whole editor
-         */
-        editorAdaptor.getModelContent().replace(
-        		startLine.getBeginOffset(),
-        		totalLengthOfRange,
-        		replacementText.toString()
-        		
-		);
-        //put cursor at beginning of sorted text
-        editorAdaptor.setPosition(
-        		editorAdaptor.getCursorService().newPositionForModelOffset(startLine.getBeginOffset()),
-        		StickyColumnPolicy.ON_CHANGE
-        );
+        return count;
+    }
+
+    /** @return index of the first element of the sorted array which is not less than key. */
+    private static int lowerBound(double[] sorted, double key) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Double.compare(sorted[middle], key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /** @return index of the first element of the sorted array which is not less than key. */
+    private static int lowerBound(String[] sorted, String key) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle].compareTo(key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
     }
 
 	public TextOperation repetition() {
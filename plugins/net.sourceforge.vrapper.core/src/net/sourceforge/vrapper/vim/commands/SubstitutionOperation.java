@@ -7,6 +7,7 @@ import net.sourceforge.vrapper.utils.LineRange;
 import net.sourceforge.vrapper.utils.Position;
 import net.sourceforge.vrapper.utils.SimpleLineRange;
 import net.sourceforge.vrapper.utils.SubstitutionDefinition;
+import net.sourceforge.vrapper.utils.SubstitutionResult;
 import net.sourceforge.vrapper.vim.EditorAdaptor;
 
 /**
@@ -44,15 +45,15 @@ public class SubstitutionOperation extends AbstractLinewiseOperation {
 			numReplaces = performReplace(currentLine, subDef.find, subDef.replace, subDef.flags, editorAdaptor);
 			editorAdaptor.getHistory().endCompoundChange();
 		}
-		else {
+		else if (subDef.find.contains("\\%V")) {
 			LineInformation line;
 			int lineChanges = 0;
 
 			int endLine = range.getEndLine();
 			int totalLines = model.getNumberOfLines();
 			int lineDiff;
-			//perform search individually on each line in the range
-			//(so :%s without 'g' flag runs once on each line)
+			//the visual area limits every line to the same region, so search
+			//individually on each line in the range
 			editorAdaptor.getHistory().beginCompoundChange();
 			for(int i=range.getStartLine(); i <= endLine; i++) {
 				line = model.getLineInformation(i);
@@ -73,6 +74,21 @@ public class SubstitutionOperation extends AbstractLinewiseOperation {
 			}
 			editorAdaptor.getHistory().endCompoundChange();
 		}
+		else {
+			SubstitutionResult result;
+			//search each line in the range separately (so :%s without 'g' flag
+			//runs once on each line) but let all changes reach the document at once
+			editorAdaptor.getHistory().beginCompoundChange();
+			if (subDef.find.equals("^") || subDef.find.equals("$")) {
+				result = insertOnEachLine(range, subDef.find.equals("^"), subDef.replace, editorAdaptor);
+			} else {
+				result = editorAdaptor.getSearchAndReplaceService().replaceLines(range.getStartLine(),
+						range.getEndLine(), subDef.find, subDef.replace, subDef.flags);
+			}
+			editorAdaptor.getHistory().endCompoundChange();
+			numReplaces = result.getReplaceCount();
+			lineReplaceCount = result.getLineCount();
+		}
 		
 		if (numReplaces == 0) {
 			editorAdaptor.getUserInterfaceService().setErrorMessage("'"+subDef.find+"' not found");
@@ -121,6 +137,36 @@ public class SubstitutionOperation extends AbstractLinewiseOperation {
 		}
     }
 
+    /**
+     * Inserts the replacement at the beginning (or end) of every line in the range
+     * by rebuilding the range text once, instead of editing the document per line.
+     */
+    private SubstitutionResult insertOnEachLine(LineRange range, boolean atLineStart,
+            String replace, EditorAdaptor editorAdaptor) {
+        TextContent model = editorAdaptor.getModelContent();
+        replace = convertToPlatformNewline(editorAdaptor, replace);
+        // remove any escape characters since we're inserting this string literally (not using regex)
+        replace = replace.replaceAll("((^|[^\\\\])(\\\\\\\\)*)(\\\\)", "$1");
+
+        LineInformation firstLine = model.getLineInformation(range.getStartLine());
+        LineInformation lastLine = model.getLineInformation(range.getEndLine());
+        int rangeStart = firstLine.getBeginOffset();
+        String text = model.getText(rangeStart, lastLine.getEndOffset() - rangeStart);
+
+        int nLines = range.getEndLine() - range.getStartLine() + 1;
+        StringBuilder result = new StringBuilder(text.length() + nLines * replace.length());
+        int copied = 0;
+        for (int i = range.getStartLine(); i <= range.getEndLine(); i++) {
+            LineInformation line = model.getLineInformation(i);
+            int insertAt = (atLineStart ? line.getBeginOffset() : line.getEndOffset()) - rangeStart;
+            result.append(text, copied, insertAt).append(replace);
+            copied = insertAt;
+        }
+        result.append(text, copied, text.length());
+        model.replace(rangeStart, text.length(), result.toString());
+        return new SubstitutionResult(nLines, nLines);
+    }
+
 	/**
 	 * Replace Eclipse's platform independent newline ("\R") with a platform
 	 * specific newline.
@@ -1,15 +1,13 @@
 package net.sourceforge.vrapper.vim.commands;
 
 import java.util.Stack;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import net.sourceforge.vrapper.platform.CursorService;
-import net.sourceforge.vrapper.platform.TextContent;
 import net.sourceforge.vrapper.utils.LineInformation;
 import net.sourceforge.vrapper.utils.Position;
 import net.sourceforge.vrapper.utils.StartEndTextRange;
 import net.sourceforge.vrapper.utils.TextRange;
+import net.sourceforge.vrapper.utils.XmlTagIndex;
 import net.sourceforge.vrapper.vim.EditorAdaptor;
 
 /**
@@ -18,82 +16,80 @@ import net.sourceforge.vrapper.vim.EditorAdaptor;
  * open tag name we're looking for until we find the unbalanced closing tag after
  * the cursor.  This is to handle malformed XML documents with lingering open tags.
  * This aligns with how Vim handles things.
+ * <p>
+ * Tags are looked up in an {@link XmlTagIndex} of the document. Both delimiters are found
+ * together and remembered by the index, so asking for the right one after the left one is free
+ * as long as the document keeps the same index.
  */
 public class XmlTagDelimitedText implements DelimitedText {
-    
-    /**
-     * Don't stare too closely at this regex or it'll burn out your eyes.
-     * If you *must* know what's happening here, this is the breakdown:
-     * (?:  ) = Don't store any parentheses matches as matching groups
-     * <(?!%|!) = '<' *not* followed by '%' or '!' (skip JSP and comments)
-     * (<(?=%)|(?<=%)>|[^<]) = allow '<' followed by '%', or '>' preceded by '%', or any character *not* '<'
-     * {0,1000} = match up to 1,000 characters after '<' (prevent StackOverflow if not in XML)
-     * (?<!%|/)> = end regex with '>' character *not* preceded by '%' or '/' (skip JSP and empty tags)
-     */
-    private static final String XML_TAG_REGEX = "(?:(<(?!%|!)(<(?=%)|(?<=%)>|[^<]){0,1000}(?<!%|/)>))";
-    private static final Pattern tagPattern = Pattern.compile(XML_TAG_REGEX, Pattern.DOTALL);
-    
-    private static final String XML_NAME_REGEX = "</?([^\\s]*).*?>";
-    private static final Pattern tagNamePattern = Pattern.compile(XML_NAME_REGEX, Pattern.DOTALL);
-    
-    private TextRange endTag;
-    private TextRange openTag;
-	
+
     @Override
     public TextRange leftDelimiter(int offset, EditorAdaptor editorAdaptor,
             int count) throws CommandExecutionException {
-    	calculateOpenAndCloseTag(offset, editorAdaptor, count);
-        return openTag;
+        XmlTagIndex tags = XmlTagIndex.of(editorAdaptor.getModelContent());
+        int[] openAndClose = calculateOpenAndCloseTag(tags, offset, editorAdaptor, count);
+        return getRange(tags, editorAdaptor, openAndClose[0]);
     }
 
     @Override
     public TextRange rightDelimiter(int offset, EditorAdaptor editorAdaptor,
             int count) throws CommandExecutionException {
-        calculateOpenAndCloseTag(offset, editorAdaptor, count);
-        return endTag;
+        XmlTagIndex tags = XmlTagIndex.of(editorAdaptor.getModelContent());
+        int[] openAndClose = calculateOpenAndCloseTag(tags, offset, editorAdaptor, count);
+        return getRange(tags, editorAdaptor, openAndClose[1]);
     }
     
-    private void calculateOpenAndCloseTag(int offset, EditorAdaptor editorAdaptor, int count) throws CommandExecutionException {
+    /** @return indexes of the open and close tag in <code>tags</code>. */
+    private int[] calculateOpenAndCloseTag(XmlTagIndex tags, int offset, EditorAdaptor editorAdaptor,
+            int count) throws CommandExecutionException {
         if(count == 0) {
     		count = 1;
     	}
+        int[] remembered = tags.getEnclosingTags(offset, count);
+        if (remembered != null) {
+            return remembered;
+        }
     	
-    	Position beginningPosition = getStartingPosition(offset, editorAdaptor);
+    	Position beginningPosition = getStartingPosition(tags, offset, editorAdaptor);
     	
-    	Position startOpenSearch = beginningPosition.addModelOffset(1);
-    	Position startCloseSearch = beginningPosition.addModelOffset(-1);
+    	int startOpenSearch = beginningPosition.getModelOffset() + 1;
+    	int startCloseSearch = beginningPosition.getModelOffset() - 1;
 
+    	int open = -1;
+    	int close = -1;
     	for(int i=0; i < count; i++) {
     		//Vim first looks left for an opening tag to determine what close tag to look for
-    		openTag = getUnbalancedOpenTag(startOpenSearch, editorAdaptor);
-    		String tagName = getTagName(openTag, editorAdaptor);
+    		open = getUnbalancedOpenTag(tags, startOpenSearch);
+    		String tagName = tags.getName(open);
     		
     		//find the first unbalanced closing tag after start
     		//that matches the name of the opening tag we found
-    		endTag = getUnbalancedClosingTag(startCloseSearch, tagName, editorAdaptor);
+    		close = getUnbalancedClosingTag(tags, startCloseSearch, tagName);
     		
     		//prepare for next iteration (if any)
     		//to find the parent open and closing tags to the ones we just found
-    		startOpenSearch = openTag.getLeftBound();
-    		startCloseSearch = endTag.getRightBound();
+    		startOpenSearch = tags.getStart(open);
+    		startCloseSearch = tags.getEnd(close);
     	}
+    	tags.rememberEnclosingTags(offset, count, open, close);
+    	return new int[] { open, close };
     }
 
     /**
      * Account for the possibility that we're in front of a tag (indentation) or inside an opening or closing tag.
      * @throws CommandExecutionException 
      */
-    private Position getStartingPosition(int offset, EditorAdaptor editorAdaptor) throws CommandExecutionException {
+    private Position getStartingPosition(XmlTagIndex tags, int offset, EditorAdaptor editorAdaptor) throws CommandExecutionException {
         Position beginningPosition = editorAdaptor.getCursorService().newPositionForModelOffset(offset);
 
-        if (insideIndentation(beginningPosition, editorAdaptor)) {
+        if (insideIndentation(tags, beginningPosition, editorAdaptor)) {
             // we are in the indentation at the start of a line, move to tags on the right.
-            TextRange tag = findNextTag(beginningPosition, editorAdaptor);
-            String contents = editorAdaptor.getModelContent().getText(tag);
-            if (isCloseTag(contents)) {
-                beginningPosition = tag.getLeftBound();
+            int tag = findNextTag(tags, beginningPosition.getModelOffset());
+            CursorService cursorService = editorAdaptor.getCursorService();
+            if (tags.isCloseTag(tag)) {
+                beginningPosition = cursorService.newPositionForModelOffset(tags.getStart(tag));
             } else {
-                beginningPosition = tag.getRightBound();
+                beginningPosition = cursorService.newPositionForModelOffset(tags.getEnd(tag));
             }
         } else {
             
@@ -115,7 +111,7 @@ public class XmlTagDelimitedText implements DelimitedText {
         return beginningPosition;
     }
     
-    private boolean insideIndentation(Position position, EditorAdaptor editorAdaptor) throws CommandExecutionException {
+    private boolean insideIndentation(XmlTagIndex tags, Position position, EditorAdaptor editorAdaptor) throws CommandExecutionException {
         boolean isIndentation = false;
         
         if (Character.isWhitespace(characterAt(position, editorAdaptor))) {
@@ -137,8 +133,8 @@ public class XmlTagDelimitedText implements DelimitedText {
             }
             if (i < 0) {
                 // If everything on the left is whitespace, check if this is indentation for any tag to the right.
-                TextRange nextTag = findNextTag(position, editorAdaptor);
-                int tagColumn = nextTag.getLeftBound().getModelOffset() - currentLine.getBeginOffset();
+                int nextTag = findNextTag(tags, position.getModelOffset());
+                int tagColumn = tags.getStart(nextTag) - currentLine.getBeginOffset();
                 if (tagColumn < lineText.length()) {
                     i = column;
                     while (i < tagColumn && Character.isWhitespace(lineText.charAt(i))) {
@@ -202,26 +198,19 @@ public class XmlTagDelimitedText implements DelimitedText {
     }
 
     /**
-     * Search backwards for XML tags.  Push every close tag, pop every open tag.
+     * Walk backwards over the XML tags.  Push every close tag, pop every open tag.
      * If we get the open tag we're looking for without a matching close tag, we're inside that tag.
+     * @return index of the tag in <code>tags</code>
      */
-    public TextRange getUnbalancedOpenTag(Position start, EditorAdaptor editorAdaptor) throws CommandExecutionException {
+    private int getUnbalancedOpenTag(XmlTagIndex tags, int start) throws CommandExecutionException {
     	Stack<String> closeTags = new Stack<String>();
-    	TextRange tag;
-    	String contents;
-    	String tagName;
     	
-    	while (true) { //we'll either hit a 'return' or throw an exception
-    		tag = findPreviousTag(start, editorAdaptor);
-    		contents = editorAdaptor.getModelContent().getText(tag);
-    		start = tag.getLeftBound(); //prepare for next iteration
-    		
-    		if(isCloseTag(contents)) {
-    			tagName = getTagName(tag, editorAdaptor);
+    	for (int tag = findPreviousTag(tags, start); tag >= 0; tag--) {
+    		String tagName = tags.getName(tag);
+    		if(tags.isCloseTag(tag)) {
     			closeTags.push(tagName);
     		}
     		else { //open tag
-    			tagName = getTagName(tag, editorAdaptor);
     			if(closeTags.empty()) {
     				//we hit the desired open tag before finding any close tags
     				//the cursor must be inside this tag
@@ -239,119 +228,66 @@ public class XmlTagDelimitedText implements DelimitedText {
     			}
     		}
     	}
-    }
-
-    private boolean isCloseTag(String contents) {
-        return contents.startsWith("</");
+    	throw new CommandExecutionException("The cursor is not within an XML tag");
     }
     
     /**
-     * Search forwards for XML tags.  Push every open tag, pop every close tag.
+     * Walk forwards over the XML tags.  Count every open tag, uncount every close tag.
      * If we get a close tag without an open tag, we're inside that tag.
+     * @return index of the tag in <code>tags</code>
      */
-    public TextRange getUnbalancedClosingTag(Position start, String toFindTagName, EditorAdaptor editorAdaptor) throws CommandExecutionException {
-    	Stack<String> openTags = new Stack<String>();
-    	TextRange tag;
-    	String contents;
-    	String tagName;
+    private int getUnbalancedClosingTag(XmlTagIndex tags, int start, String toFindTagName) throws CommandExecutionException {
+    	int openTags = 0;
     	
-    	while (true) { //we'll either hit a 'return' or throw an exception
-    		tag = findNextTag(start, editorAdaptor);
-    		contents = editorAdaptor.getModelContent().getText(tag);
-    		start = tag.getRightBound(); //prepare for next iteration
-
-    		if(isCloseTag(contents)) {
-    			tagName = getTagName(tag, editorAdaptor);
-    			if(tagName.equals(toFindTagName) && openTags.empty()) {
+    	for (int tag = findNextTag(tags, start); tag < tags.size(); tag++) {
+    		if ( ! tags.getName(tag).equals(toFindTagName)) {
+    			continue;
+    		}
+    		if(tags.isCloseTag(tag)) {
+    			if(openTags == 0) {
     				//we hit a close tag before finding any open tags
     				//the cursor must be inside this tag
     				return tag;
     			}
-    			else if(tagName.equals(toFindTagName)) {
-    				//found the matching close tag for this open tag
-    				//ignore it and keep moving
-    				openTags.pop();
-    			}
+    			//found the matching close tag for this open tag
+    			//ignore it and keep moving
+    			openTags--;
     		}
     		else { //open tag, see if we'll find it's matching close tag
-    			tagName = getTagName(tag, editorAdaptor);
-    			if (tagName.equals(toFindTagName)) {
-    			    openTags.push(tagName);
-    			}
+    			openTags++;
     		}
     	}
+    	throw new CommandExecutionException("The cursor is not within an XML tag");
     }
     
-    
     /**
-     * Search for the next XML tag after start.  Can either be an open tag or
+     * Find the first XML tag at or after start.  Can either be an open tag or
      * close tag.  We'll let the calling method figure out what to do with it.
      */
-    private TextRange findNextTag(Position start, EditorAdaptor editorAdaptor) throws CommandExecutionException {
-        TextContent content = editorAdaptor.getModelContent();
-        int startPos = start.getModelOffset();
-        String textAfterStartPos = getText(editorAdaptor, startPos, content.getTextLength());
-        return rangeForFirstXmlTagWithOffset(editorAdaptor, textAfterStartPos, startPos);
-    }
-
-    private TextRange rangeForFirstXmlTagWithOffset(EditorAdaptor editorAdaptor, String text, int startPos) throws CommandExecutionException {
-        Matcher matcher = tagPattern.matcher(text);
-        if (matcher.find()) {
-            int matchStart = matcher.start() + startPos;
-            int matchEnd = matcher.end() + startPos;
-            return getRange(editorAdaptor, matchStart, matchEnd);
-        } else {
+    private int findNextTag(XmlTagIndex tags, int start) throws CommandExecutionException {
+        int tag = tags.firstStartingAt(start);
+        if (tag < 0) {
             throw new CommandExecutionException("The cursor is not within an XML tag");
         }
+        return tag;
     }
-    
+
     /**
-     * Search for the previous XML tag before start.  Can either be an open tag or
+     * Find the last XML tag ending before start.  Can either be an open tag or
      * close tag.  We'll let the calling method figure out what to do with it.
      */
-    private TextRange findPreviousTag(Position start, EditorAdaptor editorAdaptor) throws CommandExecutionException {
-        int startPos = start.getModelOffset();
-        String textBeforeStartPos = getText(editorAdaptor, 0, startPos);
-        return rangeForLastXmlTag(editorAdaptor, textBeforeStartPos);
-    }
-
-    private TextRange rangeForLastXmlTag(EditorAdaptor editorAdaptor, String text) throws CommandExecutionException {
-        Matcher matcher = tagPattern.matcher(text);
-        TextRange range = null;
-        while (matcher.find()) {
-            int matchStart = matcher.start();
-            int matchEnd = matcher.end();
-            range = getRange(editorAdaptor, matchStart, matchEnd);
-        }
-        
-        if (range != null) {
-            return range;
-        } else {
+    private int findPreviousTag(XmlTagIndex tags, int start) throws CommandExecutionException {
+        int tag = tags.lastEndingAt(start);
+        if (tag < 0) {
             throw new CommandExecutionException("The cursor is not within an XML tag");
         }
+        return tag;
     }
     
-    private String getText(EditorAdaptor editorAdaptor, int from, int to) {
-        return editorAdaptor.getModelContent().getText(from, to - from);
-    }
-
-    /**
-     * @param tagRange The range the tag lies within
-     * @return The contents of the tag
-     */
-    private String getTagName(TextRange tagRange, EditorAdaptor editorAdaptor) {
-    	String contents = editorAdaptor.getModelContent().getText(tagRange);
-    	Matcher matcher = tagNamePattern.matcher(contents);
-    	if (matcher.find()) {
-    	    return matcher.group(1);
-    	}
-    	return "";
-    }
-    
-    private TextRange getRange(EditorAdaptor editorAdaptor, int start, int end) {
+    private TextRange getRange(XmlTagIndex tags, EditorAdaptor editorAdaptor, int tag) {
         CursorService cursorService = editorAdaptor.getCursorService();
-        Position matchBegin = cursorService.newPositionForModelOffset(start);
-        Position matchEnd   = cursorService.newPositionForModelOffset(end);
+        Position matchBegin = cursorService.newPositionForModelOffset(tags.getStart(tag));
+        Position matchEnd   = cursorService.newPositionForModelOffset(tags.getEnd(tag));
         return new StartEndTextRange(matchBegin, matchEnd);
     }
 }
@@ -1,6 +1,7 @@
 package net.sourceforge.vrapper.vim.commands.motions;
 
 import net.sourceforge.vrapper.platform.TextContent;
+import net.sourceforge.vrapper.utils.TextContentCursor;
 import net.sourceforge.vrapper.vim.commands.BorderPolicy;
 import net.sourceforge.vrapper.vim.commands.CommandExecutionException;
 
@@ -32,17 +33,18 @@ public class FindBalancedMotion extends AbstractModelSideMotion {
         int step = backwards ? -1 : 1;
         int depth = count;
         char current;
+        TextContentCursor cursor = new TextContentCursor(content, offset);
         while (backwards ? offset > end : offset < end) {
             offset += step;
-            current = content.getText(offset, 1).charAt(0);
-            if(current == target && !isEscaped(content, offset))
+            current = cursor.charAt(offset);
+            if(current == target && !isEscaped(cursor, offset))
                 --depth;
-            else if (current == pair && !isEscaped(content, offset))
+            else if (current == pair && !isEscaped(cursor, offset))
                 ++depth;
             if (depth == 0)
                 break;
         }
-        if(offset >= content.getTextLength() || depth != 0 || content.getText(offset, 1).charAt(0) != target) {
+        if(offset >= content.getTextLength() || depth != 0 || cursor.charAt(offset) != target) {
             throw new CommandExecutionException("'" + target + "' not found");
         }
         if(!upToTarget) {
@@ -52,11 +54,11 @@ public class FindBalancedMotion extends AbstractModelSideMotion {
     }
     
     //skip over escaped delimiters
-    protected boolean isEscaped(TextContent content, int offset) {
+    protected boolean isEscaped(TextContentCursor cursor, int offset) {
         if(offset == 0 || ignoreEscape) {
             return false;
         }
-        return content.getText(offset - 1, 1).charAt(0) == '\\';
+        return cursor.charAt(offset - 1) == '\\';
     }
 
     protected int getEndSearchOffset(TextContent content, int offset) {
@@ -8,6 +8,7 @@ import net.sourceforge.vrapper.utils.ContentType;
 import net.sourceforge.vrapper.utils.LineInformation;
 import net.sourceforge.vrapper.utils.Position;
 import net.sourceforge.vrapper.utils.StartEndTextRange;
+import net.sourceforge.vrapper.utils.TextContentCursor;
 import net.sourceforge.vrapper.utils.TextRange;
 import net.sourceforge.vrapper.vim.EditorAdaptor;
 import net.sourceforge.vrapper.vim.commands.AbstractTextObject;
@@ -58,11 +59,12 @@ public class FindQuoteMotion extends AbstractModelSideMotion {
 		int eol = line.getEndOffset();
 		int limit = findLeft ? bol : eol;
 		
-		int index = getQuote(content, offset, limit, findLeft);
+		TextContentCursor cursor = new TextContentCursor(content, offset);
+		int index = getQuote(cursor, offset, limit, findLeft);
 		if(findLeft && index == -1) {
 			//there was no quote before the cursor,
 			//maybe there's one after the cursor
-			index = getQuote(content, offset, eol, false);
+			index = getQuote(cursor, offset, eol, false);
 		}
 		
 		if(index == -1) {
@@ -72,14 +74,14 @@ public class FindQuoteMotion extends AbstractModelSideMotion {
 		return index;
 	}
 
-	private int getQuote(TextContent content, int offset, int limit, boolean findLeft) {
+	private int getQuote(TextContentCursor cursor, int offset, int limit, boolean findLeft) {
 		int index = offset;
         int step = findLeft ? -1 : 1;
 		
 		//if the cursor is *on* a quote, the number of quotes before the cursor
         //determines the behavior
-		if(findLeft && isQuote(content, index)) {
-			if(getNumQuotesBeforeOffset(limit, offset, content) % 2 == 0) {
+		if(findLeft && isQuote(cursor, index)) {
+			if(getNumQuotesBeforeOffset(limit, offset, cursor) % 2 == 0) {
 				//there are an even number of quotes before the cursor
 				//that means this quote starts a new balanced set
 				return index;
@@ -92,7 +94,7 @@ public class FindQuoteMotion extends AbstractModelSideMotion {
 		}
 		
 		while( findLeft ? index >= limit : index < limit) {
-			if(isQuote(content, index)) {
+			if(isQuote(cursor, index)) {
 				return index;
 			}
 			index += step;
@@ -100,11 +102,11 @@ public class FindQuoteMotion extends AbstractModelSideMotion {
 		return -1;
 	}
 	
-	private int getNumQuotesBeforeOffset(int bol, int limit, TextContent content) {
+	private int getNumQuotesBeforeOffset(int bol, int limit, TextContentCursor cursor) {
 		int index = bol;
 		int numQuotes = 0;
 		while(index < limit) {
-			if(isQuote(content, index)) {
+			if(isQuote(cursor, index)) {
 				numQuotes++;
 			}
 			index++;
@@ -112,14 +114,14 @@ public class FindQuoteMotion extends AbstractModelSideMotion {
 		return numQuotes;
 	}
 	
-	private boolean isQuote(TextContent content, int offset) {
-	    if(content.getText(offset, 1).charAt(0) == quote) {
+	private boolean isQuote(TextContentCursor cursor, int offset) {
+	    if(cursor.charAt(offset) == quote) {
 	        if(offset == 0) {
 	            return true;
 	        }
 	        else {
 	            //skip escaped quotes
-	            return content.getText(offset - 1, 1).charAt(0) != '\\';
+	            return cursor.charAt(offset - 1) != '\\';
 	        }
 	    }
 	    return false;
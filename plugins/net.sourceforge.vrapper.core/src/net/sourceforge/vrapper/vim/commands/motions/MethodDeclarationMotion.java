@@ -1,6 +1,7 @@
 package net.sourceforge.vrapper.vim.commands.motions;
 
 import net.sourceforge.vrapper.platform.TextContent;
+import net.sourceforge.vrapper.utils.TextContentCursor;
 import net.sourceforge.vrapper.vim.commands.BorderPolicy;
 import net.sourceforge.vrapper.vim.commands.CommandExecutionException;
 
@@ -42,9 +43,10 @@ public class MethodDeclarationMotion extends AbstractModelSideMotion {
         int lastClose = -1;
         int testOffset = 0;
         char testChar;
+        TextContentCursor cursor = new TextContentCursor(content);
 
-        while(testOffset < content.getTextLength()) {
-            testChar = content.getText(testOffset, 1).charAt(0);
+        while(testOffset < cursor.getTextLength()) {
+            testChar = cursor.charAt(testOffset);
             if(testChar == '{') {
                 if(depth == 1) {
                     lastOpen = testOffset;
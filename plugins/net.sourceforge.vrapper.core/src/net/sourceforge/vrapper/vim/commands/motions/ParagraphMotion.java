@@ -1,11 +1,10 @@
 package net.sourceforge.vrapper.vim.commands.motions;
 
-import static net.sourceforge.vrapper.utils.VimUtils.isLineBlank;
-
 import net.sourceforge.vrapper.platform.Configuration;
 import net.sourceforge.vrapper.platform.CursorService;
 import net.sourceforge.vrapper.platform.TextContent;
 import net.sourceforge.vrapper.utils.ContentType;
+import net.sourceforge.vrapper.utils.LineIndentIndex;
 import net.sourceforge.vrapper.utils.LineInformation;
 import net.sourceforge.vrapper.utils.Position;
 import net.sourceforge.vrapper.utils.TextRange;
@@ -34,12 +33,13 @@ public class ParagraphMotion extends CountAwareMotion {
         
         final TextContent modelContent = editorAdaptor.getModelContent();
         final LineInformation currentLine = modelContent.getLineInformationOfOffset(fromPosition.getModelOffset());
+        final LineIndentIndex lines = LineIndentIndex.of(modelContent);
         
         int lineNo = currentLine.getNumber();
         for (int i = 0; i < count; i++) {
-            while (isInRange(modelContent, lineNo) && isLineEmpty(modelContent, lineNo))
+            while (isInRange(modelContent, lineNo) && isLineEmpty(lines, lineNo))
                 lineNo += step;
-            while (isInRange(modelContent, lineNo) && isLineNonEmpty(modelContent, lineNo))
+            while (isInRange(modelContent, lineNo) && isLineNonEmpty(lines, lineNo))
                 lineNo += step;
         }
         
@@ -58,21 +58,20 @@ public class ParagraphMotion extends CountAwareMotion {
         return lineNo;
     }
 
-    protected boolean isLineEmpty(final TextContent content, final int lineNo) {
-        return doesLineEmptinessEqual(true, content, lineNo);
+    protected boolean isLineEmpty(final LineIndentIndex lines, final int lineNo) {
+        return doesLineEmptinessEqual(true, lines, lineNo);
     }
     
-    protected boolean isLineNonEmpty(final TextContent content, final int lineNo) {
-        return doesLineEmptinessEqual(false, content, lineNo);
+    protected boolean isLineNonEmpty(final LineIndentIndex lines, final int lineNo) {
+        return doesLineEmptinessEqual(false, lines, lineNo);
     }
     
     protected boolean isInRange(final TextContent content, final int lineNo) {
         return (lineNo + step >= 0) && (lineNo + step < content.getNumberOfLines());
     }
     
-    protected boolean doesLineEmptinessEqual(final boolean equalWhat, final TextContent content, final int lineNo) {
-        final boolean isEmpty = content.getLineInformation(lineNo).getLength() == 0;
-        return isEmpty == equalWhat;
+    protected boolean doesLineEmptinessEqual(final boolean equalWhat, final LineIndentIndex lines, final int lineNo) {
+        return lines.isEmpty(lineNo) == equalWhat;
     }
     
     @Override
@@ -111,15 +110,16 @@ public class ParagraphMotion extends CountAwareMotion {
             final boolean endsWithEOL = VimUtils.endsWithEOL(editorAdaptor);
             
             final TextContent content = editorAdaptor.getModelContent();
+            final LineIndentIndex lines = LineIndentIndex.of(content);
             int startLineNo = content.getLineInformationOfOffset(editorAdaptor.getPosition().getModelOffset()).getNumber();
             if (endsWithEOL && startLineNo > 0 &&
                     (startLineNo + 1) == content.getNumberOfLines()) {
                 startLineNo--;
             }
             
-            final boolean cursorOnBlank = isLineBlank(content, startLineNo);
+            final boolean cursorOnBlank = lines.isBlank(startLineNo);
             while (startLineNo > 0) {
-                final boolean upperLineIsBlank = isLineBlank(content, startLineNo - 1);
+                final boolean upperLineIsBlank = lines.isBlank(startLineNo - 1);
                 if (cursorOnBlank ^ upperLineIsBlank) {
                     break;
                 }
@@ -144,8 +144,8 @@ public class ParagraphMotion extends CountAwareMotion {
                         // if cursorOnBlank==true, then eat blanks
                         // if cursorOnBlank==false, then eat non-blanks
                         while ((endLineNo + 1) < content.getNumberOfLines() &&
-                                (!cursorOnBlank || isLineBlank(content, endLineNo + 1)) &&
-                                (cursorOnBlank || !isLineBlank(content, endLineNo + 1)))
+                                (!cursorOnBlank || lines.isBlank(endLineNo + 1)) &&
+                                (cursorOnBlank || !lines.isBlank(endLineNo + 1)))
                             endLineNo++;
                         
                         if (endsWithEOL && (endLineNo + 2) == content.getNumberOfLines()) {
@@ -161,7 +161,7 @@ public class ParagraphMotion extends CountAwareMotion {
                                 // This is a special case, where we eat blank
                                 // lines above the current start line
                                 while (startLineNo > 0) {
-                                    if (!isLineBlank(content, startLineNo - 1)) {
+                                    if (!lines.isBlank(startLineNo - 1)) {
                                         break;
                                     }
 
@@ -178,8 +178,8 @@ public class ParagraphMotion extends CountAwareMotion {
                             // if cursorOnBlank==true, then eat non-blanks
                             // if cursorOnBlank==false, then eat blanks
                             while ((endLineNo + 1) < content.getNumberOfLines() &&
-                                    (!cursorOnBlank || !isLineBlank(content, endLineNo + 1)) &&
-                                    (cursorOnBlank || isLineBlank(content, endLineNo + 1)))
+                                    (!cursorOnBlank || !lines.isBlank(endLineNo + 1)) &&
+                                    (cursorOnBlank || lines.isBlank(endLineNo + 1)))
                                 endLineNo++;
 
                             if ((endLineNo + 1) >= content.getNumberOfLines()) {
@@ -211,7 +211,7 @@ public class ParagraphMotion extends CountAwareMotion {
                                 endLineNo++;
                             }
                             else {
-                                final boolean lowerLineIsBlank = isLineBlank(content, endLineNo + 1);
+                                final boolean lowerLineIsBlank = lines.isBlank(endLineNo + 1);
                                 if (isCurrentSectionBlank ^ lowerLineIsBlank) {
                                     break;
                                 }
@@ -5,6 +5,7 @@ import java.util.Map;
 
 import net.sourceforge.vrapper.platform.TextContent;
 import net.sourceforge.vrapper.utils.LineInformation;
+import net.sourceforge.vrapper.utils.TextContentCursor;
 import net.sourceforge.vrapper.vim.commands.BorderPolicy;
 import net.sourceforge.vrapper.vim.commands.CommandExecutionException;
 
@@ -57,8 +58,9 @@ public class ParenthesesMove extends AbstractModelSideMotion {
             // character before.
             startIndex--;
         }
+        TextContentCursor cursor = new TextContentCursor(content, startIndex);
         for (int index = startIndex; index < line.getEndOffset(); index++) {
-            String c = content.getText(index, 1);
+            String c = String.valueOf(cursor.charAt(index));
             if (PARENTHESES.containsKey(c)) {
                 return findMatch(index, PARENTHESES.get(c), content, count);
             }
@@ -214,18 +216,19 @@ public class ParenthesesMove extends AbstractModelSideMotion {
             indexModifier = 1;
         }
 
+        TextContentCursor cursor = new TextContentCursor(content, offset);
         while (index != limit && count > 0) {
             index += indexModifier;
-            String c;
+            char c;
             try {
-            	c = content.getText(index, 1);
+            	c = cursor.charAt(index);
             } catch(Exception e) {
             	return offset;
             }
             
-            if (c.equals(pair.right)) {
+            if (pair.isRight(c)) {
                 depth += rightModifier;
-            } else if (c.equals(pair.left)) {
+            } else if (pair.isLeft(c)) {
                 depth += leftModifier;
             }
             if (depth == 0) {
@@ -254,5 +257,11 @@ public class ParenthesesMove extends AbstractModelSideMotion {
             this.right = right;
             this.backwards = backwards;
         }
+        private boolean isLeft(char c) {
+            return left.length() == 1 && left.charAt(0) == c;
+        }
+        private boolean isRight(char c) {
+            return right.length() == 1 && right.charAt(0) == c;
+        }
     }
 }
@@ -16,6 +16,7 @@ import net.sourceforge.vrapper.keymap.EmptyState;
 import net.sourceforge.vrapper.keymap.KeyStroke;
 import net.sourceforge.vrapper.keymap.SpecialKey;
 import net.sourceforge.vrapper.keymap.State;
+import net.sourceforge.vrapper.keymap.StateCompiler;
 import net.sourceforge.vrapper.keymap.Transition;
 import net.sourceforge.vrapper.keymap.vim.ConstructorWrappers;
 import net.sourceforge.vrapper.log.VrapperLog;
@@ -25,6 +26,8 @@ import net.sourceforge.vrapper.platform.PlatformSpecificStateProvider;
 import net.sourceforge.vrapper.utils.VimUtils;
 import net.sourceforge.vrapper.vim.ConfigurationListener;
 import net.sourceforge.vrapper.vim.EditorAdaptor;
+import net.sourceforge.vrapper.vim.LatencyProfiler;
+import net.sourceforge.vrapper.vim.LatencyProfiler.Phase;
 import net.sourceforge.vrapper.vim.Options;
 import net.sourceforge.vrapper.vim.VimConstants;
 import net.sourceforge.vrapper.vim.commands.Command;
@@ -72,7 +75,8 @@ import net.sourceforge.vrapper.vim.register.RegisterManager;
 /** Base class for normal and visual modes. */
 public abstract class CommandBasedMode extends AbstractMode {
 
-    protected class CommandConfigurationListener implements ConfigurationListener {
+    /** Keeps the pairs of {@link ParenthesesMove} in sync with the 'matchpairs' option. */
+    public static class CommandConfigurationListener implements ConfigurationListener {
 
         public CommandConfigurationListener(EditorAdaptor vim) { }
 
@@ -112,7 +116,6 @@ public abstract class CommandBasedMode extends AbstractMode {
 
     public CommandBasedMode(EditorAdaptor editorAdaptor) {
         super(editorAdaptor);
-        editorAdaptor.getConfiguration().addListener(new CommandConfigurationListener(editorAdaptor));
         currentState = initialState = getInitialState();
         keyMapResolver = buildKeyMapResolver();
         commandBuffer = new StringBuilder();
@@ -138,7 +141,7 @@ public abstract class CommandBasedMode extends AbstractMode {
         if (platformSpecificStateProvider != null)
             key += " for " + platformSpecificStateProvider.getName();
         if (!initialStateCache.containsKey(key))
-            initialStateCache.put(key, buildInitialState());
+            initialStateCache.put(key, new StateCompiler().compile(buildInitialState()));
         return initialStateCache.get(key);
     }
 
@@ -296,7 +299,9 @@ public abstract class CommandBasedMode extends AbstractMode {
     public void executeCommand(Command command)
             throws CommandExecutionException {
         editorAdaptor.getListeners().fireCommandAboutToExecute();
+        long startTime = LatencyProfiler.INSTANCE.start();
         command.execute(editorAdaptor);
+        LatencyProfiler.INSTANCE.record(Phase.EXECUTION, startTime, command);
         editorAdaptor.getListeners().fireCommandExecuted();
         Command repetition = command.repetition();
         if (repetition != null) {
@@ -329,6 +334,7 @@ public abstract class CommandBasedMode extends AbstractMode {
             editorAdaptor.getUserInterfaceService().setErrorMessage(null);
         }
 
+        long startTime = LatencyProfiler.INSTANCE.start();
         Transition<Command> transition = currentState.press(keyStroke);
         
         /* If no transition was found, check if an AltGr modifier was pressed and try with no mods.
@@ -342,6 +348,7 @@ public abstract class CommandBasedMode extends AbstractMode {
         } else {
             keyMapResolver.storeKey(keyStroke);
         }
+        LatencyProfiler.INSTANCE.record(Phase.DISPATCH, startTime, null);
         commandBuffer.append(keyStroke.getCharacter());
         boolean recognized = false;
         if (transition != null) {
@@ -35,6 +35,7 @@ import net.sourceforge.vrapper.vim.VimConstants;
 import net.sourceforge.vrapper.vim.commands.ChangeModeCommand;
 import net.sourceforge.vrapper.vim.commands.Command;
 import net.sourceforge.vrapper.vim.commands.CommandExecutionException;
+import net.sourceforge.vrapper.vim.commands.CountAwareCommand;
 import net.sourceforge.vrapper.vim.commands.CountIgnoringNonRepeatableCommand;
 import net.sourceforge.vrapper.vim.commands.DeleteOperation;
 import net.sourceforge.vrapper.vim.commands.DummyTextObject;
@@ -47,6 +48,7 @@ import net.sourceforge.vrapper.vim.commands.PasteAfterCommand;
 import net.sourceforge.vrapper.vim.commands.PasteBeforeCommand;
 import net.sourceforge.vrapper.vim.commands.PasteRegisterCommand;
 import net.sourceforge.vrapper.vim.commands.RepeatInsertionCommand;
+import net.sourceforge.vrapper.vim.commands.ReplayInsertionCommand;
 import net.sourceforge.vrapper.vim.commands.SwitchRegisterCommand;
 import net.sourceforge.vrapper.vim.commands.TextObject;
 import net.sourceforge.vrapper.vim.commands.TextOperationTextObjectCommand;
@@ -290,7 +292,7 @@ public class InsertMode extends AbstractMode {
         if (repetitionCommand != null)
             repetition = repetitionCommand.repetition();
 
-        Command paste;
+        CountAwareCommand paste;
         if(count > 1) {
             //insert mode with count
             paste = PasteAfterCommand.CURSOR_ON_TEXT;
@@ -310,6 +312,9 @@ public class InsertMode extends AbstractMode {
             deleteCharsCmd = seq(deleteCharsCmd,
                     new TextOperationTextObjectCommand(DeleteOperation.INSTANCE, toDelete));
         }
+        if (deleteCharsCmd == null) {
+            return new ReplayInsertionCommand(repetition, lastEditRegister, paste);
+        }
         return dontRepeat(seq(
                 repetition,
                 deleteCharsCmd,
@@ -41,6 +41,7 @@ import net.sourceforge.vrapper.vim.commands.ListRegistersCommand;
 import net.sourceforge.vrapper.vim.commands.ListUserCommandsCommand;
 import net.sourceforge.vrapper.vim.commands.MotionCommand;
 import net.sourceforge.vrapper.vim.commands.OpenInGvimCommand;
+import net.sourceforge.vrapper.vim.commands.ProfileCommand;
 import net.sourceforge.vrapper.vim.commands.ReadExternalOperation;
 import net.sourceforge.vrapper.vim.commands.RedoCommand;
 import net.sourceforge.vrapper.vim.commands.RepeatLastSubstitutionCommand;
@@ -284,6 +285,17 @@ public class CommandLineParser extends AbstractCommandParser {
                 return null;
             }
         };
+        Evaluator profile = new Evaluator() {
+            public Object evaluate(EditorAdaptor vim, Queue<String> command) {
+                try {
+                    new ProfileCommand(command).execute(vim);
+                }
+                catch (CommandExecutionException e) {
+                    vim.getUserInterfaceService().setErrorMessage(e.getMessage());
+                }
+                return null;
+            }
+        };
         Evaluator delmarks = new Evaluator() {
             public Object evaluate(EditorAdaptor vim, Queue<String> command) {
             	if(command.isEmpty()) {
@@ -468,6 +480,8 @@ public class CommandLineParser extends AbstractCommandParser {
         mapping.add("display", registers);
         mapping.add("marks", marks);
         mapping.add("delmarks", delmarks);
+        mapping.add("profile", profile);
+        mapping.add("prof", profile);
         mapping.add("ls", new CommandWrapper(ListBuffersCommand.INSTANCE));
         mapping.add("buffers", new CommandWrapper(ListBuffersCommand.INSTANCE));
         return mapping;
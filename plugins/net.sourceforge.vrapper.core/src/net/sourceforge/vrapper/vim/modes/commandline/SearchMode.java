@@ -29,7 +29,8 @@ import net.sourceforge.vrapper.vim.modes.ModeSwitchHint;
  */
 public class SearchMode extends AbstractCommandLineMode {
 
-    protected class SearchConfigurationListener implements
+    /** Updates the last search when search options change, whether or not the mode was used. */
+    public static class SearchConfigurationListener implements
             ConfigurationListener {
         
         private EditorAdaptor vim;
@@ -82,7 +83,6 @@ public class SearchMode extends AbstractCommandLineMode {
 
     public SearchMode(EditorAdaptor editorAdaptor) {
         super(editorAdaptor);
-        editorAdaptor.getConfiguration().addListener(new SearchConfigurationListener(editorAdaptor));
     }
 
     /**
@@ -1,5 +1,11 @@
 package net.sourceforge.vrapper.eclipse.activator;
 
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 import org.eclipse.core.expressions.EvaluationResult;
 import org.eclipse.core.expressions.Expression;
 import org.eclipse.core.expressions.ExpressionInfo;
@@ -34,10 +40,14 @@ import org.osgi.service.prefs.BackingStoreException;
 import net.sourceforge.vrapper.eclipse.interceptor.InputInterceptor;
 import net.sourceforge.vrapper.eclipse.interceptor.InputInterceptorManager;
 import net.sourceforge.vrapper.eclipse.interceptor.UnknownEditorException;
+import net.sourceforge.vrapper.eclipse.interceptor.VimInputInterceptorFactory;
+import net.sourceforge.vrapper.eclipse.platform.GlobalMarkRegistry;
+import net.sourceforge.vrapper.eclipse.platform.ProjectFileIndex;
 import net.sourceforge.vrapper.log.Log;
 import net.sourceforge.vrapper.log.VrapperLog;
 import net.sourceforge.vrapper.platform.VrapperPlatformException;
 import net.sourceforge.vrapper.vim.EditorAdaptor;
+import net.sourceforge.vrapper.vim.LatencyProfiler;
 import net.sourceforge.vrapper.vim.modes.InsertMode;
 import net.sourceforge.vrapper.vim.modes.NormalMode;
 import net.sourceforge.vrapper.vim.modes.VisualMode;
@@ -59,6 +69,8 @@ public class VrapperPlugin extends AbstractUIPlugin implements /*IStartup,*/ Log
     private static final String KEY_VRAPPER_ENABLED = "vrapperEnabled";
 
     private static final String COMMAND_TOGGLE_VRAPPER = "net.sourceforge.vrapper.eclipse.commands.toggle";
+
+    private static final String PROFILER_MBEAN_NAME = "net.sourceforge.vrapper:type=LatencyProfiler";
     
     private static final IPreferencesService PREFERENCES_SERVICE = Platform.getPreferencesService();
     // private static final IEclipsePreferences PLUGIN_PREFERENCES = InstanceScope.INSTANCE.getNode(PLUGIN_ID);
@@ -107,6 +119,7 @@ public class VrapperPlugin extends AbstractUIPlugin implements /*IStartup,*/ Log
         super.start(context);
         plugin = this;
         VrapperLog.setImplementation(this);
+        registerProfiler(true);
     }
 
 //    public void earlyStartup() {
@@ -115,11 +128,30 @@ public class VrapperPlugin extends AbstractUIPlugin implements /*IStartup,*/ Log
     @Override
     public void stop(BundleContext context) throws Exception {
         preShutdown();
+        ProjectFileIndex.INSTANCE.dispose();
+        GlobalMarkRegistry.INSTANCE.dispose();
+        VimInputInterceptorFactory.INSTANCE.dispose();
+        registerProfiler(false);
         plugin = null;
         VrapperLog.setImplementation(null);
         super.stop(context);
     }
 
+    /** Makes the keystroke latency profiler available to JMX clients like JConsole. */
+    private static void registerProfiler(boolean register) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(PROFILER_MBEAN_NAME);
+            if (register && ! server.isRegistered(name)) {
+                server.registerMBean(LatencyProfiler.INSTANCE, name);
+            } else if ( ! register && server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            VrapperLog.error("Failed to register the latency profiler with JMX", e);
+        }
+    }
+
     private void preShutdown() throws BackingStoreException {
     	storeVimEmulationOfActiveEditors();
     }
@@ -3,7 +3,7 @@ package net.sourceforge.vrapper.eclipse.commands;
 import net.sourceforge.vrapper.eclipse.activator.VrapperPlugin;
 import net.sourceforge.vrapper.eclipse.interceptor.InputInterceptor;
 import net.sourceforge.vrapper.eclipse.interceptor.UnknownEditorException;
-import net.sourceforge.vrapper.eclipse.platform.EclipseCursorAndSelection;
+import net.sourceforge.vrapper.eclipse.platform.GlobalMarkRegistry;
 import net.sourceforge.vrapper.keymap.KeyStroke;
 import net.sourceforge.vrapper.log.VrapperLog;
 import net.sourceforge.vrapper.platform.VrapperPlatformException;
@@ -18,8 +18,6 @@ import net.sourceforge.vrapper.vim.commands.motions.GoToMarkMotion;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IResource;
-import org.eclipse.core.resources.IWorkspaceRoot;
-import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.ui.IEditorDescriptor;
 import org.eclipse.ui.IEditorInput;
 import org.eclipse.ui.IEditorPart;
@@ -102,8 +100,7 @@ public class GoToMarkCommand extends CountIgnoringNonRepeatableCommand {
         final IWorkbenchPage page = workbench.getActiveWorkbenchWindow().getActivePage();
 
         // Try to open the file from the marker resource
-        IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
-        IMarker marker = EclipseCursorAndSelection.getGlobalMarker(id, root);
+        IMarker marker = GlobalMarkRegistry.INSTANCE.get(id);
         if (marker == null) {
             throw new CommandExecutionException("Global mark not set");
         }
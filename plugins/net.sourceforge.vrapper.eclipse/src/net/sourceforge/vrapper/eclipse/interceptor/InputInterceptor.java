@@ -30,4 +30,7 @@ public interface InputInterceptor extends VerifyKeyListener {
 
     public EclipsePlatform getPlatform();
     public void setPlatform(EclipsePlatform platform);
+
+    /** Removes the listeners the interceptor added by itself, once the editor is closed. */
+    public void uninstallHooks();
 }
@@ -280,12 +280,14 @@ public class InputInterceptorManager implements IPartListener2, IPageChangedList
                 EclipseCursorAndSelection selectionSvc = interceptor.getPlatform().getSelectionService();
 
                 textViewerExt.removeVerifyKeyListener(interceptor);
+                interceptor.uninstallHooks();
                 textViewer.getTextWidget().removeCaretListener(caretPositionHandler);
                 textViewer.getTextWidget().removeMouseListener(caretPositionHandler);
                 textViewer.getSelectionProvider().removeSelectionChangedListener(visualHandler);
                 IOperationHistory operationHistory = PlatformUI.getWorkbench().getOperationSupport().getOperationHistory();
                 operationHistory.removeOperationHistoryListener(caretPositionUndoHandler);
                 selectionSvc.uninstallHooks();
+                interceptor.getPlatform().uninstallHooks();
             } catch (Exception exception) {
                 VrapperLog.error("Exception during closing IWorkbenchPart",
                         exception);
@@ -21,12 +21,15 @@ import net.sourceforge.vrapper.platform.BufferAndTabService;
 import net.sourceforge.vrapper.platform.Configuration.Option;
 import net.sourceforge.vrapper.platform.GlobalConfiguration;
 import net.sourceforge.vrapper.platform.PlatformVrapperLifecycleListener;
+import net.sourceforge.vrapper.platform.SimpleConfiguration;
 import net.sourceforge.vrapper.platform.VrapperPlatformException;
 import net.sourceforge.vrapper.utils.ContentType;
 import net.sourceforge.vrapper.vim.ConfigurationListener;
 import net.sourceforge.vrapper.vim.DefaultConfigProvider;
 import net.sourceforge.vrapper.vim.DefaultEditorAdaptor;
 import net.sourceforge.vrapper.vim.EditorAdaptor;
+import net.sourceforge.vrapper.vim.LatencyProfiler;
+import net.sourceforge.vrapper.vim.LatencyProfiler.Phase;
 import net.sourceforge.vrapper.vim.Options;
 import net.sourceforge.vrapper.vim.SimpleGlobalConfiguration;
 import net.sourceforge.vrapper.vim.register.ReadOnlyRegister;
@@ -38,7 +41,12 @@ import net.sourceforge.vrapper.vim.register.StringRegisterContent;
 import org.eclipse.jface.text.source.ContentAssistantFacade;
 import org.eclipse.jface.text.source.ISourceViewer;
 import org.eclipse.jface.text.source.SourceViewer;
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.jface.util.PropertyChangeEvent;
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.StyledText;
+import org.eclipse.swt.events.PaintEvent;
+import org.eclipse.swt.events.PaintListener;
 import org.eclipse.swt.events.VerifyEvent;
 import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.editors.text.EditorsUI;
@@ -64,6 +72,14 @@ public class VimInputInterceptorFactory implements InputInterceptorFactory {
     private static final HashMap<Character, Character> escapedChars;
     private static final HashSet<Integer> ignoredKeyCodes;
 
+    /** Configurations cache the defaults read from the editors preference store. */
+    private static final IPropertyChangeListener preferenceListener = new IPropertyChangeListener() {
+        @Override
+        public void propertyChange(PropertyChangeEvent event) {
+            SimpleConfiguration.defaultsChanged();
+        }
+    };
+
     private static final GlobalConfiguration sharedConfiguration = setupGlobalConfiguration();
 
     private static final RegisterManager globalRegisterManager;
@@ -165,6 +181,7 @@ public class VimInputInterceptorFactory implements InputInterceptorFactory {
         // Sync debuglog option's value with actual Log setting (read from system properties).
         sharedConfiguration.set(Options.DEBUGLOG, VrapperLog.isDebugEnabled());
         sharedConfiguration.addListener(configListener);
+        EditorsUI.getPreferenceStore().addPropertyChangeListener(preferenceListener);
         return sharedConfiguration;
     }
 
@@ -291,7 +308,12 @@ public class VimInputInterceptorFactory implements InputInterceptorFactory {
         return new VimInputInterceptor(editorAdaptor);
     }
 
-    private static final class VimInputInterceptor implements InputInterceptor {
+    /** Stops listening to the editors preference store, when the plugin is stopped. */
+    public void dispose() {
+        EditorsUI.getPreferenceStore().removePropertyChangeListener(preferenceListener);
+    }
+
+    private static final class VimInputInterceptor implements InputInterceptor, PaintListener {
 
         private final EditorAdaptor editorAdaptor;
         private EditorInfo editorInfo;
@@ -300,6 +322,10 @@ public class VimInputInterceptorFactory implements InputInterceptorFactory {
         private SelectionVisualHandler selectionVisualHandler;
         private CaretPositionUndoHandler caretPositionUndoHandler;
         private EclipsePlatform eclipsePlatform;
+        /** Text widget which reports its repaints to the latency profiler. */
+        private StyledText profiledWidget;
+        /** End of the last key handled while profiling, 0 once the editor has repainted. */
+        private long repaintPendingSince;
 
         private VimInputInterceptor(EditorAdaptor editorAdaptor) {
             this.editorAdaptor = editorAdaptor;
@@ -316,6 +342,8 @@ public class VimInputInterceptorFactory implements InputInterceptorFactory {
             if (ignoredKeyCodes.contains(event.keyCode)) {
                 return;
             }
+            final LatencyProfiler profiler = LatencyProfiler.INSTANCE;
+            final long startTime = profiler.start();
 
             KeyStroke keyStroke;
             EnumSet<Modifier> modifiers = EnumSet.noneOf(Modifier.class);
@@ -351,7 +379,33 @@ public class VimInputInterceptorFactory implements InputInterceptorFactory {
                 }
                 keyStroke = new SimpleKeyStroke(event.character, modifiers);
             }
+            profiler.record(Phase.KEY_TRANSLATION, startTime, null);
             event.doit = !editorAdaptor.handleKey(keyStroke);
+            if (startTime != 0 && event.widget instanceof StyledText) {
+                if (profiledWidget != event.widget) {
+                    uninstallHooks();
+                    profiledWidget = (StyledText) event.widget;
+                    profiledWidget.addPaintListener(this);
+                }
+                repaintPendingSince = profiler.start();
+            }
+        }
+
+        @Override
+        public void paintControl(PaintEvent e) {
+            if (repaintPendingSince != 0) {
+                LatencyProfiler.INSTANCE.record(Phase.REPAINT, repaintPendingSince, null);
+                repaintPendingSince = 0;
+            }
+        }
+
+        @Override
+        public void uninstallHooks() {
+            if (profiledWidget != null && ! profiledWidget.isDisposed()) {
+                profiledWidget.removePaintListener(this);
+            }
+            profiledWidget = null;
+            repaintPendingSince = 0;
         }
 
         public EditorAdaptor getEditorAdaptor() {
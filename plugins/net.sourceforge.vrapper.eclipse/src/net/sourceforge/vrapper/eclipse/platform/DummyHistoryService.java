@@ -80,4 +80,8 @@ public class DummyHistoryService implements IUndoManager, HistoryService {
 		
 	}
 
+	public boolean isLocked() {
+		return false;
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,51 @@
+package net.sourceforge.vrapper.eclipse.platform;
+
+import net.sourceforge.vrapper.platform.BackgroundTaskService;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * Runs background tasks as Eclipse jobs, so they show up in the progress view and can be
+ * cancelled there.
+ */
+public class EclipseBackgroundTaskService implements BackgroundTaskService {
+
+    private final Display display;
+
+    public EclipseBackgroundTaskService(Display display) {
+        this.display = display;
+    }
+
+    @Override
+    public void schedule(final Task task) {
+        Job job = new Job(task.getName()) {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                monitor.beginTask(task.getName(), IProgressMonitor.UNKNOWN);
+                try {
+                    task.run();
+                } finally {
+                    monitor.done();
+                }
+                return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
+            }
+
+            @Override
+            protected void canceling() {
+                task.cancel();
+            }
+        };
+        job.schedule();
+    }
+
+    @Override
+    public void runInEditorThread(Runnable runnable) {
+        if ( ! display.isDisposed()) {
+            display.asyncExec(runnable);
+        }
+    }
+}
@@ -1,20 +1,19 @@
 package net.sourceforge.vrapper.eclipse.platform;
 
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IMarker;
-import org.eclipse.core.resources.IResource;
-import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.IWorkspaceRunnable;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.BadPositionCategoryException;
+import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ITextViewer;
 import org.eclipse.jface.text.ITextViewerExtension5;
@@ -55,6 +54,7 @@ import net.sourceforge.vrapper.utils.CaretType;
 import net.sourceforge.vrapper.utils.ContentType;
 import net.sourceforge.vrapper.utils.LineInformation;
 import net.sourceforge.vrapper.utils.Position;
+import net.sourceforge.vrapper.utils.RingBuffer;
 import net.sourceforge.vrapper.utils.Space;
 import net.sourceforge.vrapper.utils.StartEndTextRange;
 import net.sourceforge.vrapper.utils.TextRange;
@@ -80,7 +80,8 @@ public class EclipseCursorAndSelection implements CursorService, SelectionServic
     private final SelectionChangeListener selectionChangeListener;
     private final StickyColumnUpdater caretListener;
     private final Map<String, org.eclipse.jface.text.Position> marks;
-    private final List<org.eclipse.jface.text.Position> changeList;
+    private final RingBuffer<org.eclipse.jface.text.Position> changeList;
+    private final MarkStore markStore;
     private int changeListIndex;
     private final Configuration configuration;
     private final EclipseTextContent textContent;
@@ -111,7 +112,9 @@ public class EclipseCursorAndSelection implements CursorService, SelectionServic
         selectionChangeListener = new SelectionChangeListener();
         caretListener = new StickyColumnUpdater();
         marks = new HashMap<String, org.eclipse.jface.text.Position>();
-        changeList = new ArrayList<org.eclipse.jface.text.Position>();
+        changeList = new RingBuffer<org.eclipse.jface.text.Position>(
+                Math.max(1, configuration.get(Options.CHANGELIST_SIZE)));
+        markStore = new MarkStore(POSITION_CATEGORY_NAME);
         visualCaretPainter = new VisualCaretPainter();
     }
 
@@ -120,7 +123,7 @@ public class EclipseCursorAndSelection implements CursorService, SelectionServic
         textViewer.getTextWidget().addCaretListener(caretListener);
         textViewer.getTextWidget().addPaintListener(visualCaretPainter);
         textViewer.getSelectionProvider().addSelectionChangedListener(selectionChangeListener);
-        textViewer.getDocument().addPositionCategory(POSITION_CATEGORY_NAME);
+        markStore.connect(textViewer.getDocument());
     }
 
     public void uninstallHooks() {
@@ -130,13 +133,11 @@ public class EclipseCursorAndSelection implements CursorService, SelectionServic
             textViewer.getTextWidget().removePaintListener(visualCaretPainter);
             textViewer.getSelectionProvider().removeSelectionChangedListener(selectionChangeListener);
 
-            // This extra check is necessary because the document we're operating on might be a
-            // different one from the one the textViewer contained during installHooks() invocation.
-            // This document swapping happens if the editor input changed, and we're only triggered
-            // *after* the textViewer changed its document instance.
-            if (textViewer.getDocument().containsPositionCategory(POSITION_CATEGORY_NAME)) {
-                textViewer.getDocument().removePositionCategory(POSITION_CATEGORY_NAME);
-            }
+            // The mark store cleans up the document it was connected to, which might be a
+            // different one from the one the textViewer contains now. This document swapping
+            // happens if the editor input changed, and we're only triggered *after* the
+            // textViewer changed its document instance.
+            markStore.disconnect();
         } catch (RuntimeException e) {
             throw new VrapperPlatformException("Failed to unhook selection listeners", e);
         } catch (BadPositionCategoryException e) {
@@ -619,21 +620,7 @@ public class EclipseCursorAndSelection implements CursorService, SelectionServic
     public Set<String> getAllMarks() {
         //the easy part, get all local marks
         Set<String> allMarks = new HashSet<String>(marks.keySet());
-
-        IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
-        // recursively find all markers in project root
-        try {
-            final IMarker[] markers = root.findMarkers(GLOBAL_MARK_TYPE, true, IResource.DEPTH_INFINITE);
-            for (final IMarker m: markers) {
-                String markName = m.getAttribute(IMarker.MESSAGE, "--");
-                if ( ! markName.equals("--")) {
-                    allMarks.add(markName);
-                }
-            }
-        } catch (CoreException e) {
-            VrapperLog.error("Failed to find markers in resource root " + root, e);
-        }
-
+        allMarks.addAll(GlobalMarkRegistry.INSTANCE.getNames());
         return allMarks;
     }
 
@@ -643,19 +630,30 @@ public class EclipseCursorAndSelection implements CursorService, SelectionServic
             setGlobalMark(id, position);
             return;
         }
-        final org.eclipse.jface.text.Position p = new org.eclipse.jface.text.Position(position.getModelOffset());
+        final org.eclipse.jface.text.Position p;
+        final boolean nearLastChange;
         try {
-            //add listener so Position automatically updates as the document changes
-            textViewer.getDocument().addPosition(p);
+            //the mark store updates the Position as the document changes
+            markStore.connect(textViewer.getDocument());
+            nearLastChange = id == LAST_EDIT_MARK && isNearLastChange(position.getModelOffset());
+            p = markStore.add(position.getModelOffset());
         } catch (final BadLocationException e) {
             throw new VrapperPlatformException("Failed to set mark for " + position, e);
         }
 
         if (id == LAST_EDIT_MARK) {
-            changeList.add(p);
-            if (changeList.size() > 100) {
-                //remove (and stop tracking changes for) old positions
-                textViewer.getDocument().removePosition( changeList.remove(0) );
+            if (nearLastChange) {
+                //like Vim, an edit close to the last one replaces it
+                final int last = changeList.size() - 1;
+                markStore.remove( changeList.get(last) );
+                changeList.set(last, p);
+            } else {
+                updateChangeListSize();
+                //remove (and stop tracking changes for) the oldest position when full
+                final org.eclipse.jface.text.Position dropped = changeList.add(p);
+                if (dropped != null) {
+                    markStore.remove(dropped);
+                }
             }
             //new edit, restart index position
             changeListIndex = changeList.size();
@@ -663,20 +661,50 @@ public class EclipseCursorAndSelection implements CursorService, SelectionServic
         else if (marks.containsKey(id)) {
             //we're about to overwrite an old position
             //no need to track its changes anymore
-            textViewer.getDocument().removePosition( marks.get(id) );
+            markStore.remove( marks.get(id) );
         }
 
         //update mark position
         marks.put(id, p);
     }
 
+    /**
+     * Vim doesn't add an edit to the change list if it is in the same line as the last one and
+     * no more than 'textwidth' (79 if that is 0) columns away from it.
+     */
+    private boolean isNearLastChange(int offset) throws BadLocationException {
+        if (changeList.isEmpty()) {
+            return false;
+        }
+        final org.eclipse.jface.text.Position last = changeList.get(changeList.size() - 1);
+        final IDocument document = textViewer.getDocument();
+        if (last.isDeleted || last.offset > document.getLength()
+                || document.getLineOfOffset(last.offset) != document.getLineOfOffset(offset)) {
+            return false;
+        }
+        int columns = configuration.get(Options.TEXT_WIDTH);
+        if (columns == 0) {
+            columns = 79;
+        }
+        return Math.abs(offset - last.offset) <= columns;
+    }
+
+    private void updateChangeListSize() {
+        final int size = Math.max(1, configuration.get(Options.CHANGELIST_SIZE));
+        if (size != changeList.capacity()) {
+            for (final org.eclipse.jface.text.Position dropped : changeList.setCapacity(size)) {
+                markStore.remove(dropped);
+            }
+        }
+    }
+
     public void deleteMark(String id) {
         if (isGlobalMark(id)) {
             deleteGlobalMark(id);
             return;
         }
         if (marks.containsKey(id)) {
-            textViewer.getDocument().removePosition(marks.get(id));
+            markStore.remove(marks.get(id));
             marks.remove(id);
         }
     }
@@ -694,8 +722,7 @@ public class EclipseCursorAndSelection implements CursorService, SelectionServic
     @Override
     public Position getMark(String id) {
         if (isGlobalMark(id)) {
-            IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
-            IMarker marker = getGlobalMarker(id, root);
+            IMarker marker = GlobalMarkRegistry.INSTANCE.get(id);
             // Check if marker is in the current file.
             if (marker != null) {
                 return getGlobalMarkerPosition(marker);
@@ -722,28 +749,6 @@ public class EclipseCursorAndSelection implements CursorService, SelectionServic
         return newPositionForModelOffset(offset);
     }
 
-    /**
-     * Lookup the specified marker recursively starting at @a resource.
-     * Use @a ResourcesPlugin.getWorkspace().getRoot() to find the marker globally.
-     * @param id marker name
-     * @param resource resource node.
-     * @return marker or @a null if not found.
-     */
-    static public IMarker getGlobalMarker(String id, IResource resource) {
-        try {
-            final IMarker[] markers = resource.findMarkers(GLOBAL_MARK_TYPE, true, IResource.DEPTH_INFINITE);
-            for (final IMarker m: markers) {
-                if (m.getAttribute(IMarker.MESSAGE, "--").equals(id)) {
-                    return m;
-                }
-            }
-        } catch (CoreException e) {
-            // Ignore.
-            VrapperLog.error("Failed to find markers in resource " + resource, e);
-        }
-        return null;
-    }
-
     /**
      * Creates a global bookmark for the specified position.
      * @param name bookmark name
@@ -760,19 +765,26 @@ public class EclipseCursorAndSelection implements CursorService, SelectionServic
             }
             final IFileEditorInput fileInput = (IFileEditorInput)editorInput;
             final IFile file = fileInput.getFile();
-            final IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
             try {
-                final IMarker marker = getGlobalMarker(name, root);
-                if (marker != null) {
-                    marker.delete();
-                }
+                final IMarker oldMarker = GlobalMarkRegistry.INSTANCE.get(name);
                 final HashMap<String, Object> map = new HashMap<String, Object>();
                 MarkerUtilities.setMessage(map, name);
                 final int line = textViewer.getDocument().getLineOfOffset(position.getModelOffset());
                 MarkerUtilities.setLineNumber(map, line);
                 MarkerUtilities.setCharStart(map, position.getModelOffset());
                 MarkerUtilities.setCharEnd(map, position.getModelOffset() + 1);
-                MarkerUtilities.createMarker(file, map, GLOBAL_MARK_TYPE);
+                // Replace the marker in one workspace change.
+                final IMarker[] marker = new IMarker[1];
+                ResourcesPlugin.getWorkspace().run(new IWorkspaceRunnable() {
+                    public void run(IProgressMonitor monitor) throws CoreException {
+                        if (oldMarker != null) {
+                            oldMarker.delete();
+                        }
+                        marker[0] = file.createMarker(GLOBAL_MARK_TYPE);
+                        marker[0].setAttributes(map);
+                    }
+                }, null);
+                GlobalMarkRegistry.INSTANCE.put(name, marker[0]);
             } catch (BadLocationException e) {
                 throw new VrapperPlatformException("Failed to set global mark for " + position, e);
             } catch (CoreException e) {
@@ -789,9 +801,8 @@ public class EclipseCursorAndSelection implements CursorService, SelectionServic
                 // Ignore editors without files.
                 return;
             }
-            final IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
             try {
-                final IMarker marker = getGlobalMarker(name, root);
+                final IMarker marker = GlobalMarkRegistry.INSTANCE.get(name);
                 if (marker != null) {
                     marker.delete();
                 }
@@ -846,10 +857,17 @@ public class EclipseCursorAndSelection implements CursorService, SelectionServic
             return null;
         }
 
+        //a count past either end stops at the end, unless we're already there
         if (index < 0) {
+            if (changeListIndex == 0) {
+                return null;
+            }
             index = 0;
         }
         else if (index >= changeList.size()) {
+            if (changeListIndex == changeList.size() - 1) {
+                return null;
+            }
             index = changeList.size() -1;
         }
 
@@ -858,7 +876,7 @@ public class EclipseCursorAndSelection implements CursorService, SelectionServic
             changeList.remove(index);
             changeListIndex = changeList.size();
             if (p != null) { //deleted
-                textViewer.getDocument().removePosition(p);
+                markStore.remove(p);
             }
             return null;
         }
@@ -3,7 +3,6 @@ package net.sourceforge.vrapper.eclipse.platform;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.regex.Matcher;
@@ -19,9 +18,8 @@ import org.eclipse.core.resources.IFolder;
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
-import org.eclipse.core.resources.IWorkspaceRoot;
-import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.Path;
 import org.eclipse.ui.IEditorDescriptor;
 import org.eclipse.ui.IEditorInput;
 import org.eclipse.ui.IEditorPart;
@@ -390,49 +388,76 @@ public class EclipseFileService implements FileService {
     private String findNextMatchWithPrefix(String prefix, String previous, boolean reverse, IContainer startDir) {
     	boolean foundPrevious = previous == null;
     	
-    	try {
-    		IResource[] toSearch = startDir.members();
-    		if(reverse) {
-    			Collections.reverse(Arrays.asList(toSearch));
+    	List<String> toSearch = getMemberNames(startDir);
+    	if(toSearch == null) {
+    		return prefix;
+    	}
+    	if(reverse) {
+    		Collections.reverse(toSearch);
+    	}
+    	String dirPath = startDir.getProjectRelativePath().toString();
+    	for(String path : toSearch) {
+    		boolean isFolder = path.endsWith("/");
+    		
+    		//prefix is in this folder, go into it
+    		if(isFolder && prefix.startsWith(path)) {
+    			if(previous != null && previous.startsWith(path)) {
+    				previous = previous.substring(path.length());
+    			}
+    			IFolder folder = startDir.getFolder(new Path(path.substring(0, path.length() - 1)));
+    			return path + findNextMatchWithPrefix(prefix.substring(path.length()), previous, reverse, folder);
     		}
-			for(IResource resource : toSearch) {
-				String path = resource.getName();
-				if(resource.getType() == IResource.FOLDER) {
-					path += '/';
-				}
-				
-				//prefix is in this folder, go into it
-				if(resource.getType() == IResource.FOLDER && prefix.startsWith(path)) {
-					if(previous != null && previous.startsWith(path)) {
-						previous = previous.substring(path.length());
-					}
-					return path + findNextMatchWithPrefix(prefix.substring(path.length()), previous, reverse, (IFolder)resource);
-				}
-				//keep looping until we hit the previous match
-				else if( ! foundPrevious) {
-					if(path.equals(previous) || resource.getProjectRelativePath().toString().equals(previous)) {
-						foundPrevious = true;
-					}
-				}
-				else if(path.startsWith(prefix)) {
-					return path;
-				}
-			}
-			//if we never found the previous, try again
-			//but this time, don't look for previous
-			//(useful when 'previous' was in another path)
-			if( ! foundPrevious) {
-				return findNextMatchWithPrefix(prefix, null, reverse, startDir);
-			}
-		} catch (CoreException e) {
-			return prefix;
-		}
+    		//keep looping until we hit the previous match
+    		else if( ! foundPrevious) {
+    			String name = isFolder ? path.substring(0, path.length() - 1) : path;
+    			String relativePath = dirPath.length() == 0 ? name : dirPath + '/' + name;
+    			if(path.equals(previous) || relativePath.equals(previous)) {
+    				foundPrevious = true;
+    			}
+    		}
+    		else if(path.startsWith(prefix)) {
+    			return path;
+    		}
+    	}
+    	//if we never found the previous, try again
+    	//but this time, don't look for previous
+    	//(useful when 'previous' was in another path)
+    	if( ! foundPrevious) {
+    		return findNextMatchWithPrefix(prefix, null, reverse, startDir);
+    	}
     	
     	//couldn't find a more-specific path
     	//the user needs to provide more information
     	return prefix;
     }
     
+    /**
+     * Names of the files and folders in 'dir', folders ending in '/'.
+     * Uses the project's file index when it is ready.
+     * @return list of names or null if 'dir' doesn't exist
+     */
+    private List<String> getMemberNames(IContainer dir) {
+    	List<String> names = ProjectFileIndex.INSTANCE.getMembers(dir.getProject(),
+    	        dir.getProjectRelativePath().toString());
+    	if(names != null) {
+    		return names;
+    	}
+    	names = new ArrayList<String>();
+    	try {
+    		for(IResource resource : dir.members()) {
+    			if(resource.getType() == IResource.FOLDER) {
+    				names.add(resource.getName() + '/');
+    			}
+    			else {
+    				names.add(resource.getName());
+    			}
+    		}
+    	} catch (CoreException e) {
+    		return null;
+    	}
+    	return names;
+    }
+    
     /**
      * Open file with default Eclipse editor.  File may
      * be found under any of the directories within 'paths'.
@@ -510,20 +535,7 @@ public class EclipseFileService implements FileService {
     }
 
     public String getFileNameOfGlobalMark(String name) {
-    	IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
-    	IMarker mark = null;
-        try {
-            final IMarker[] markers = root.findMarkers(IMarker.BOOKMARK, true, IResource.DEPTH_INFINITE);
-            for (final IMarker m: markers) {
-                if (m.getAttribute(IMarker.MESSAGE, "--").equals(name)) {
-                    mark = m;
-                    break;
-                }
-            }
-        } catch (CoreException e) {
-            // Ignore.
-        }
-
+    	IMarker mark = GlobalMarkRegistry.INSTANCE.get(name);
         if(mark == null) {
         	return "";
         }
@@ -568,6 +580,31 @@ public class EclipseFileService implements FileService {
     		start = resolvePath( path.substring(0, path.indexOf('*')) );
     	}
     	
+    	List<String> dirs = ProjectFileIndex.INSTANCE.getFolders(start.getProject(),
+    	        start.getProjectRelativePath().toString());
+    	if(dirs == null) {
+    		//index is still being built, walk the folders
+    		dirs = walkDirectoryNames(start);
+    	}
+    	
+    	if(path.equals("**") || path.equals("/**")) { //if 'root' is in this list
+    		for(int i=0; i < dirs.size(); i++) {
+    			if(dirs.get(i).equals("")) {
+    				//treat root "" as "/" because "" is treated as current dir elsewhere in the algorithm
+    				//also, force "/" to be the first item in the list (otherwise, '.' dirs get precedence)
+    				dirs.remove(i);
+    				dirs.add(0, "/");
+    			}
+    		}
+    	}
+    	
+    	return dirs;
+    }
+    
+    /**
+     * @return sorted paths of 'start' and all directories below it
+     */
+    private List<String> walkDirectoryNames(IContainer start) {
     	ArrayList<IResource> folders = new ArrayList<IResource>();
     	try {
     		folders.add(start);
@@ -585,18 +622,6 @@ public class EclipseFileService implements FileService {
     	}
     	//alphabetical order so we iterate correctly
     	Collections.sort(dirs);
-    	
-    	if(path.equals("**") || path.equals("/**")) { //if 'root' is in this list
-    		for(int i=0; i < dirs.size(); i++) {
-    			if(dirs.get(i).equals("")) {
-    				//treat root "" as "/" because "" is treated as current dir elsewhere in the algorithm
-    				//also, force "/" to be the first item in the list (otherwise, '.' dirs get precedence)
-    				dirs.remove(i);
-    				dirs.add(0, "/");
-    			}
-    		}
-    	}
-    	
     	return dirs;
     }
     
@@ -7,23 +7,41 @@ import java.util.Map;
 
 import net.sourceforge.vrapper.platform.CursorService;
 import net.sourceforge.vrapper.platform.HighlightingService;
+import net.sourceforge.vrapper.utils.IntervalTree.Interval;
 import net.sourceforge.vrapper.utils.StartEndTextRange;
 import net.sourceforge.vrapper.utils.TextRange;
 
+import org.eclipse.jface.preference.IPreferenceStore;
+import org.eclipse.jface.preference.PreferenceConverter;
+import org.eclipse.jface.text.ITextViewer;
 import org.eclipse.jface.text.source.Annotation;
 import org.eclipse.jface.text.source.IAnnotationModel;
 import org.eclipse.jface.text.source.IAnnotationModelExtension;
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.ui.editors.text.EditorsUI;
 import org.eclipse.ui.texteditor.AbstractTextEditor;
+import org.eclipse.ui.texteditor.AnnotationPreference;
 import org.eclipse.ui.texteditor.IDocumentProvider;
 
+/**
+ * Highlights text with annotations of the given type.
+ * <p>
+ * Batches of regions from {@link #highlightRegions(String, String, List)} are painted by a
+ * {@link HighlightPainter} instead if the annotation type is shown as a highlight, because
+ * thousands of annotations slow down the annotation model and every repaint. Those regions use
+ * the annotation's color but don't show up in the rulers.
+ */
 public class EclipseHighlightingService implements HighlightingService {
 
     private final AbstractTextEditor editor;
     private final CursorService cursorService;
+    private final HighlightPainter painter;
 
-    EclipseHighlightingService(AbstractTextEditor editor, CursorService cursorService) {
+    EclipseHighlightingService(AbstractTextEditor editor, ITextViewer textViewer,
+            CursorService cursorService) {
         this.editor = editor;
         this.cursorService = cursorService;
+        this.painter = new HighlightPainter(textViewer);
     }
 
     @Override
@@ -31,6 +49,15 @@ public class EclipseHighlightingService implements HighlightingService {
         "unchecked"}) // Converting to raw map or putting is considered unsafe
     public List<Object> highlightRegions(final String type, final String name, final List<TextRange> regions) {
         List<Object> annotations = new ArrayList<Object>();
+        final Color color = getHighlightColor(type);
+        if (color != null) {
+            for (TextRange region : regions) {
+                annotations.add(painter.add(region.getLeftBound().getModelOffset(),
+                        region.getModelLength(), color));
+            }
+            painter.refresh();
+            return annotations;
+        }
         final IAnnotationModel am = getAnnotationModel();
         if (am instanceof IAnnotationModelExtension) {
             IAnnotationModelExtension ame = (IAnnotationModelExtension) am;
@@ -70,6 +97,15 @@ public class EclipseHighlightingService implements HighlightingService {
 
     @Override
     public TextRange getHighlightedRegion(Object annotationHandle) {
+        if (annotationHandle instanceof Interval) {
+            final Interval<?> region = (Interval<?>) annotationHandle;
+            if (region.isRemoved()) {
+                return null;
+            }
+            return new StartEndTextRange(
+                    cursorService.newPositionForModelOffset(region.getStart()),
+                    cursorService.newPositionForModelOffset(region.getEnd()));
+        }
         final Annotation annotation = (Annotation) annotationHandle;
         final IAnnotationModel am = getAnnotationModel();
         if (am != null && annotation != null) {
@@ -84,7 +120,20 @@ public class EclipseHighlightingService implements HighlightingService {
     }
 
     @Override
+    @SuppressWarnings("unchecked") // Only the painter creates intervals
     public void removeHighlights(List<Object> annotationHandles) {
+        final List<Object> annotationsOnly = new ArrayList<Object>(annotationHandles.size());
+        for (Object handle : annotationHandles) {
+            if (handle instanceof Interval) {
+                painter.remove((Interval<Color>) handle);
+            } else {
+                annotationsOnly.add(handle);
+            }
+        }
+        if (annotationsOnly.size() < annotationHandles.size()) {
+            painter.refresh();
+            annotationHandles = annotationsOnly;
+        }
         final IAnnotationModel am = getAnnotationModel();
         if (am instanceof IAnnotationModelExtension) {
             IAnnotationModelExtension ame = (IAnnotationModelExtension) am;
@@ -102,7 +151,13 @@ public class EclipseHighlightingService implements HighlightingService {
     }
 
     @Override
+    @SuppressWarnings("unchecked") // Only the painter creates intervals
     public void removeHighlighting(Object annotationHandle) {
+        if (annotationHandle instanceof Interval) {
+            painter.remove((Interval<Color>) annotationHandle);
+            painter.refresh();
+            return;
+        }
         final Annotation annotation = (Annotation) annotationHandle;
         final IAnnotationModel am = getAnnotationModel();
         if (am != null && annotation != null) {
@@ -110,6 +165,30 @@ public class EclipseHighlightingService implements HighlightingService {
         }
     }
 
+    /** Removes the painter's listeners from the viewer, once the editor is closed. */
+    void uninstallHooks() {
+        painter.uninstall();
+    }
+
+    /**
+     * @return the color of the annotation type if it is shown as a highlight, otherwise
+     *     <code>null</code>.
+     */
+    private static Color getHighlightColor(String type) {
+        final AnnotationPreference preference =
+                EditorsUI.getAnnotationPreferenceLookup().getAnnotationPreference(type);
+        if (preference == null || preference.getHighlightPreferenceKey() == null
+                || preference.getColorPreferenceKey() == null) {
+            return null;
+        }
+        final IPreferenceStore store = EditorsUI.getPreferenceStore();
+        if ( ! store.getBoolean(preference.getHighlightPreferenceKey())) {
+            return null;
+        }
+        return EditorsUI.getSharedTextColors().getColor(
+                PreferenceConverter.getColor(store, preference.getColorPreferenceKey()));
+    }
+
     private IAnnotationModel getAnnotationModel() {
         IDocumentProvider doc = editor.getDocumentProvider();
         return doc != null ? doc.getAnnotationModel(editor.getEditorInput()) : null;
@@ -51,6 +51,11 @@ public class EclipseHistoryService implements IUndoManager, IUndoManagerExtensio
         unlock("unnamed");
     }
 
+    @Override
+    public boolean isLocked() {
+        return locked;
+    }
+
     @Override
     public void beginCompoundChange() {
         if (!locked) {
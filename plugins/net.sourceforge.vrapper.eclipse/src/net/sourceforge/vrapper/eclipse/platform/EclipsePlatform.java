@@ -14,6 +14,7 @@ import net.sourceforge.vrapper.eclipse.mode.UnionModeProvider;
 import net.sourceforge.vrapper.eclipse.utils.Utils;
 import net.sourceforge.vrapper.log.VrapperLog;
 import net.sourceforge.vrapper.platform.AbstractPlatformSpecificModeProvider;
+import net.sourceforge.vrapper.platform.BackgroundTaskService;
 import net.sourceforge.vrapper.platform.BufferAndTabService;
 import net.sourceforge.vrapper.platform.CursorService;
 import net.sourceforge.vrapper.platform.FileService;
@@ -59,9 +60,10 @@ public class EclipsePlatform implements Platform {
     private final LocalConfiguration localConfiguration;
     private final AbstractTextEditor underlyingEditor;
     private final ISourceViewer underlyingSourceViewer;
-    private final HighlightingService highlightingService;
-    private final SearchAndReplaceService searchAndReplaceService;
+    private final EclipseHighlightingService highlightingService;
+    private final EclipseSearchAndReplaceService searchAndReplaceService;
     private final VrapperModeRecorder vrapperModeRecorder;
+    private final EclipseBackgroundTaskService backgroundTaskService;
     private static final Map<String, PlatformSpecificStateProvider> providerCache = new ConcurrentHashMap<String, PlatformSpecificStateProvider>();
     private static final AtomicReference<PlatformSpecificModeProvider> modeProviderCache= new AtomicReference<PlatformSpecificModeProvider>();
     private static final Map<String, PlatformSpecificTextObjectProvider> textObjProviderCache = new ConcurrentHashMap<String, PlatformSpecificTextObjectProvider>();
@@ -86,8 +88,9 @@ public class EclipsePlatform implements Platform {
         userInterfaceService = new EclipseUserInterfaceService(
                 abstractTextEditor, sourceViewer);
         keyMapProvider = new DefaultKeyMapProvider();
-        highlightingService = new EclipseHighlightingService(abstractTextEditor, cursorAndSelection);
+        highlightingService = new EclipseHighlightingService(abstractTextEditor, sourceViewer, cursorAndSelection);
         searchAndReplaceService = new EclipseSearchAndReplaceService(sourceViewer, localConfiguration, highlightingService);
+        backgroundTaskService = new EclipseBackgroundTaskService(sourceViewer.getTextWidget().getDisplay());
         if (sourceViewer instanceof ITextViewerExtension6) {
             final IUndoManager delegate = ((ITextViewerExtension6) sourceViewer)
                     .getUndoManager();
@@ -142,6 +145,11 @@ public class EclipsePlatform implements Platform {
         return bufferAndTabService;
     }
 
+    @Override
+    public BackgroundTaskService getBackgroundTaskService() {
+        return backgroundTaskService;
+    }
+
     @Override
     public ViewportService getViewportService() {
         return viewportService;
@@ -296,4 +304,14 @@ public class EclipsePlatform implements Platform {
         return highlightingService;
     }
 
+    /**
+     * Removes the listeners which the services added to the viewer when first used. Called
+     * once the editor is closed.
+     */
+    public void uninstallHooks() {
+        textContent.uninstallHooks();
+        searchAndReplaceService.uninstallHooks();
+        highlightingService.uninstallHooks();
+    }
+
 }
@@ -1,15 +1,14 @@
 package net.sourceforge.vrapper.eclipse.platform;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
 import org.eclipse.jface.text.FindReplaceDocumentAdapter;
+import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ITextViewer;
-import org.eclipse.jface.text.Region;
 
 import net.sourceforge.vrapper.log.VrapperLog;
 import net.sourceforge.vrapper.platform.Configuration;
@@ -19,10 +18,8 @@ import net.sourceforge.vrapper.platform.VrapperPlatformException;
 import net.sourceforge.vrapper.utils.Position;
 import net.sourceforge.vrapper.utils.Search;
 import net.sourceforge.vrapper.utils.SearchResult;
-import net.sourceforge.vrapper.utils.Space;
-import net.sourceforge.vrapper.utils.StartEndTextRange;
 import net.sourceforge.vrapper.utils.StringUtils;
-import net.sourceforge.vrapper.utils.TextRange;
+import net.sourceforge.vrapper.utils.SubstitutionResult;
 import net.sourceforge.vrapper.vim.Options;
 
 public class EclipseSearchAndReplaceService implements SearchAndReplaceService {
@@ -32,27 +29,30 @@ public class EclipseSearchAndReplaceService implements SearchAndReplaceService {
     private final HighlightingService highlightingService;
     private final Configuration configuration;
     private Search lastHighlightedSearch;
-    private List<Object> annotations;
     private Object incSearchAnnotation;
     private ITextViewer textViewer;
+    private final SearchPatternCache patternCache;
+    private FindReplaceDocumentAdapter adapter;
+    private IDocument adapterDocument;
+    private final IncrementalSearchHighlighter searchHighlighter;
+    private final SearchMatchIndex matchIndex = new SearchMatchIndex();
 
     public EclipseSearchAndReplaceService(ITextViewer textViewer, final Configuration configuration,
             HighlightingService highlightingService) {
         this.textViewer = textViewer;
         this.highlightingService = highlightingService;
         this.configuration = configuration;
-        this.annotations = Collections.emptyList();
+        this.patternCache = new SearchPatternCache(configuration);
+        this.searchHighlighter = new IncrementalSearchHighlighter(textViewer, configuration,
+                highlightingService, ANNOTATION_TYPE, "Vrapper Search");
     }
 
     public SearchResult find(Search search, Position start) {
         try {
-            FindReplaceDocumentAdapter adapter = new FindReplaceDocumentAdapter(textViewer.getDocument());
-            IRegion result = find(search, start.getModelOffset(), adapter);
+            IRegion result = find(search, start.getModelOffset(), getAdapter());
             Position resultPosition = result != null ? start.setModelOffset(result.getOffset()) : null;
             Position endPosition = result != null ? start.setModelOffset(result.getOffset()+result.getLength()) : null;
             return new SearchResult(resultPosition, endPosition);
-        } catch (BadLocationException e) {
-            return new SearchResult(null, null);
         } catch (PatternSyntaxException e) {
             throw new VrapperPlatformException("Regex uses bad format: " + e.getMessage(), e);
         }
@@ -64,39 +64,118 @@ public class EclipseSearchAndReplaceService implements SearchAndReplaceService {
         final boolean caseSensitive = isCaseSensitive(toFind, flags);
 
         int numReplaces = 0;
-        toFind = convertRegexSearch(toFind);
-        IRegion result;
-        FindReplaceDocumentAdapter adapter = new FindReplaceDocumentAdapter(textViewer.getDocument());
+        toFind = patternCache.translate(toFind);
+        try {
+            numReplaces = replace(getAdapter(), start, end, toFind, replace, replaceAll, reportMatches,
+                    caseSensitive);
+        } catch (BadLocationException e) {
+            VrapperLog.error("Failed to replace '" + toFind + "'", e);
+        }
+        
+        return numReplaces;
+    }
+
+    public SubstitutionResult replaceLines(int startLine, int endLine, String toFind, String replace,
+            String flags) {
+        final boolean replaceAll = flags.contains("g");
+        final boolean reportMatches = flags.contains("n");
+        final boolean caseSensitive = isCaseSensitive(toFind, flags);
+
+        int numReplaces = 0;
+        int lineReplaceCount = 0;
+        toFind = patternCache.translate(toFind);
+        IDocument document = textViewer.getDocument();
         try {
-            result = adapter.find(start, toFind, true, caseSensitive, false, true);
-            if (result != null && result.getOffset() < end) {
-                numReplaces++;
-                if ( ! reportMatches) {
-                    IRegion replacedresult = adapter.replace(replace, true);
-                    // Fix end position when line gets longer or shorter
-                    end = end + (replacedresult.getLength() - result.getLength());
-                    result = replacedresult;
+            // Include the newline of the last line so that patterns ending in \R still match.
+            int rangeStart = document.getLineOffset(startLine);
+            int rangeEnd = endLine + 1 < document.getNumberOfLines()
+                    ? document.getLineOffset(endLine + 1) : document.getLength();
+            String original = document.get(rangeStart, rangeEnd - rangeStart);
+
+            // Replace in a detached copy of the range: it has no listeners, annotations or undo
+            // history, and reusing a single adapter means the pattern only gets compiled once.
+            IDocument scratch = new Document(original);
+            FindReplaceDocumentAdapter adapter = new FindReplaceDocumentAdapter(scratch);
+            int lastLine = endLine - startLine;
+            int totalLines = scratch.getNumberOfLines();
+            for (int i = 0; i <= lastLine; i++) {
+                IRegion line = scratch.getLineInformation(i);
+                int lineChanges = replace(adapter, line.getOffset(), line.getOffset() + line.getLength(),
+                        toFind, replace, replaceAll, reportMatches, caseSensitive);
+                if (lineChanges > 0) {
+                    lineReplaceCount++;
                 }
-                result = adapter.find(result.getOffset() + result.getLength(),
-                        toFind, true, caseSensitive, false, true);
-            }
-            while (replaceAll && result != null && result.getOffset() < end) {
-                numReplaces++;
-                if ( ! reportMatches) {
-                    IRegion replacedresult = adapter.replace(replace, true);
-                    end = end + (replacedresult.getLength() - result.getLength());
-                    result = replacedresult;
+                numReplaces += lineChanges;
+
+                int lineDiff = scratch.getNumberOfLines() - totalLines;
+                if (lineDiff > 0) {
+                    // Skip over lines introduced by this replacement.
+                    i += lineDiff;
                 }
-                result = adapter.find(result.getOffset() + result.getLength(),
-                        toFind, true, caseSensitive, false, true);
+                lastLine += lineDiff;
+                totalLines += lineDiff;
+            }
+
+            if (numReplaces > 0 && ! reportMatches) {
+                applyChangedRegion(document, rangeStart, original, scratch.get());
             }
         } catch (BadLocationException e) {
             VrapperLog.error("Failed to replace '" + toFind + "'", e);
         }
-        
+        return new SubstitutionResult(numReplaces, lineReplaceCount);
+    }
+
+    private int replace(FindReplaceDocumentAdapter adapter, int start, int end, String toFind,
+            String replace, boolean replaceAll, boolean reportMatches, boolean caseSensitive)
+            throws BadLocationException {
+        int numReplaces = 0;
+        IRegion result = adapter.find(start, toFind, true, caseSensitive, false, true);
+        if (result != null && result.getOffset() < end) {
+            numReplaces++;
+            if ( ! reportMatches) {
+                IRegion replacedresult = adapter.replace(replace, true);
+                // Fix end position when line gets longer or shorter
+                end = end + (replacedresult.getLength() - result.getLength());
+                result = replacedresult;
+            }
+            result = adapter.find(result.getOffset() + result.getLength(),
+                    toFind, true, caseSensitive, false, true);
+        }
+        while (replaceAll && result != null && result.getOffset() < end) {
+            numReplaces++;
+            if ( ! reportMatches) {
+                IRegion replacedresult = adapter.replace(replace, true);
+                end = end + (replacedresult.getLength() - result.getLength());
+                result = replacedresult;
+            }
+            result = adapter.find(result.getOffset() + result.getLength(),
+                    toFind, true, caseSensitive, false, true);
+        }
         return numReplaces;
     }
 
+    /**
+     * Writes <code>replaced</code> over <code>original</code> (found at <code>offset</code>) with
+     * a single document edit which leaves the unchanged head and tail alone, so that positions
+     * and marks outside the edited part of the range are kept.
+     */
+    private static void applyChangedRegion(IDocument document, int offset, String original,
+            String replaced) throws BadLocationException {
+        int prefix = 0;
+        int maxPrefix = Math.min(original.length(), replaced.length());
+        while (prefix < maxPrefix && original.charAt(prefix) == replaced.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        int maxSuffix = maxPrefix - prefix;
+        while (suffix < maxSuffix && original.charAt(original.length() - 1 - suffix)
+                == replaced.charAt(replaced.length() - 1 - suffix)) {
+            suffix++;
+        }
+        document.replace(offset + prefix, original.length() - prefix - suffix,
+                replaced.substring(prefix, replaced.length() - suffix));
+    }
+
     public boolean isCaseSensitive(String toFind, String flags) {
         boolean caseSensitive = !configuration.get(Options.IGNORE_CASE)
             || (configuration.get(Options.SMART_CASE)
@@ -111,8 +190,8 @@ public class EclipseSearchAndReplaceService implements SearchAndReplaceService {
     public boolean substitute(int start, String toFind, String flags, String toReplace) {
         boolean success = false;
         try {
-            toFind = convertRegexSearch(toFind);
-            FindReplaceDocumentAdapter adapter = new FindReplaceDocumentAdapter(textViewer.getDocument());
+            toFind = patternCache.translate(toFind);
+            FindReplaceDocumentAdapter adapter = getAdapter();
             IRegion result = adapter.find(start, toFind, true, isCaseSensitive(toFind, flags), false, true);
             if(result != null) {
                 adapter.replace(toReplace, true);
@@ -124,63 +203,56 @@ public class EclipseSearchAndReplaceService implements SearchAndReplaceService {
         return success;
     }
 
-    private IRegion find(Search search, int begin, FindReplaceDocumentAdapter adapter) throws BadLocationException {
-        if(search.isRegExSearch()) {
-            search = convertRegexSearch(search);
+    /**
+     * Returns an adapter for the current document. It is kept between calls because the adapter
+     * holds on to the last compiled pattern, which repeated replaces can then reuse.
+     */
+    private FindReplaceDocumentAdapter getAdapter() {
+        IDocument document = textViewer.getDocument();
+        if (adapter == null || adapterDocument != document) {
+            adapter = new FindReplaceDocumentAdapter(document);
+            adapterDocument = document;
+        }
+        return adapter;
+    }
+
+    /**
+     * Finds the search keyword like {@link FindReplaceDocumentAdapter#find} does, but using
+     * the compiled pattern from the {@link SearchPatternCache} and the matches remembered by the
+     * {@link SearchMatchIndex}.
+     */
+    private IRegion find(Search search, int begin, CharSequence text) {
+        if (search.getKeyword().isEmpty()) {
+            return null;
+        }
+        if (begin < 0 || begin > text.length()) {
+            throw new VrapperPlatformException("Failed to find '" + search.getKeyword() + "' at "
+                    + "offset" + begin + ", offset is invalid.");
         }
-        IRegion result;
         try {
             //Hardcoding wholeWord to false.  If we're doing a wholeWord search,
             //we'll use regex so we have more control over what we consider a
             //"word" (using the iskeyword setting).
-            result = adapter.find(
-                        begin, search.getKeyword(),
-                        !search.isBackward(), search.isCaseSensitive(),
-                        false, search.isRegExSearch());
-        } catch (BadLocationException e) {
-            throw new VrapperPlatformException("Failed to find '" + search.getKeyword() + "' at "
-                    + "offset" + begin + ", offset is invalid.", e);
+            Pattern pattern = patternCache.compile(search.getKeyword(), search.isRegExSearch(),
+                    search.isCaseSensitive());
+            if ( ! search.isBackward()) {
+                IRegion match = matchIndex.findForward(adapterDocument, text, pattern, begin);
+                return match != null && match.getLength() > 0 ? match : null;
+            }
+            // Last match which ends no further than one character after the start offset.
+            return matchIndex.findBackward(adapterDocument, text, pattern, begin + 1);
         } catch (PatternSyntaxException e) {
             throw new VrapperPlatformException("Failed to find '" + search.getKeyword() + "' at "
                     + "offset" + begin + ", search pattern is invalid.", e);
+        } catch (StackOverflowError e) {
+            throw new VrapperPlatformException("Failed to find '" + search.getKeyword() + "' at "
+                    + "offset" + begin + ", search pattern is too complex.");
         }
-        return result;
-    }
-    
-    /**
-     * We're using Eclipse's (Java's) Regex engine for search/replace. However,
-     * a lot of people are used to Vim's syntax for regex. So, check for Vim
-     * regex syntax and map to Eclipse's (Java's) syntax where possible.
-     * \< and \> =  \b   = word boundary
-     * (Feature pending... add support for 'magic' and 'very magic')
-     */
-    private Search convertRegexSearch(Search search) {
-        String keyword = search.getKeyword();
-        keyword = convertRegexSearch(keyword);
-        return new Search(keyword, search.isBackward(), search.isCaseSensitive(), search.getSearchOffset(), search.isRegExSearch());
-    }
-    private String convertRegexSearch(String keyword) {
-        String boundaries = configuration.get(Options.KEYWORDS);
-        
-        //'\k' inserts the character class of the 'iskeyword' setting
-        keyword = keyword.replaceAll("\\\\k", "["+boundaries+"]");
-
-        //In Vim, '\<' and '\>' is the regex for word boundaries. We need to
-        //replace this with valid regex for the Java regex engine.
-        //We *could* just use '\b' for the Java equivalent 'word boundaries'
-        //regex flag but we need to use the 'iskeyword' setting in case
-        //it doesn't match any default word boundary behavior.
-
-        //using look-aheads and look-behinds to make sure we don't select
-        //the word boundary as part of the match
-        keyword = keyword.replaceAll("\\\\<", "(?<!["+boundaries+"])");
-        return keyword.replaceAll("\\\\>", "(?!["+boundaries+"])");
     }
 
     public void removeHighlighting() {
         lastHighlightedSearch = null;
-        highlightingService.removeHighlights(annotations);
-        annotations = Collections.emptyList();
+        searchHighlighter.stop();
     }
 
     public void highlight(Search search) {
@@ -193,21 +265,14 @@ public class EclipseSearchAndReplaceService implements SearchAndReplaceService {
         if (search.isBackward()) {
             search = search.reverse();
         }
-        IRegion result = new Region(0, 0);
-        annotations = new ArrayList<Object>();
         lastHighlightedSearch = search;
+        if (search.getKeyword().isEmpty()) {
+            return;
+        }
         try {
-            FindReplaceDocumentAdapter adapter = new FindReplaceDocumentAdapter(textViewer.getDocument());
-            List<TextRange> rangesToHL = new ArrayList<TextRange>();
-            TextViewerPosition temp = new TextViewerPosition(textViewer, Space.MODEL, 0);
-            while ((result = find(search, result.getOffset()+result.getLength(), adapter)) != null) {
-                Position start = temp.setModelOffset(result.getOffset());
-                Position end = temp.setModelOffset(result.getOffset() + result.getLength());
-                rangesToHL.add(StartEndTextRange.exclusive(start, end));
-            }
-            annotations = highlightingService.highlightRegions(ANNOTATION_TYPE,
-                    "Vrapper Search", rangesToHL);
-        } catch (BadLocationException e) {
+            searchHighlighter.start(patternCache.compile(search.getKeyword(),
+                    search.isRegExSearch(), search.isCaseSensitive()));
+        } catch (PatternSyntaxException e) {
             VrapperLog.error("while highlighting search", e);
         }
     }
@@ -224,4 +289,13 @@ public class EclipseSearchAndReplaceService implements SearchAndReplaceService {
         }
     }
 
+    /**
+     * Stops the match index and the search highlighter from listening to the document and
+     * viewer, once the editor is closed.
+     */
+    void uninstallHooks() {
+        matchIndex.clear();
+        searchHighlighter.stop();
+    }
+
 }
@@ -2,12 +2,15 @@ package net.sourceforge.vrapper.eclipse.platform;
 
 import net.sourceforge.vrapper.platform.TextContent;
 import net.sourceforge.vrapper.platform.VrapperPlatformException;
+import net.sourceforge.vrapper.utils.LineIndentIndex;
 import net.sourceforge.vrapper.utils.LineInformation;
 import net.sourceforge.vrapper.utils.Space;
 import net.sourceforge.vrapper.utils.TextRange;
+import net.sourceforge.vrapper.utils.XmlTagIndex;
 
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
 import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ITextViewer;
 import org.eclipse.jface.text.ITextViewerExtension5;
@@ -21,6 +24,11 @@ public class EclipseTextContent {
     protected ITextViewerExtension5 converter;
     protected TextContent modelSide;
     protected TextContent viewSide;
+    protected LineIndentTracker lineIndentTracker;
+    /** Tags of the document as it was at the modification stamp below. */
+    protected XmlTagIndex xmlTagIndex;
+    protected IDocument xmlTagIndexDocument;
+    protected long xmlTagIndexStamp;
     protected int horizontalPosition;
     protected boolean lineWiseMouseSelection;
 
@@ -29,6 +37,7 @@ public class EclipseTextContent {
         this.converter = OffsetConverter.create(textViewer);
         modelSide = new ModelSideTextContent();
         viewSide = new ViewSideTextContent();
+        lineIndentTracker = new LineIndentTracker(textViewer, modelSide);
     }
 
     public TextContent getModelContent() {
@@ -39,7 +48,15 @@ public class EclipseTextContent {
         return viewSide;
     }
 
-    protected class ModelSideTextContent implements TextContent {
+    /** Removes the listeners of the line indent index, once the editor is closed. */
+    public void uninstallHooks() {
+        lineIndentTracker.uninstall();
+        xmlTagIndex = null;
+        xmlTagIndexDocument = null;
+    }
+
+    protected class ModelSideTextContent implements TextContent, LineIndentIndex.Provider,
+            XmlTagIndex.Provider {
 
         public LineInformation getLineInformation(int line) {
             try {
@@ -119,6 +136,26 @@ public class EclipseTextContent {
             return Space.MODEL;
         }
 
+        public LineIndentIndex getLineIndentIndex() {
+            return lineIndentTracker.getIndex();
+        }
+
+        public XmlTagIndex getXmlTagIndex() {
+            IDocument document = textViewer.getDocument();
+            long stamp = IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+            if (document instanceof IDocumentExtension4) {
+                stamp = ((IDocumentExtension4) document).getModificationStamp();
+            }
+            if (xmlTagIndex == null || document != xmlTagIndexDocument
+                    || stamp != xmlTagIndexStamp
+                    || stamp == IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP) {
+                xmlTagIndex = new XmlTagIndex(document.get());
+                xmlTagIndexDocument = document;
+                xmlTagIndexStamp = stamp;
+            }
+            return xmlTagIndex;
+        }
+
     }
 
     protected class ViewSideTextContent implements TextContent  {
@@ -0,0 +1,148 @@
+package net.sourceforge.vrapper.eclipse.platform;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import net.sourceforge.vrapper.log.VrapperLog;
+
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IMarkerDelta;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+
+/**
+ * Names of the global (A-Z0-9) marks mapped to the markers which store them.
+ * <p>
+ * The markers themselves are persisted by the workspace. They are looked up once, the first time
+ * a global mark is needed, and after that the map follows the marker changes reported to the
+ * workspace listener. This way a lookup doesn't scan all bookmarks of the workspace, which may
+ * include many which weren't set by Vrapper.
+ */
+public class GlobalMarkRegistry implements IResourceChangeListener {
+
+    public static final GlobalMarkRegistry INSTANCE = new GlobalMarkRegistry();
+
+    private final Map<String, IMarker> markers = new HashMap<String, IMarker>();
+    private final Map<IMarker, String> names = new HashMap<IMarker, String>();
+    private boolean loaded;
+    private boolean listening;
+
+    private GlobalMarkRegistry() {
+    }
+
+    /** @return the marker of the global mark, or <code>null</code> if the mark isn't set. */
+    public synchronized IMarker get(String name) {
+        load();
+        IMarker marker = markers.get(name);
+        if (marker != null && ! marker.exists()) {
+            forget(marker);
+            return null;
+        }
+        return marker;
+    }
+
+    /** @return names of all global marks which are set. */
+    public synchronized Set<String> getNames() {
+        load();
+        return new HashSet<String>(markers.keySet());
+    }
+
+    /**
+     * Records a marker which was just created for a global mark, so that it can be found before
+     * the workspace reports the change.
+     */
+    public synchronized void put(String name, IMarker marker) {
+        load();
+        forget(marker);
+        IMarker old = markers.put(name, marker);
+        if (old != null) {
+            names.remove(old);
+        }
+        names.put(marker, name);
+    }
+
+    /** Forgets all marks and stops listening to the workspace. */
+    public synchronized void dispose() {
+        if (listening) {
+            ResourcesPlugin.getWorkspace().removeResourceChangeListener(this);
+            listening = false;
+        }
+        markers.clear();
+        names.clear();
+        loaded = false;
+    }
+
+    @Override
+    public synchronized void resourceChanged(IResourceChangeEvent event) {
+        if ( ! loaded || event.getDelta() == null) {
+            return;
+        }
+        for (IResourceDelta projectDelta : event.getDelta().getAffectedChildren()) {
+            if (projectDelta.getKind() != IResourceDelta.CHANGED
+                    || (projectDelta.getFlags() & IResourceDelta.OPEN) != 0) {
+                // Opening or closing a project doesn't report its markers, look them up again.
+                loaded = false;
+                return;
+            }
+        }
+        for (IMarkerDelta delta : event.findMarkerDeltas(EclipseCursorAndSelection.GLOBAL_MARK_TYPE, true)) {
+            IMarker marker = delta.getMarker();
+            forget(marker);
+            if (delta.getKind() != IResourceDelta.REMOVED && marker.exists()) {
+                add(marker);
+            }
+        }
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        if ( ! listening) {
+            ResourcesPlugin.getWorkspace().addResourceChangeListener(this,
+                    IResourceChangeEvent.POST_CHANGE);
+            listening = true;
+        }
+        markers.clear();
+        names.clear();
+        try {
+            for (IMarker marker : ResourcesPlugin.getWorkspace().getRoot().findMarkers(
+                    EclipseCursorAndSelection.GLOBAL_MARK_TYPE, true, IResource.DEPTH_INFINITE)) {
+                add(marker);
+            }
+        } catch (CoreException e) {
+            VrapperLog.error("Failed to find global marks", e);
+        }
+        loaded = true;
+    }
+
+    private void add(IMarker marker) {
+        String name = marker.getAttribute(IMarker.MESSAGE, "--");
+        if (isGlobalMarkName(name)) {
+            IMarker old = markers.put(name, marker);
+            if (old != null) {
+                names.remove(old);
+            }
+            names.put(marker, name);
+        }
+    }
+
+    private void forget(IMarker marker) {
+        String name = names.remove(marker);
+        if (name != null) {
+            markers.remove(name);
+        }
+    }
+
+    private static boolean isGlobalMarkName(String name) {
+        return name.length() == 1
+                && ((   name.charAt(0) >= 'A' && name.charAt(0) <= 'Z')
+                    || (name.charAt(0) >= '0' && name.charAt(0) <= '9'));
+    }
+}
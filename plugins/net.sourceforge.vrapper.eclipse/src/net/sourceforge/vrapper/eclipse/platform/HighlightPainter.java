@@ -0,0 +1,178 @@
+package net.sourceforge.vrapper.eclipse.platform;
+
+import java.util.List;
+
+import net.sourceforge.vrapper.utils.IntervalTree;
+import net.sourceforge.vrapper.utils.IntervalTree.Interval;
+
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.ITextInputListener;
+import org.eclipse.jface.text.ITextViewer;
+import org.eclipse.jface.text.ITextViewerExtension5;
+import org.eclipse.jface.text.Region;
+import org.eclipse.swt.custom.StyledText;
+import org.eclipse.swt.events.PaintEvent;
+import org.eclipse.swt.events.PaintListener;
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Rectangle;
+
+/**
+ * Paints highlighted regions straight onto the text widget, without annotations.
+ * <p>
+ * The regions are stored in an {@link IntervalTree} in model offsets and follow document
+ * changes. Each paint event only asks the tree for the regions on the lines being painted, so
+ * thousands of regions cost no more than the few which are visible.
+ */
+public class HighlightPainter implements PaintListener, IDocumentListener, ITextInputListener {
+
+    /** Opacity of the highlight color painted over the text. */
+    private static final int ALPHA = 110;
+
+    private final ITextViewer textViewer;
+    private final ITextViewerExtension5 converter;
+    private final IntervalTree<Color> regions = new IntervalTree<Color>();
+    private boolean installed;
+
+    public HighlightPainter(ITextViewer textViewer) {
+        this.textViewer = textViewer;
+        this.converter = OffsetConverter.create(textViewer);
+    }
+
+    /** @return handle of the highlighted region. */
+    public Interval<Color> add(int offset, int length, Color color) {
+        install();
+        return regions.add(offset, offset + length, color);
+    }
+
+    public void remove(Interval<Color> region) {
+        regions.remove(region);
+    }
+
+    /** Repaints the editor after regions were added or removed. */
+    public void refresh() {
+        StyledText textWidget = textViewer.getTextWidget();
+        if (textWidget != null && ! textWidget.isDisposed()) {
+            textWidget.redraw();
+        }
+    }
+
+    private void install() {
+        if (installed) {
+            return;
+        }
+        textViewer.getTextWidget().addPaintListener(this);
+        textViewer.addTextInputListener(this);
+        IDocument document = textViewer.getDocument();
+        if (document != null) {
+            document.addDocumentListener(this);
+        }
+        installed = true;
+    }
+
+    /** Stops listening to the viewer and forgets all regions, once the editor is closed. */
+    public void uninstall() {
+        if (! installed) {
+            return;
+        }
+        StyledText textWidget = textViewer.getTextWidget();
+        if (textWidget != null && ! textWidget.isDisposed()) {
+            textWidget.removePaintListener(this);
+        }
+        textViewer.removeTextInputListener(this);
+        IDocument document = textViewer.getDocument();
+        if (document != null) {
+            document.removeDocumentListener(this);
+        }
+        regions.clear();
+        installed = false;
+    }
+
+    @Override
+    public void paintControl(PaintEvent e) {
+        if (regions.size() == 0) {
+            return;
+        }
+        StyledText textWidget = textViewer.getTextWidget();
+        int lineCount = textWidget.getLineCount();
+        int firstLine = textWidget.getLineIndex(e.y);
+        int lastLine = textWidget.getLineIndex(e.y + e.height);
+        int widgetStart = textWidget.getOffsetAtLine(firstLine);
+        int widgetEnd = lastLine + 1 < lineCount
+                ? textWidget.getOffsetAtLine(lastLine + 1) : textWidget.getCharCount();
+        IRegion visible = converter.widgetRange2ModelRange(
+                new Region(widgetStart, widgetEnd - widgetStart));
+        if (visible == null) {
+            return;
+        }
+        List<Interval<Color>> found = regions.findOverlapping(visible.getOffset(),
+                visible.getOffset() + visible.getLength());
+        if (found.isEmpty()) {
+            return;
+        }
+        GC gc = e.gc;
+        Color background = gc.getBackground();
+        int alpha = gc.getAlpha();
+        gc.setAlpha(ALPHA);
+        for (Interval<Color> region : found) {
+            IRegion widgetRegion = converter.modelRange2WidgetRange(
+                    new Region(region.getStart(), region.getEnd() - region.getStart()));
+            if (widgetRegion == null) {
+                // Folded away.
+                continue;
+            }
+            int start = Math.max(widgetStart, widgetRegion.getOffset());
+            int end = Math.min(widgetEnd, widgetRegion.getOffset() + widgetRegion.getLength());
+            gc.setBackground(region.getValue());
+            paintRegion(textWidget, gc, start, end);
+        }
+        gc.setAlpha(alpha);
+        gc.setBackground(background);
+    }
+
+    /** Fills the text bounds of [start, end) line by line. */
+    private static void paintRegion(StyledText textWidget, GC gc, int start, int end) {
+        while (start < end) {
+            int line = textWidget.getLineAtOffset(start);
+            int lineEnd = textWidget.getOffsetAtLine(line) + textWidget.getLine(line).length();
+            int segmentEnd = Math.min(end, lineEnd);
+            if (segmentEnd > start) {
+                Rectangle bounds = textWidget.getTextBounds(start, segmentEnd - 1);
+                gc.fillRectangle(bounds);
+            }
+            if (line + 1 >= textWidget.getLineCount()) {
+                return;
+            }
+            start = textWidget.getOffsetAtLine(line + 1);
+        }
+    }
+
+    @Override
+    public void documentAboutToBeChanged(DocumentEvent event) {
+    }
+
+    @Override
+    public void documentChanged(DocumentEvent event) {
+        int inserted = event.getText() == null ? 0 : event.getText().length();
+        regions.update(event.getOffset(), event.getLength(), inserted);
+    }
+
+    @Override
+    public void inputDocumentAboutToBeChanged(IDocument oldInput, IDocument newInput) {
+        if (oldInput != null) {
+            oldInput.removeDocumentListener(this);
+        }
+        // Offsets of another document are meaningless.
+        regions.clear();
+    }
+
+    @Override
+    public void inputDocumentChanged(IDocument oldInput, IDocument newInput) {
+        if (newInput != null) {
+            newInput.addDocumentListener(this);
+        }
+    }
+}
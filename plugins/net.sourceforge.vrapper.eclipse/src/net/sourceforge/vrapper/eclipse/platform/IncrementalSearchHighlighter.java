@@ -0,0 +1,349 @@
+package net.sourceforge.vrapper.eclipse.platform;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.FindReplaceDocumentAdapter;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.ITextViewer;
+import org.eclipse.jface.text.IViewportListener;
+
+import net.sourceforge.vrapper.log.VrapperLog;
+import net.sourceforge.vrapper.platform.Configuration;
+import net.sourceforge.vrapper.platform.HighlightingService;
+import net.sourceforge.vrapper.utils.Space;
+import net.sourceforge.vrapper.utils.StartEndTextRange;
+import net.sourceforge.vrapper.utils.TextRange;
+import net.sourceforge.vrapper.vim.Options;
+
+/**
+ * Highlights the matches of a search pattern for 'hlsearch'.
+ * <p>
+ * Only the visible part of the editor is scanned at first. Other parts of the document get
+ * scanned in chunks once they are scrolled into view, and the total number of highlighted
+ * matches is capped by the 'hlsearchlimit' option. When the document changes, only the matches
+ * on the changed lines are searched again; all other annotations are kept.
+ */
+public class IncrementalSearchHighlighter implements IViewportListener, IDocumentListener {
+
+    /** Lines scanned above and below the visible area, so that short scrolls need no scan. */
+    private static final int CHUNK_LINES = 100;
+
+    private final ITextViewer textViewer;
+    private final Configuration configuration;
+    private final HighlightingService highlightingService;
+    private final String annotationType;
+    private final String annotationName;
+
+    private Pattern pattern;
+    private IDocument document;
+    private FindReplaceDocumentAdapter text;
+    /** Highlighted matches sorted by offset, in current document coordinates. */
+    private final List<Match> matches = new ArrayList<Match>();
+    /** Scanned parts of the document as disjoint [start, end) offset pairs. */
+    private final TreeMap<Integer, Integer> scanned = new TreeMap<Integer, Integer>();
+
+    public IncrementalSearchHighlighter(ITextViewer textViewer, Configuration configuration,
+            HighlightingService highlightingService, String annotationType, String annotationName) {
+        this.textViewer = textViewer;
+        this.configuration = configuration;
+        this.highlightingService = highlightingService;
+        this.annotationType = annotationType;
+        this.annotationName = annotationName;
+    }
+
+    /** Removes any current highlighting and starts highlighting the given pattern. */
+    public void start(Pattern pattern) {
+        stop();
+        this.pattern = pattern;
+        document = textViewer.getDocument();
+        if (document == null) {
+            this.pattern = null;
+            return;
+        }
+        text = new FindReplaceDocumentAdapter(document);
+        document.addDocumentListener(this);
+        textViewer.addViewportListener(this);
+        scanVisibleArea();
+    }
+
+    /** Removes all highlighting and stops listening for changes. */
+    public void stop() {
+        if (pattern == null) {
+            return;
+        }
+        textViewer.removeViewportListener(this);
+        document.removeDocumentListener(this);
+        removeAnnotations(matches);
+        matches.clear();
+        scanned.clear();
+        pattern = null;
+        document = null;
+        text = null;
+    }
+
+    @Override
+    public void viewportChanged(int verticalOffset) {
+        if (pattern == null) {
+            return;
+        }
+        if (textViewer.getDocument() != document) {
+            // The editor switched to another input, the old matches are meaningless.
+            Pattern current = pattern;
+            start(current);
+            return;
+        }
+        scanVisibleArea();
+    }
+
+    @Override
+    public void documentAboutToBeChanged(DocumentEvent event) {
+    }
+
+    @Override
+    public void documentChanged(DocumentEvent event) {
+        if (pattern == null) {
+            return;
+        }
+        int offset = event.getOffset();
+        int newLength = event.getText() == null ? 0 : event.getText().length();
+        int delta = newLength - event.getLength();
+        int dirtyStart;
+        int dirtyEnd;
+        try {
+            // Matches can depend on the whole line (e.g. '^' and '$'), so rescan changed lines.
+            dirtyStart = document.getLineInformationOfOffset(offset).getOffset();
+            int lastLine = document.getLineOfOffset(offset + newLength);
+            dirtyEnd = document.getLineOffset(lastLine) + document.getLineLength(lastLine);
+        } catch (BadLocationException e) {
+            VrapperLog.error("Failed to update search highlighting", e);
+            return;
+        }
+        int oldDirtyEnd = dirtyEnd - delta;
+
+        // Drop the matches on the changed lines and move the ones after them.
+        List<Match> removed = new ArrayList<Match>();
+        int first = indexOfFirstEndingAfter(dirtyStart);
+        if (first < matches.size() && matches.get(first).start < dirtyStart) {
+            // Match spanning into the changed lines from above, look for it again.
+            dirtyStart = matches.get(first).start;
+        }
+        int i = first;
+        while (i < matches.size() && matches.get(i).start < oldDirtyEnd) {
+            removed.add(matches.get(i));
+            i++;
+        }
+        matches.subList(first, i).clear();
+        for (int j = first; j < matches.size(); j++) {
+            matches.get(j).start += delta;
+            matches.get(j).end += delta;
+        }
+        removeAnnotations(removed);
+
+        shiftScanned(offset, event.getLength(), newLength);
+        List<int[]> dirty = new ArrayList<int[]>();
+        for (Map.Entry<Integer, Integer> range : scanned.entrySet()) {
+            int start = Math.max(range.getKey(), dirtyStart);
+            int end = Math.min(range.getValue(), dirtyEnd);
+            if (start < end) {
+                dirty.add(new int[] { start, end });
+            }
+        }
+        for (int[] range : dirty) {
+            scan(range[0], range[1]);
+        }
+    }
+
+    private void scanVisibleArea() {
+        try {
+            int topLine = Math.max(0, textViewer.getTopIndex() - CHUNK_LINES);
+            int bottomLine = Math.min(document.getNumberOfLines() - 1,
+                    Math.max(topLine, textViewer.getBottomIndex() + CHUNK_LINES));
+            int visibleStart = document.getLineOffset(topLine);
+            int visibleEnd = document.getLineOffset(bottomLine) + document.getLineLength(bottomLine);
+            int visibleFirst = textViewer.getTopIndexStartOffset();
+            int visibleLast = textViewer.getBottomIndexEndOffset();
+            if (isScanned(visibleFirst, visibleLast)) {
+                return;
+            }
+            // Only scan the parts of the padded visible area which weren't scanned before.
+            int position = visibleStart;
+            Map.Entry<Integer, Integer> range = scanned.floorEntry(position);
+            if (range != null && range.getValue() > position) {
+                position = range.getValue();
+            }
+            while (position < visibleEnd) {
+                range = scanned.higherEntry(position);
+                int gapEnd = range == null ? visibleEnd : Math.min(range.getKey(), visibleEnd);
+                int nextPosition = range == null ? visibleEnd : range.getValue();
+                scan(position, gapEnd);
+                position = nextPosition;
+            }
+        } catch (BadLocationException e) {
+            VrapperLog.error("Failed to update search highlighting", e);
+        }
+    }
+
+    /** Finds and highlights the matches starting in [start, end). */
+    private void scan(int start, int end) {
+        int limit = configuration.get(Options.SEARCH_HL_LIMIT);
+        List<Match> found = new ArrayList<Match>();
+        int insertAt = indexOfFirstEndingAfter(start);
+        int nextStart = insertAt < matches.size() ? matches.get(insertAt).start : Integer.MAX_VALUE;
+        int scanFrom = insertAt > 0 ? Math.max(start, matches.get(insertAt - 1).end) : start;
+        // Matches starting in [start, scannedTo) are known once the loop is done.
+        int scannedTo = end;
+        try {
+            Matcher matcher = pattern.matcher(text);
+            // Don't let the regex run on to EOF looking for the next match, but keep the text
+            // around visible to lookarounds.
+            matcher.useTransparentBounds(true);
+            matcher.useAnchoringBounds(false);
+            matcher.region(scanFrom, regionEnd(end));
+            while (matcher.find() && matcher.start() < end && matcher.end() > matcher.start()) {
+                if (matcher.end() > nextStart) {
+                    // Overlaps an existing match which was found from an earlier position.
+                    break;
+                }
+                if (matches.size() + found.size() >= limit) {
+                    // 'hlsearchlimit' reached, the rest of the range is still unknown.
+                    scannedTo = matcher.start();
+                    break;
+                }
+                found.add(new Match(matcher.start(), matcher.end()));
+            }
+        } catch (StackOverflowError e) {
+            VrapperLog.error("while highlighting search, pattern is too complex");
+        }
+        if (scannedTo > start) {
+            addScanned(start, scannedTo);
+        }
+        if (found.isEmpty()) {
+            return;
+        }
+        List<TextRange> regions = new ArrayList<TextRange>(found.size());
+        TextViewerPosition temp = new TextViewerPosition(textViewer, Space.MODEL, 0);
+        for (Match match : found) {
+            regions.add(StartEndTextRange.exclusive(temp.setModelOffset(match.start),
+                    temp.setModelOffset(match.end)));
+        }
+        List<Object> annotations = highlightingService.highlightRegions(annotationType,
+                annotationName, regions);
+        for (int i = 0; i < found.size() && i < annotations.size(); i++) {
+            found.get(i).annotation = annotations.get(i);
+        }
+        matches.addAll(insertAt, found);
+    }
+
+    /** @return the end of the line containing the last character before <code>end</code>. */
+    private int regionEnd(int end) {
+        if (end <= 0) {
+            return 0;
+        }
+        try {
+            int line = document.getLineOfOffset(end - 1);
+            return document.getLineOffset(line) + document.getLineLength(line);
+        } catch (BadLocationException e) {
+            return text.length();
+        }
+    }
+
+    private void removeAnnotations(List<Match> toRemove) {
+        if (toRemove.isEmpty()) {
+            return;
+        }
+        List<Object> annotations = new ArrayList<Object>(toRemove.size());
+        for (Match match : toRemove) {
+            if (match.annotation != null) {
+                annotations.add(match.annotation);
+            }
+        }
+        highlightingService.removeHighlights(annotations);
+    }
+
+    /** Binary search for the first match which ends after the given offset. */
+    private int indexOfFirstEndingAfter(int offset) {
+        int low = 0;
+        int high = matches.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (matches.get(mid).end <= offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private boolean isScanned(int start, int end) {
+        Map.Entry<Integer, Integer> range = scanned.floorEntry(start);
+        return range != null && range.getValue() >= end;
+    }
+
+    private void addScanned(int start, int end) {
+        Map.Entry<Integer, Integer> before = scanned.floorEntry(start);
+        if (before != null && before.getValue() >= start) {
+            start = before.getKey();
+            end = Math.max(end, before.getValue());
+        }
+        Iterator<Map.Entry<Integer, Integer>> after =
+                scanned.tailMap(start, true).entrySet().iterator();
+        while (after.hasNext()) {
+            Map.Entry<Integer, Integer> range = after.next();
+            if (range.getKey() > end) {
+                break;
+            }
+            end = Math.max(end, range.getValue());
+            after.remove();
+        }
+        scanned.put(start, end);
+    }
+
+    /** Moves the scanned ranges to account for <code>length</code> chars replaced at offset. */
+    private void shiftScanned(int offset, int length, int newLength) {
+        if (scanned.isEmpty()) {
+            return;
+        }
+        int delta = newLength - length;
+        List<int[]> shifted = new ArrayList<int[]>(scanned.size());
+        for (Map.Entry<Integer, Integer> range : scanned.entrySet()) {
+            shifted.add(new int[] { shiftOffset(range.getKey(), offset, length, newLength, delta),
+                    shiftOffset(range.getValue(), offset, length, newLength, delta) });
+        }
+        scanned.clear();
+        for (int[] range : shifted) {
+            if (range[0] < range[1]) {
+                addScanned(range[0], range[1]);
+            }
+        }
+    }
+
+    private static int shiftOffset(int value, int offset, int length, int newLength, int delta) {
+        if (value <= offset) {
+            return value;
+        } else if (value >= offset + length) {
+            return value + delta;
+        }
+        return offset + newLength;
+    }
+
+    private static class Match {
+        private int start;
+        private int end;
+        private Object annotation;
+
+        public Match(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package net.sourceforge.vrapper.eclipse.platform;
+
+import net.sourceforge.vrapper.platform.TextContent;
+import net.sourceforge.vrapper.utils.LineIndentIndex;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.ITextInputListener;
+import org.eclipse.jface.text.ITextViewer;
+
+/**
+ * Keeps a {@link LineIndentIndex} of the viewer's document up to date. Each document change
+ * tells the index which lines were replaced by how many new ones, so that only those are
+ * measured again.
+ * <p>
+ * The tracker starts listening when the index is first asked for, and stops on
+ * {@link #uninstall()}.
+ */
+public class LineIndentTracker implements IDocumentListener, ITextInputListener {
+
+    private final ITextViewer textViewer;
+    private final LineIndentIndex index;
+    private boolean installed;
+
+    /** Lines about to be replaced, remembered until the change is done. */
+    private int firstLine;
+    private int removedLines;
+
+    public LineIndentTracker(ITextViewer textViewer, TextContent modelContent) {
+        this.textViewer = textViewer;
+        this.index = new LineIndentIndex(modelContent);
+    }
+
+    public LineIndentIndex getIndex() {
+        install();
+        return index;
+    }
+
+    private void install() {
+        if (installed) {
+            return;
+        }
+        textViewer.addTextInputListener(this);
+        IDocument document = textViewer.getDocument();
+        if (document != null) {
+            document.addDocumentListener(this);
+        }
+        installed = true;
+    }
+
+    /** Stops listening to the viewer, once the editor is closed. */
+    public void uninstall() {
+        if (! installed) {
+            return;
+        }
+        textViewer.removeTextInputListener(this);
+        IDocument document = textViewer.getDocument();
+        if (document != null) {
+            document.removeDocumentListener(this);
+        }
+        index.clear();
+        installed = false;
+    }
+
+    @Override
+    public void documentAboutToBeChanged(DocumentEvent event) {
+        IDocument document = event.getDocument();
+        try {
+            firstLine = document.getLineOfOffset(event.getOffset());
+            removedLines = document.getLineOfOffset(event.getOffset() + event.getLength())
+                    - firstLine;
+        } catch (BadLocationException e) {
+            firstLine = -1;
+        }
+    }
+
+    @Override
+    public void documentChanged(DocumentEvent event) {
+        if (firstLine < 0) {
+            index.clear();
+            return;
+        }
+        String text = event.getText() == null ? "" : event.getText();
+        index.linesChanged(firstLine, removedLines, event.getDocument().computeNumberOfLines(text));
+    }
+
+    @Override
+    public void inputDocumentAboutToBeChanged(IDocument oldInput, IDocument newInput) {
+        if (oldInput != null) {
+            oldInput.removeDocumentListener(this);
+        }
+        index.clear();
+    }
+
+    @Override
+    public void inputDocumentChanged(IDocument oldInput, IDocument newInput) {
+        if (newInput != null) {
+            newInput.addDocumentListener(this);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package net.sourceforge.vrapper.eclipse.platform;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.BadPositionCategoryException;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IPositionUpdater;
+import org.eclipse.jface.text.Position;
+
+/**
+ * Positions of the local marks and the change list of one editor.
+ * <p>
+ * The positions live in their own position category, so the document's default updater doesn't
+ * visit them on every edit. This store keeps them sorted by offset and only moves those at or
+ * after a change, finding the first of them with a binary search.
+ * <p>
+ * Marks have no length. They are updated like {@link org.eclipse.jface.text.DefaultPositionUpdater}
+ * would: a mark strictly inside deleted text is deleted, a mark at the start of a change ends up
+ * after the inserted text.
+ */
+public class MarkStore implements IPositionUpdater {
+
+    private final String category;
+    /** Positions ordered by offset. */
+    private final List<Position> positions = new ArrayList<Position>();
+    private IDocument document;
+
+    public MarkStore(String category) {
+        this.category = category;
+    }
+
+    /**
+     * Starts tracking marks in the given document. Marks of a previous document are deleted,
+     * their offsets don't mean anything in the new one.
+     */
+    public void connect(IDocument document) {
+        if (this.document == document) {
+            return;
+        }
+        try {
+            disconnect();
+        } catch (BadPositionCategoryException e) {
+            // The old document dropped the category itself, nothing left to clean up.
+        }
+        this.document = document;
+        document.addPositionCategory(category);
+        document.addPositionUpdater(this);
+    }
+
+    /** Stops tracking marks and deletes all of them. */
+    public void disconnect() throws BadPositionCategoryException {
+        if (document == null) {
+            return;
+        }
+        IDocument oldDocument = document;
+        document = null;
+        for (Position p : positions) {
+            p.delete();
+        }
+        positions.clear();
+        oldDocument.removePositionUpdater(this);
+        // The document might have been disconnected from its editor already.
+        if (oldDocument.containsPositionCategory(category)) {
+            oldDocument.removePositionCategory(category);
+        }
+    }
+
+    /**
+     * Adds a mark which follows the edits of the connected document.
+     * @throws BadLocationException if the offset is outside of the document.
+     */
+    public Position add(int offset) throws BadLocationException {
+        Position p = new Position(offset);
+        try {
+            document.addPosition(category, p);
+        } catch (BadPositionCategoryException e) {
+            throw new IllegalStateException("Mark category missing from document", e);
+        }
+        int index = firstIndexAtOrAfter(offset);
+        // Keep the insertion order for marks at the same offset, like the document does.
+        while (index < positions.size() && positions.get(index).offset == offset) {
+            index++;
+        }
+        positions.add(index, p);
+        return p;
+    }
+
+    /** Stops tracking the given mark. Does nothing for deleted marks. */
+    public void remove(Position p) {
+        if (p.isDeleted || document == null) {
+            return;
+        }
+        int index = firstIndexAtOrAfter(p.offset);
+        while (index < positions.size() && positions.get(index) != p) {
+            index++;
+        }
+        if (index < positions.size()) {
+            positions.remove(index);
+            removeFromDocument(p);
+        }
+    }
+
+    @Override
+    public void update(DocumentEvent event) {
+        if (event.getDocument() != document) {
+            return;
+        }
+        int start = event.getOffset();
+        int removed = event.getLength();
+        int inserted = event.getText() == null ? 0 : event.getText().length();
+        int removedEnd = start + removed;
+        int index = firstIndexAtOrAfter(start);
+        // Marks at the change offset stay in front of the removed text and move behind the
+        // inserted text.
+        while (index < positions.size() && positions.get(index).offset == start) {
+            positions.get(index).offset = start + inserted;
+            index++;
+        }
+        // Marks strictly inside the removed text are gone.
+        int deletedEnd = index;
+        while (deletedEnd < positions.size() && positions.get(deletedEnd).offset < removedEnd) {
+            Position p = positions.get(deletedEnd);
+            p.delete();
+            removeFromDocument(p);
+            deletedEnd++;
+        }
+        positions.subList(index, deletedEnd).clear();
+        int delta = inserted - removed;
+        if (delta != 0) {
+            for (int i = index; i < positions.size(); i++) {
+                positions.get(i).offset += delta;
+            }
+        }
+    }
+
+    private void removeFromDocument(Position p) {
+        try {
+            document.removePosition(category, p);
+        } catch (BadPositionCategoryException e) {
+            // Category already gone, the position went with it.
+        }
+    }
+
+    /** Binary search for the first mark whose offset isn't smaller than the given one. */
+    private int firstIndexAtOrAfter(int offset) {
+        int low = 0;
+        int high = positions.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (positions.get(mid).offset < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,282 @@
+package net.sourceforge.vrapper.eclipse.platform;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import net.sourceforge.vrapper.log.VrapperLog;
+
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.IResourceProxy;
+import org.eclipse.core.resources.IResourceProxyVisitor;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+/**
+ * In-memory list of the folders and file names of each project, used for <code>:find</code>,
+ * <code>gf</code> and path completion so that they don't walk the workspace on every keystroke.
+ * <p>
+ * A project is indexed in a background job the first time it is asked for; until that job is
+ * done the queries return <code>null</code> and callers walk the resources themselves. After
+ * that the index follows the workspace through resource change events.
+ * <p>
+ * Paths are project relative without leading or trailing '/', the project root is "". Names are
+ * sorted like {@link IContainer#members()} returns them.
+ */
+public class ProjectFileIndex implements IResourceChangeListener {
+
+    public static final ProjectFileIndex INSTANCE = new ProjectFileIndex();
+
+    private final Map<IProject, ProjectEntry> projects = new HashMap<IProject, ProjectEntry>();
+    private boolean listening;
+
+    private ProjectFileIndex() {
+    }
+
+    /**
+     * @param path a folder in the project.
+     * @return the paths of the given folder and all folders below it in sorted order, an empty
+     *     list if the folder doesn't exist, or <code>null</code> if the project isn't indexed yet.
+     */
+    public synchronized List<String> getFolders(IProject project, String path) {
+        ProjectEntry entry = getReadyEntry(project);
+        if (entry == null) {
+            return null;
+        }
+        List<String> folders = new ArrayList<String>();
+        if ( ! entry.children.containsKey(path)) {
+            return folders;
+        }
+        if (path.length() == 0) {
+            folders.addAll(entry.children.keySet());
+        } else {
+            folders.add(path);
+            folders.addAll(subtree(entry.children, path).keySet());
+        }
+        return folders;
+    }
+
+    /**
+     * @param path a folder in the project.
+     * @return names of the files and folders directly inside the given folder, folder names
+     *     followed by '/'. Empty if the folder doesn't exist, <code>null</code> if the project
+     *     isn't indexed yet.
+     */
+    public synchronized List<String> getMembers(IProject project, String path) {
+        ProjectEntry entry = getReadyEntry(project);
+        if (entry == null) {
+            return null;
+        }
+        List<String> names = new ArrayList<String>();
+        TreeMap<String, Boolean> members = entry.children.get(path);
+        if (members != null) {
+            for (Map.Entry<String, Boolean> member : members.entrySet()) {
+                names.add(member.getValue() ? member.getKey() + '/' : member.getKey());
+            }
+        }
+        return names;
+    }
+
+    /** Forgets all projects and stops listening to the workspace. */
+    public synchronized void dispose() {
+        if (listening) {
+            ResourcesPlugin.getWorkspace().removeResourceChangeListener(this);
+            listening = false;
+        }
+        for (ProjectEntry entry : projects.values()) {
+            entry.job.cancel();
+        }
+        projects.clear();
+    }
+
+    @Override
+    public synchronized void resourceChanged(IResourceChangeEvent event) {
+        IResourceDelta delta = event.getDelta();
+        if (delta == null || projects.isEmpty()) {
+            return;
+        }
+        try {
+            delta.accept(new IResourceDeltaVisitor() {
+                public boolean visit(IResourceDelta delta) {
+                    return applyDelta(delta);
+                }
+            });
+        } catch (CoreException e) {
+            VrapperLog.error("Failed to update the file index", e);
+            projects.clear();
+        }
+    }
+
+    private boolean applyDelta(IResourceDelta delta) {
+        IResource resource = delta.getResource();
+        if (resource.getType() == IResource.ROOT) {
+            return true;
+        }
+        ProjectEntry entry = projects.get(resource.getProject());
+        if (entry == null) {
+            return false;
+        }
+        if (resource.getType() == IResource.PROJECT) {
+            if (delta.getKind() != IResourceDelta.CHANGED
+                    || (delta.getFlags() & IResourceDelta.OPEN) != 0) {
+                entry.job.cancel();
+                projects.remove(resource);
+                return false;
+            }
+            if ( ! entry.ready) {
+                // The job may already have passed the changed folders, index them again.
+                entry.dirty = true;
+                return false;
+            }
+            return true;
+        }
+        String path = resource.getProjectRelativePath().toString();
+        switch (delta.getKind()) {
+        case IResourceDelta.ADDED:
+            // Members of an added folder come as deltas of their own.
+            entry.add(path, resource.getType() == IResource.FOLDER);
+            return true;
+        case IResourceDelta.REMOVED:
+            entry.remove(path, resource.getType() == IResource.FOLDER);
+            return false;
+        default:
+            return true;
+        }
+    }
+
+    private ProjectEntry getReadyEntry(IProject project) {
+        if (project == null || ! project.isAccessible()) {
+            return null;
+        }
+        ProjectEntry entry = projects.get(project);
+        if (entry == null) {
+            if ( ! listening) {
+                ResourcesPlugin.getWorkspace().addResourceChangeListener(this,
+                        IResourceChangeEvent.POST_CHANGE);
+                listening = true;
+            }
+            entry = new ProjectEntry(project);
+            projects.put(project, entry);
+            entry.job.schedule();
+        }
+        return entry.ready ? entry : null;
+    }
+
+    private synchronized void buildFinished(ProjectEntry entry,
+            TreeMap<String, TreeMap<String, Boolean>> children) {
+        if (projects.get(entry.project) != entry) {
+            return;
+        }
+        if (entry.dirty) {
+            entry.dirty = false;
+            entry.job.schedule();
+            return;
+        }
+        entry.children = children;
+        entry.ready = true;
+    }
+
+    /** All folders strictly below the given one. */
+    private static SortedMap<String, TreeMap<String, Boolean>> subtree(
+            TreeMap<String, TreeMap<String, Boolean>> children, String path) {
+        // '0' comes right after '/', so this range holds exactly the paths starting with "path/".
+        return children.subMap(path + '/', path + '0');
+    }
+
+    private static String parentOf(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? "" : path.substring(0, slash);
+    }
+
+    private static String nameOf(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    private class ProjectEntry {
+        private final IProject project;
+        private final Job job;
+        /** Folder path to the names of its members, mapped to whether they are folders. */
+        private TreeMap<String, TreeMap<String, Boolean>> children;
+        private boolean ready;
+        private boolean dirty;
+
+        public ProjectEntry(IProject project) {
+            this.project = project;
+            job = new Job("Indexing files of " + project.getName()) {
+                @Override
+                protected IStatus run(IProgressMonitor monitor) {
+                    return build(monitor);
+                }
+            };
+            job.setSystem(true);
+            job.setPriority(Job.DECORATE);
+        }
+
+        private IStatus build(final IProgressMonitor monitor) {
+            final TreeMap<String, TreeMap<String, Boolean>> result =
+                    new TreeMap<String, TreeMap<String, Boolean>>();
+            result.put("", new TreeMap<String, Boolean>());
+            try {
+                project.accept(new IResourceProxyVisitor() {
+                    public boolean visit(IResourceProxy proxy) {
+                        if (monitor.isCanceled()) {
+                            return false;
+                        }
+                        if (proxy.getType() == IResource.PROJECT) {
+                            return true;
+                        }
+                        String path = proxy.requestFullPath().removeFirstSegments(1).toString();
+                        boolean folder = proxy.getType() == IResource.FOLDER;
+                        result.get(parentOf(path)).put(proxy.getName(), folder);
+                        if (folder) {
+                            result.put(path, new TreeMap<String, Boolean>());
+                        }
+                        return folder;
+                    }
+                }, IResource.NONE);
+            } catch (CoreException e) {
+                // The project was closed or deleted, the change event will drop it.
+                return Status.CANCEL_STATUS;
+            }
+            if (monitor.isCanceled()) {
+                return Status.CANCEL_STATUS;
+            }
+            buildFinished(this, result);
+            return Status.OK_STATUS;
+        }
+
+        private void add(String path, boolean folder) {
+            TreeMap<String, Boolean> siblings = children.get(parentOf(path));
+            if (siblings != null) {
+                siblings.put(nameOf(path), folder);
+            }
+            if (folder && ! children.containsKey(path)) {
+                children.put(path, new TreeMap<String, Boolean>());
+            }
+        }
+
+        private void remove(String path, boolean folder) {
+            TreeMap<String, Boolean> siblings = children.get(parentOf(path));
+            if (siblings != null) {
+                siblings.remove(nameOf(path));
+            }
+            if (folder) {
+                children.remove(path);
+                subtree(children, path).clear();
+            }
+        }
+    }
+}
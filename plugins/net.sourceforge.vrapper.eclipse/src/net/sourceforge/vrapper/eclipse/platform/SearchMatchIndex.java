@@ -0,0 +1,277 @@
+package net.sourceforge.vrapper.eclipse.platform;
+
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.Region;
+
+/**
+ * Remembers the matches of the last search pattern in a document, so that repeated searches
+ * (<code>n</code>, <code>N</code>, counted jumps) are lookups instead of regex scans.
+ * <p>
+ * The index covers one contiguous part of the document in which all positions where the
+ * pattern matches are known. It grows from the first searched offset in the direction of later
+ * searches. A change to the document drops everything from the line before the change onwards.
+ * Patterns with very many matches are not indexed.
+ */
+public class SearchMatchIndex implements IDocumentListener {
+
+    /** Beyond this the index uses too much memory, searches go straight to the document. */
+    private static final int MAX_MATCHES = 100000;
+
+    private IDocument document;
+    private Pattern pattern;
+    private boolean tooManyMatches;
+
+    /** Start and end offsets of the known matches, sorted by start. */
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    /** Largest end offset of the matches up to each index. */
+    private int[] maxEnds = new int[16];
+    private int count;
+    /** All matches starting in [scannedFrom, scannedTo) are known. */
+    private int scannedFrom;
+    private int scannedTo;
+
+    /**
+     * Same as {@link Matcher#find(int)} on <code>text</code>: returns the first match starting
+     * at <code>begin</code> or later, or <code>null</code> if there is none.
+     */
+    public IRegion findForward(IDocument document, CharSequence text, Pattern pattern, int begin) {
+        if ( ! prepare(document, pattern, begin)) {
+            Matcher matcher = pattern.matcher(text);
+            return matcher.find(begin) ? toRegion(matcher.start(), matcher.end()) : null;
+        }
+        Matcher matcher = pattern.matcher(text);
+        if (begin < scannedFrom) {
+            scanBefore(matcher, begin);
+        }
+        int i = firstStartingAt(begin);
+        while (i == count && scannedTo <= text.length() && ! tooManyMatches) {
+            scanAfter(matcher, Math.max(begin, scannedTo) + 1);
+            i = firstStartingAt(begin);
+        }
+        if (tooManyMatches) {
+            return matcher.find(begin) ? toRegion(matcher.start(), matcher.end()) : null;
+        }
+        return i < count ? toRegion(starts[i], ends[i]) : null;
+    }
+
+    /**
+     * Walks over the matches from the start of the document like repeated calls of
+     * {@link Matcher#find(int)} would, and returns the last match before the first one which
+     * ends after <code>limit</code>. Returns <code>null</code> if there is none.
+     */
+    public IRegion findBackward(IDocument document, CharSequence text, Pattern pattern, int limit) {
+        if ( ! prepare(document, pattern, limit)) {
+            return findBackward(pattern.matcher(text), limit);
+        }
+        Matcher matcher = pattern.matcher(text);
+        if (scannedFrom > 0) {
+            scanBefore(matcher, 0);
+        }
+        // Any match starting after limit ends after it.
+        while (scannedTo <= limit && scannedTo <= text.length() && ! tooManyMatches) {
+            scanAfter(matcher, limit + 1);
+        }
+        if (tooManyMatches) {
+            return findBackward(matcher, limit);
+        }
+        int firstAfter = firstEndingAfter(limit);
+        return firstAfter > 0 ? toRegion(starts[firstAfter - 1], ends[firstAfter - 1]) : null;
+    }
+
+    /** Drops the index and stops listening to the document. */
+    public void clear() {
+        if (document != null) {
+            document.removeDocumentListener(this);
+        }
+        document = null;
+        pattern = null;
+        reset();
+    }
+
+    @Override
+    public void documentAboutToBeChanged(DocumentEvent event) {
+    }
+
+    @Override
+    public void documentChanged(DocumentEvent event) {
+        int cut;
+        try {
+            // Matches can look at the surrounding lines, so drop the line before the change too.
+            int line = document.getLineOfOffset(event.getOffset());
+            cut = document.getLineOffset(Math.max(0, line - 1));
+        } catch (BadLocationException e) {
+            cut = 0;
+        }
+        if (cut <= scannedFrom) {
+            reset();
+            return;
+        }
+        int firstChanged = firstEndingAfter(cut);
+        int newScannedTo = Math.min(scannedTo, cut);
+        if (firstChanged < count) {
+            newScannedTo = Math.min(newScannedTo, starts[firstChanged]);
+        }
+        count = firstChanged;
+        scannedTo = newScannedTo;
+        if (scannedTo <= scannedFrom) {
+            reset();
+        }
+    }
+
+    /** Returns false if the index can't be used for this search. */
+    private boolean prepare(IDocument document, Pattern pattern, int offset) {
+        if (document != this.document) {
+            clear();
+            this.document = document;
+            document.addDocumentListener(this);
+        }
+        if (pattern != this.pattern) {
+            this.pattern = pattern;
+            tooManyMatches = false;
+            reset();
+        }
+        if (tooManyMatches) {
+            return false;
+        }
+        if (scannedFrom == scannedTo) {
+            scannedFrom = scannedTo = offset;
+        }
+        return true;
+    }
+
+    private void reset() {
+        count = 0;
+        scannedFrom = scannedTo = 0;
+    }
+
+    /**
+     * Extends the index to all matches starting before <code>until</code>, or up to the next
+     * match. Once the end of the document is scanned, <code>scannedTo</code> is its length + 1.
+     */
+    private void scanAfter(Matcher matcher, int until) {
+        int length = matcher.regionEnd();
+        int position = scannedTo;
+        while (position < until && position <= length) {
+            if ( ! matcher.find(position)) {
+                position = length + 1;
+                break;
+            }
+            append(matcher.start(), matcher.end());
+            position = matcher.start() + 1;
+            if (count > MAX_MATCHES) {
+                tooManyMatches = true;
+                reset();
+                return;
+            }
+        }
+        scannedTo = position;
+    }
+
+    /** Extends the index down to <code>from</code>. */
+    private void scanBefore(Matcher matcher, int from) {
+        int[] newStarts = new int[16];
+        int[] newEnds = new int[16];
+        int found = 0;
+        int position = from;
+        while (position < scannedFrom && matcher.find(position) && matcher.start() < scannedFrom) {
+            if (found == newStarts.length) {
+                newStarts = Arrays.copyOf(newStarts, found * 2);
+                newEnds = Arrays.copyOf(newEnds, found * 2);
+            }
+            newStarts[found] = matcher.start();
+            newEnds[found] = matcher.end();
+            found++;
+            position = matcher.start() + 1;
+            if (count + found > MAX_MATCHES) {
+                tooManyMatches = true;
+                reset();
+                return;
+            }
+        }
+        scannedFrom = from;
+        if (found == 0) {
+            return;
+        }
+        ensureCapacity(count + found);
+        System.arraycopy(starts, 0, starts, found, count);
+        System.arraycopy(ends, 0, ends, found, count);
+        System.arraycopy(newStarts, 0, starts, 0, found);
+        System.arraycopy(newEnds, 0, ends, 0, found);
+        count += found;
+        for (int i = 0; i < count; i++) {
+            maxEnds[i] = i == 0 ? ends[i] : Math.max(maxEnds[i - 1], ends[i]);
+        }
+    }
+
+    private void append(int start, int end) {
+        ensureCapacity(count + 1);
+        starts[count] = start;
+        ends[count] = end;
+        maxEnds[count] = count == 0 ? end : Math.max(maxEnds[count - 1], end);
+        count++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > starts.length) {
+            int size = Math.max(capacity, starts.length * 2);
+            starts = Arrays.copyOf(starts, size);
+            ends = Arrays.copyOf(ends, size);
+            maxEnds = Arrays.copyOf(maxEnds, size);
+        }
+    }
+
+    /** Index of the first match which, or any match before which, ends after the offset. */
+    private int firstEndingAfter(int offset) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (maxEnds[mid] <= offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /** Binary search for the first match starting at or after the given offset. */
+    private int firstStartingAt(int offset) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static IRegion findBackward(Matcher matcher, int limit) {
+        int index = -1;
+        int length = -1;
+        boolean found = matcher.find(0);
+        while (found && matcher.end() <= limit) {
+            index = matcher.start();
+            length = matcher.end() - matcher.start();
+            found = index < matcher.regionEnd() && matcher.find(index + 1);
+        }
+        return index > -1 ? new Region(index, length) : null;
+    }
+
+    private static IRegion toRegion(int start, int end) {
+        return new Region(start, end - start);
+    }
+}
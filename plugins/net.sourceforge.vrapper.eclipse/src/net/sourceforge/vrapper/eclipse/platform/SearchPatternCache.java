@@ -0,0 +1,175 @@
+package net.sourceforge.vrapper.eclipse.platform;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import net.sourceforge.vrapper.platform.Configuration;
+import net.sourceforge.vrapper.vim.Options;
+
+/**
+ * Bounded LRU cache of search keywords translated from Vim to Java regex syntax, and of the
+ * compiled {@link Pattern}s for them.
+ * <p>
+ * Every translation depends on the 'iskeyword' option, so the cache empties itself as soon as
+ * it sees that option change.
+ */
+public class SearchPatternCache {
+
+    private static final int MAX_ENTRIES = 32;
+
+    private final Configuration configuration;
+    private final Map<String, String> translations = new LruMap<String, String>();
+    private final Map<PatternKey, Pattern> patterns = new LruMap<PatternKey, Pattern>();
+    private String keywordChars;
+
+    public SearchPatternCache(Configuration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * We're using Eclipse's (Java's) Regex engine for search/replace. However,
+     * a lot of people are used to Vim's syntax for regex. So, check for Vim
+     * regex syntax and map to Eclipse's (Java's) syntax where possible.
+     * \< and \> =  \b   = word boundary
+     * (Feature pending... add support for 'magic' and 'very magic')
+     */
+    public String translate(String keyword) {
+        checkKeywordChars();
+        String translated = translations.get(keyword);
+        if (translated == null) {
+            translated = translate(keyword, keywordChars);
+            translations.put(keyword, translated);
+        }
+        return translated;
+    }
+
+    /**
+     * Returns the compiled pattern for a search, matching what {@link
+     * org.eclipse.jface.text.FindReplaceDocumentAdapter} would use for the same arguments.
+     */
+    public Pattern compile(String keyword, boolean regExSearch, boolean caseSensitive)
+            throws PatternSyntaxException {
+        checkKeywordChars();
+        PatternKey key = new PatternKey(keyword, regExSearch, caseSensitive);
+        Pattern pattern = patterns.get(key);
+        if (pattern == null) {
+            int flags = 0;
+            String regex;
+            if (regExSearch) {
+                flags |= Pattern.MULTILINE;
+                regex = substituteLinebreak(translate(keyword));
+            } else {
+                regex = Pattern.quote(keyword);
+            }
+            if ( ! caseSensitive) {
+                flags |= Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+            }
+            pattern = Pattern.compile(regex, flags);
+            patterns.put(key, pattern);
+        }
+        return pattern;
+    }
+
+    private void checkKeywordChars() {
+        String current = configuration.get(Options.KEYWORDS);
+        if ( ! current.equals(keywordChars)) {
+            translations.clear();
+            patterns.clear();
+            keywordChars = current;
+        }
+    }
+
+    private static String translate(String keyword, String boundaries) {
+        //'\k' inserts the character class of the 'iskeyword' setting
+        keyword = keyword.replaceAll("\\\\k", "["+boundaries+"]");
+
+        //In Vim, '\<' and '\>' is the regex for word boundaries. We need to
+        //replace this with valid regex for the Java regex engine.
+        //We *could* just use '\b' for the Java equivalent 'word boundaries'
+        //regex flag but we need to use the 'iskeyword' setting in case
+        //it doesn't match any default word boundary behavior.
+
+        //using look-aheads and look-behinds to make sure we don't select
+        //the word boundary as part of the match
+        keyword = keyword.replaceAll("\\\\<", "(?<!["+boundaries+"])");
+        return keyword.replaceAll("\\\\>", "(?!["+boundaries+"])");
+    }
+
+    /**
+     * Replaces Eclipse's \R (any line delimiter) like FindReplaceDocumentAdapter does, so that
+     * patterns compiled here match exactly what the adapter would match.
+     */
+    private static String substituteLinebreak(String regex) {
+        if (regex.indexOf("\\R") < 0) {
+            return regex;
+        }
+        StringBuilder result = new StringBuilder(regex.length() + 16);
+        int inCharGroup = 0;
+        boolean inQuote = false;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\' && i + 1 < regex.length()) {
+                char next = regex.charAt(++i);
+                if (inQuote) {
+                    inQuote = next != 'E';
+                } else if (next == 'Q') {
+                    inQuote = true;
+                } else if (next == 'R' && inCharGroup == 0) {
+                    result.append("(?>\\r\\n?|\\n)");
+                    continue;
+                }
+                result.append(c).append(next);
+                continue;
+            }
+            if ( ! inQuote && c == '[') {
+                inCharGroup++;
+            } else if ( ! inQuote && c == ']') {
+                inCharGroup--;
+            }
+            result.append(c);
+        }
+        return result.toString();
+    }
+
+    private static class PatternKey {
+        private final String keyword;
+        private final boolean regExSearch;
+        private final boolean caseSensitive;
+
+        public PatternKey(String keyword, boolean regExSearch, boolean caseSensitive) {
+            this.keyword = keyword;
+            this.regExSearch = regExSearch;
+            this.caseSensitive = caseSensitive;
+        }
+
+        @Override
+        public int hashCode() {
+            return keyword.hashCode() * 4 + (regExSearch ? 2 : 0) + (caseSensitive ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if ( ! (obj instanceof PatternKey)) {
+                return false;
+            }
+            PatternKey other = (PatternKey) obj;
+            return regExSearch == other.regExSearch && caseSensitive == other.caseSensitive
+                    && keyword.equals(other.keyword);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class LruMap<K, V> extends LinkedHashMap<K, V> {
+
+        public LruMap() {
+            super(MAX_ENTRIES, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    }
+}
@@ -2,22 +2,28 @@ package net.sourceforge.vrapper.plugin.clangformat.commands;
 
 import static net.sourceforge.vrapper.platform.Configuration.Option.stringNoConstraint;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import net.sourceforge.vrapper.log.VrapperLog;
 import net.sourceforge.vrapper.platform.Configuration.Option;
 import net.sourceforge.vrapper.platform.CursorService;
 import net.sourceforge.vrapper.platform.FileService;
+import net.sourceforge.vrapper.platform.HistoryService;
 import net.sourceforge.vrapper.platform.TextContent;
 import net.sourceforge.vrapper.utils.Position;
 import net.sourceforge.vrapper.utils.ProcessHelper;
@@ -29,25 +35,33 @@ import net.sourceforge.vrapper.vim.commands.CountIgnoringNonRepeatableCommand;
 import net.sourceforge.vrapper.vim.commands.Selection;
 import net.sourceforge.vrapper.vim.commands.motions.StickyColumnPolicy;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
 /**
  * Executes LLVM's clang-format on the content of the current editor.
+ * <p>
+ * clang-format runs in the background. Its replacements are applied as one edit once it is done,
+ * unless the text was changed in the meantime. Running it again on a text it has just formatted
+ * with the same style does nothing, except for style <code>file</code> whose
+ * <code>.clang-format</code> may have been edited since.
  */
 public class ClangFormat extends CountIgnoringNonRepeatableCommand {
     private final String style;
 
     public static final Option<String> STYLE_OPT = stringNoConstraint("clang-format-style", "llvm");
+    public static final Option<String> PATH_OPT = stringNoConstraint("clang-format-path", "clang-format");
+
+    /**
+     * Settings and SHA-256 digest of the text left by the last run for each file. Only touched in
+     * the editor thread.
+     */
+    private static final Map<String, String> formattedFiles = new HashMap<String, String>();
 
     public ClangFormat(Queue<String> command) {
         // Extra style configuration, can be empty.
         this.style = StringUtils.join(" ", command).replaceAll("(?i)<SPACE>", " ");
     }
 
-    private void showProcessError(String command, EditorAdaptor editorAdaptor, int exitValue,
-            String errorMsg) throws IOException {
+    private static void showProcessError(String command, EditorAdaptor editorAdaptor, int exitValue,
+            String errorMsg) {
         VrapperLog.error("clang-format failed with code " + exitValue + " command: " + command + '\n' + errorMsg);
         editorAdaptor.getUserInterfaceService().setErrorMessage(
                 "clang-format failed with code " + exitValue + " command: " + command + " (Check error log).");
@@ -57,21 +71,25 @@ public class ClangFormat extends CountIgnoringNonRepeatableCommand {
     public void execute(final EditorAdaptor editorAdaptor) throws CommandExecutionException {
         final FileService fileService = editorAdaptor.getFileService();
         LocalConfiguration configuration = editorAdaptor.getConfiguration();
-        Position cursor = editorAdaptor.getPosition();
+        final Position cursor = editorAdaptor.getPosition();
         final TextContent modelContent = editorAdaptor.getModelContent();
         final int length = modelContent.getTextLength();
         final String text = modelContent.getText(0, length);
         final Selection selection = editorAdaptor.getSelection();
         final int position = selection.getLeftBound().getModelOffset();
         final int rangeLength = selection.getModelLength();
-        int rangeStart;
-        int rangeEnd;
+        final int rangeStart;
+        final int rangeEnd;
         try {
+            final String styleValue = style.isEmpty() ? configuration.get(STYLE_OPT) : style;
+            final String styleArg = "-style=" + styleValue;
+            final boolean styleFromFile = styleValue.equals("file") || styleValue.startsWith("file:");
+            final String fileLocation = fileService.getCurrentFileLocation();
             final ArrayList<String> args = new ArrayList<String>(Arrays.asList(
-                    "clang-format",
+                    configuration.get(PATH_OPT),
                     "-output-replacements-xml",
-                    "-style=" + (style.isEmpty() ? configuration.get(STYLE_OPT) : style),
-                    "-assume-filename=" + fileService.getCurrentFileLocation()));
+                    styleArg,
+                    "-assume-filename=" + fileLocation));
             if (rangeLength != 0) {
                 args.add("-offset=" + String.valueOf(position));
                 args.add("-length=" + String.valueOf(rangeLength));
@@ -82,49 +100,89 @@ public class ClangFormat extends CountIgnoringNonRepeatableCommand {
                 rangeStart = 0;
                 rangeEnd = length;
             }
-            final Process p = ProcessHelper.start(args.toArray(new String[args.size()]));
-            final BufferedReader stdError = new BufferedReader(new InputStreamReader(p.getErrorStream()));
-            //
-            // Send full editor content
-            //
-            final BufferedWriter stdOut = new BufferedWriter(new OutputStreamWriter(p.getOutputStream()));
-            stdOut.write(text);
-            stdOut.close();
-            //
-            // Read and parse clang-format XML output
-            //
-            final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            final DocumentBuilder builder = factory.newDocumentBuilder();
-            Document replacements = null;
-            try {
-                replacements = builder.parse(p.getInputStream());
-            } catch (Exception e) { }
-            final String errors = ProcessHelper.ReadProcessOutput(stdError);
-            if (p.waitFor() != 0 || replacements == null || !errors.isEmpty()) {
-                showProcessError(StringUtils.join(" ", args), editorAdaptor, p.exitValue(), 
-                        errors);
-            } else {
-                //
-                // No errors detected, apply the formatting as single change
-                //
-                final CursorService cursorService = editorAdaptor.getCursorService();
-                editorAdaptor.getHistory().beginCompoundChange();
-                try {
-                    cursor = cursorService.newPositionForModelOffset(
-                            appyReplacements(replacements, modelContent, rangeStart,
-                                    rangeEnd, cursor.getModelOffset()));
-                } finally {
-                    editorAdaptor.getHistory().endCompoundChange();
+            // The cursor doesn't change the formatting, leave it out of the fingerprint.
+            final String settings = styleArg + ' '
+                    + (rangeLength != 0 ? rangeStart + "+" + rangeLength : "all");
+            if ( ! styleFromFile
+                    && fingerprint(settings, text).equals(formattedFiles.get(fileLocation))) {
+                editorAdaptor.getUserInterfaceService().setInfoMessage(
+                        "clang-format: already formatted");
+                return;
+            }
+            final String command = StringUtils.join(" ", args);
+            ProcessHelper.ProcessListener listener = new ProcessHelper.ProcessListener() {
+                public void finished(String output) {
+                    if (modelContent.getTextLength() != length
+                            || ! modelContent.getText(0, length).equals(text)) {
+                        editorAdaptor.getUserInterfaceService().setErrorMessage(
+                                "clang-format result dropped, text changed while formatting");
+                        return;
+                    }
+                    List<Replacement> replacements;
+                    try {
+                        replacements = parseReplacements(output);
+                    } catch (Exception e) {
+                        showProcessError(command, editorAdaptor, 0, e.getMessage() + '\n' + output);
+                        return;
+                    }
+                    //
+                    // No errors detected, apply the formatting as single change
+                    //
+                    final CursorService cursorService = editorAdaptor.getCursorService();
+                    final HistoryService history = editorAdaptor.getHistory();
+                    int newCursor;
+                    history.beginCompoundChange();
+                    try {
+                        newCursor = applyReplacements(replacements, modelContent, text,
+                                rangeStart, rangeEnd, cursor.getModelOffset());
+                    } finally {
+                        history.endCompoundChange();
+                    }
+                    cursorService.setPosition(cursorService.newPositionForModelOffset(newCursor),
+                            StickyColumnPolicy.ON_CHANGE);
+                    if ( ! styleFromFile) {
+                        formattedFiles.put(fileLocation, fingerprint(settings,
+                                modelContent.getText(0, modelContent.getTextLength())));
+                    }
+                }
+
+                public void failed(int exitCode, String errors) {
+                    showProcessError(command, editorAdaptor, exitCode, errors);
                 }
-                cursorService.setPosition(cursor, StickyColumnPolicy.ON_CHANGE);
+
+                public void aborted(Exception e) {
+                    VrapperLog.error("clang-format error: " + e.getMessage(), e);
+                    editorAdaptor.getUserInterfaceService().setErrorMessage(
+                            "clang-format error:" + e.getMessage());
+                }
+            };
+            String[] argArray = args.toArray(new String[args.size()]);
+            // Inside a macro, :normal, :g or a counted command the next command works on the
+            // formatted text, so it has to be in place already.
+            if (editorAdaptor.getHistory().isLocked()) {
+                ProcessHelper.run("clang-format", argArray, text, listener);
+            } else {
+                ProcessHelper.runInBackground(editorAdaptor.getBackgroundTaskService(),
+                        "clang-format", argArray, text, listener);
             }
         } catch (Exception e) {
             throw new CommandExecutionException("clang-format error:" + e.getMessage());
         }
     }
 
+    private static String fingerprint(String settings, String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(text.getBytes(StandardCharsets.UTF_8));
+            return settings + ' ' + HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform has SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
     /**
-     * Applies replacements specified in the parsed XML output.
+     * Reads the replacements from clang-format's XML output.
      * @code
      * <?xml version='1.0'?>
      * <replacements xml:space='preserve'>
@@ -132,37 +190,77 @@ public class ClangFormat extends CountIgnoringNonRepeatableCommand {
      *   <replacement offset='474' length='1'> </replacement>
      * </replacements>
      * @endcode
-     * @param result parsed XML output.
+     * @return replacements in the order of the output, which is by offset.
+     */
+    static List<Replacement> parseReplacements(String output) throws XMLStreamException {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        final XMLStreamReader reader = factory.createXMLStreamReader(new StringReader(output));
+        final List<Replacement> replacements = new ArrayList<Replacement>();
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT
+                        && reader.getLocalName().equals("replacement")) {
+                    final int offset = Integer.parseInt(reader.getAttributeValue(null, "offset"));
+                    final int length = Integer.parseInt(reader.getAttributeValue(null, "length"));
+                    replacements.add(new Replacement(offset, length, reader.getElementText()));
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return replacements;
+    }
+
+    /**
+     * Applies the replacements with a single change covering all of them.
+     * @param replacements replacements sorted by offset.
      * @param modelContent text to apply replacements to.
+     * @param text current content of modelContent.
      * @param rangeStart selected region start.
      * @param rangeEnd selected region end.
      * @param cursor current cursor position.
      * @return new cursor position adjusted to match the modifications.
      */
-    private int appyReplacements(final Document result, final TextContent modelContent, 
-            final int rangeStart, final int rangeEnd, final int cursor)
-    {
-        final NodeList replacements = result.getFirstChild().getChildNodes();
+    private static int applyReplacements(final List<Replacement> replacements,
+            final TextContent modelContent, final String text, final int rangeStart,
+            final int rangeEnd, final int cursor) {
         int newCursor = cursor;
-        //
-        // Applying replacements in reverse order to ensure correct offsets.
-        //
-        for (int i = replacements.getLength(); i > 0; --i) {
-            final Node r = replacements.item(i - 1);
-            if (r.getNodeName().equals("replacement")) {
-                final int index = Integer.parseInt(r.getAttributes().getNamedItem("offset").getNodeValue());
-                final int length = Integer.parseInt(r.getAttributes().getNamedItem("length").getNodeValue());
-                // clang-format v3.4 tends to overshoot when a range is specified.
-                if ((index + length) >= rangeEnd || (index + length) < rangeStart) {
-                    continue;
-                }
-                final String text = r.getTextContent();
-                modelContent.replace(index, length, text);
-                if (newCursor > index) {
-                    newCursor += text.length() - length;
-                }
+        int changeStart = -1;
+        int changeEnd = -1;
+        final StringBuilder changed = new StringBuilder();
+        for (Replacement r : replacements) {
+            final int end = r.offset + r.length;
+            // clang-format v3.4 tends to overshoot when a range is specified.
+            if (end >= rangeEnd || end < rangeStart || r.offset < changeEnd) {
+                continue;
             }
+            if (changeStart < 0) {
+                changeStart = r.offset;
+            } else {
+                changed.append(text, changeEnd, r.offset);
+            }
+            changed.append(r.text);
+            changeEnd = end;
+            if (cursor > r.offset) {
+                newCursor += r.text.length() - r.length;
+            }
+        }
+        if (changeStart >= 0) {
+            modelContent.replace(changeStart, changeEnd - changeStart, changed.toString());
         }
         return newCursor;
     }
+
+    static class Replacement {
+        final int offset;
+        final int length;
+        final String text;
+
+        Replacement(int offset, int length, String text) {
+            this.offset = offset;
+            this.length = length;
+            this.text = text;
+        }
+    }
 }
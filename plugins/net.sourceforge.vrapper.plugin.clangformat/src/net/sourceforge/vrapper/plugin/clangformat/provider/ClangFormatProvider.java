@@ -44,11 +44,20 @@ public class ClangFormatProvider extends AbstractEclipseSpecificStateProvider {
         }
     }
 
+    protected static class ClangFormatPathEvaluator implements Evaluator {
+
+        public Object evaluate(EditorAdaptor vim, Queue<String> command) {
+            vim.getConfiguration().set(ClangFormat.PATH_OPT, StringUtils.join(" ", command));
+            return null;
+        }
+    }
+
     public ClangFormatProvider() {
         name = "ClangFormat State Provider";
         commands.add("clang-format", new ClangFormatEvaluator());
         commands.add("clang-format-default-style", new ClangFormatStyleEvaluator(false));
         commands.add("clang-format-style", new ClangFormatStyleEvaluator(true));
+        commands.add("clang-format-path", new ClangFormatPathEvaluator());
     }
 
 }
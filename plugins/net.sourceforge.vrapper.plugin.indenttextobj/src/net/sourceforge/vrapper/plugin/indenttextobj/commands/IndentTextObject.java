@@ -4,6 +4,7 @@ import net.sourceforge.vrapper.platform.Configuration;
 import net.sourceforge.vrapper.platform.CursorService;
 import net.sourceforge.vrapper.platform.TextContent;
 import net.sourceforge.vrapper.utils.ContentType;
+import net.sourceforge.vrapper.utils.LineIndentIndex;
 import net.sourceforge.vrapper.utils.LineInformation;
 import net.sourceforge.vrapper.utils.Position;
 import net.sourceforge.vrapper.utils.StartEndTextRange;
@@ -39,91 +40,58 @@ public class IndentTextObject extends AbstractTextObject {
             count = 1;
         }
 
-    	TextContent model = editorAdaptor.getModelContent();
-    	LineInformation cursorLine = model.getLineInformationOfOffset(editorAdaptor.getPosition().getModelOffset());
-    	
-    	if(cursorLine.getLength() == 0) {
-    		//if cursor is on an empty line,
-    		//find the adjacent line (above or below)
-    		//with the most indentation (skipping other empty lines)
-    		int prevNum = cursorLine.getNumber() - 1;
-    		LineInformation prev;
-    		try {
-    			while(prevNum > 0) {
-    				if(model.getLineInformation(prevNum).getLength() > 0) {
-    					break;
-    				}
-    				prevNum--;
-    			}
-    			prev = model.getLineInformation(prevNum);
-    		}
-    		catch(Exception e) {
-    			prev = cursorLine;
-    		}
-
-    		int nextNum = cursorLine.getNumber() + 1;
-    		LineInformation next;
-    		try {
-    			while(nextNum < model.getNumberOfLines()) {
-    				if(model.getLineInformation(nextNum).getLength() > 0) {
-    					break;
-    				}
-    				nextNum++;
-    			}
-    			next = model.getLineInformation(nextNum);
-    		}
-    		catch(Exception e) {
-    			next = cursorLine;
-    		}
-
-            int prevIndent = VimUtils.getIndent(model, prev).length();
-            int nextIndent = VimUtils.getIndent(model, next).length();
-    		cursorLine = prevIndent > nextIndent ? prev : next;
-    	}
-
-    	//if no other lines match, default to current line
-    	int indentLength = VimUtils.getIndent(model, cursorLine).length();
-    	int start = cursorLine.getBeginOffset();
-    	int end = cursorLine.getEndOffset();
-
-    	int lineNo = cursorLine.getNumber() - 1;
-    	LineInformation previousLine = cursorLine;
-    	LineInformation line;
-    	
-    	//find previous line with different indent
-    	while(lineNo >= 0) {
-    		line = model.getLineInformation(lineNo);
-    		if( (! VimUtils.isLineBlank(model, lineNo)) &&
-    				VimUtils.getIndent(model, line).length() < indentLength) {
-    			if(count == 1) {
-    				start = includeFirstLine ? line.getBeginOffset() : previousLine.getBeginOffset();
-    				break;
-    			}
-    			else {
-    				indentLength = VimUtils.getIndent(model, line).length();
-    				count--;
-    			}
-    		}
-    		previousLine = line;
-    		lineNo--;
-    	}
-
-    	//reset for next iteration
-    	lineNo = cursorLine.getNumber() + 1;
-    	previousLine = cursorLine;
-    	int total = model.getNumberOfLines();
-    	
-    	//find next line with different indent
-    	while(lineNo < total) {
-    		line = model.getLineInformation(lineNo);
-    		if( (! VimUtils.isLineBlank(model, lineNo)) &&
-    				VimUtils.getIndent(model, line).length() < indentLength) {
-    			end = includeLastLine ? line.getEndOffset() : previousLine.getEndOffset();
-    			break;
-    		}
-    		previousLine = line;
-    		lineNo++;
-    	}
+        TextContent model = editorAdaptor.getModelContent();
+        LineIndentIndex lines = LineIndentIndex.of(model);
+        int cursorLineNo = model.getLineInformationOfOffset(
+                editorAdaptor.getPosition().getModelOffset()).getNumber();
+
+        if (lines.isEmpty(cursorLineNo)) {
+            //if cursor is on an empty line,
+            //find the adjacent line (above or below)
+            //with the most indentation (skipping other empty lines)
+            int prevNum = cursorLineNo - 1;
+            while (prevNum > 0 && lines.isEmpty(prevNum)) {
+                prevNum--;
+            }
+            if (prevNum < 0) {
+                prevNum = cursorLineNo;
+            }
+
+            int nextNum = cursorLineNo + 1;
+            int total = model.getNumberOfLines();
+            while (nextNum < total && lines.isEmpty(nextNum)) {
+                nextNum++;
+            }
+            if (nextNum >= total) {
+                nextNum = cursorLineNo;
+            }
+
+            cursorLineNo = lines.getIndent(prevNum) > lines.getIndent(nextNum) ? prevNum : nextNum;
+        }
+
+        //if no other lines match, default to current line
+        LineInformation cursorLine = model.getLineInformation(cursorLineNo);
+        int indentLength = lines.getIndent(cursorLineNo);
+        int start = cursorLine.getBeginOffset();
+        int end = cursorLine.getEndOffset();
+
+        //find previous line with less indent
+        int lineNo = lines.findLessIndented(cursorLineNo - 1, -1, indentLength);
+        while (lineNo >= 0) {
+            if (count == 1) {
+                start = model.getLineInformation(includeFirstLine ? lineNo : lineNo + 1).getBeginOffset();
+                break;
+            }
+            indentLength = lines.getIndent(lineNo);
+            count--;
+            lineNo = lines.findLessIndented(lineNo - 1, -1, indentLength);
+        }
+
+        //find next line with less indent
+        lineNo = lines.findLessIndented(cursorLineNo + 1, 1, indentLength);
+        if (lineNo >= 0) {
+            end = model.getLineInformation(includeLastLine ? lineNo : lineNo - 1).getEndOffset();
+        }
 
     	CursorService cursor = editorAdaptor.getCursorService();
     	Position startPos = VimUtils.fixLeftDelimiter(model, cursor, cursor.newPositionForModelOffset(start));
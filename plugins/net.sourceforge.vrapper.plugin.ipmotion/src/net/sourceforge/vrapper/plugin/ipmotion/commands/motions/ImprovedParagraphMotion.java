@@ -3,11 +3,8 @@ package net.sourceforge.vrapper.plugin.ipmotion.commands.motions;
 import static net.sourceforge.vrapper.keymap.vim.ConstructorWrappers.leafBind;
 import static net.sourceforge.vrapper.keymap.vim.ConstructorWrappers.state;
 
-import java.util.regex.Pattern;
-
 import net.sourceforge.vrapper.keymap.State;
-import net.sourceforge.vrapper.platform.TextContent;
-import net.sourceforge.vrapper.utils.LineInformation;
+import net.sourceforge.vrapper.utils.LineIndentIndex;
 import net.sourceforge.vrapper.vim.commands.motions.Motion;
 import net.sourceforge.vrapper.vim.commands.motions.ParagraphMotion;
 
@@ -42,29 +39,16 @@ public class ImprovedParagraphMotion extends ParagraphMotion {
      *  Note that there is no need adding a "^" sign at the
      *  beginning. It is enforced by the script.
      * 
+     * Vrapper doesn't support script variables, so the boundary is always the default: a blank
+     * line, which the line indent index knows without reading the line again.
      */
-    private final String gIpBoundary = "\\s*$";
-    
-    /**
-     * Built from gIpBoundary; used to determine line emptiness.
-     *  If vrapper supports script variables, the behavior could
-     *  be customized....
-     */
-    private final Pattern mIpBoundary;
-
     protected ImprovedParagraphMotion(final boolean moveForward) {
         super(moveForward);
-        
-        mIpBoundary = Pattern.compile("^(" + gIpBoundary +")");
     }
 
     @Override
-    protected boolean doesLineEmptinessEqual(final boolean equalWhat, final TextContent content, final int lineNo) {
-        final LineInformation info = content.getLineInformation(lineNo);
-        final String line = content.getText(info.getBeginOffset(), info.getLength());
-        final boolean isEmpty = mIpBoundary.matcher(line).matches();
-//        final boolean isEmpty = Pattern.matches("^(" + gIpBoundary + ")", line); // for testing, with hotswap
-        return isEmpty == equalWhat;
+    protected boolean doesLineEmptinessEqual(final boolean equalWhat, final LineIndentIndex lines, final int lineNo) {
+        return lines.isBlank(lineNo) == equalWhat;
     }
     
 }
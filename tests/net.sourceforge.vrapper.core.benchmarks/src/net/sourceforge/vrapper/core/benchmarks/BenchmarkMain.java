@@ -0,0 +1,28 @@
+package net.sourceforge.vrapper.core.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and writes their results as JSON, so that two runs can be compared by a
+ * script before a release.
+ * <p>
+ * Usage: <code>BenchmarkMain [result file] [benchmark regex...]</code>. The result file defaults
+ * to <code>jmh-result.json</code>, without regular expressions all benchmarks are run.
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws RunnerException {
+        String resultFile = args.length > 0 ? args[0] : "jmh-result.json";
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultFile);
+        for (int i = 1; i < args.length; i++) {
+            options.include(args[i]);
+        }
+        new Runner(options.build()).run();
+    }
+}
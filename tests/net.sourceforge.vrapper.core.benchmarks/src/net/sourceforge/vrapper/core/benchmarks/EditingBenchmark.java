@@ -0,0 +1,77 @@
+package net.sourceforge.vrapper.core.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.sourceforge.vrapper.keymap.KeyStroke;
+
+/**
+ * Runs Ex commands and a macro which change the whole buffer. The text is restored before every
+ * invocation, outside of the measured time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EditingBenchmark {
+
+    @Param({ "10000" })
+    public int lineCount;
+
+    private EditorFixture editor;
+    private String text;
+    private KeyStroke[] substitute;
+    private KeyStroke[] global;
+    private KeyStroke[] sort;
+    private KeyStroke[] macroReplay;
+
+    @Setup
+    public void setUp() {
+        editor = new EditorFixture();
+        text = EditorFixture.generateText(lineCount);
+        substitute = EditorFixture.keys(":%s/value [0-9a-f]*/hex/g<CR>");
+        global = EditorFixture.keys(":g/x[0-4]$/d<CR>");
+        sort = EditorFixture.keys(":%sort n<CR>");
+        editor.setMacro("q", "0~w~j");
+        macroReplay = EditorFixture.keys("1000@q");
+    }
+
+    @Setup(Level.Invocation)
+    public void restoreText() {
+        editor.reset(text);
+    }
+
+    @Benchmark
+    public void substitute() {
+        editor.type(substitute);
+    }
+
+    @Benchmark
+    public void global() {
+        editor.type(global);
+    }
+
+    @Benchmark
+    public void sort() {
+        editor.type(sort);
+    }
+
+    @Benchmark
+    public void macroReplay() {
+        editor.type(macroReplay);
+    }
+}
@@ -0,0 +1,163 @@
+package net.sourceforge.vrapper.core.benchmarks;
+
+import static net.sourceforge.vrapper.keymap.vim.ConstructorWrappers.parseKeyStrokes;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import net.sourceforge.vrapper.keymap.KeyStroke;
+import net.sourceforge.vrapper.platform.BufferAndTabService;
+import net.sourceforge.vrapper.platform.FileService;
+import net.sourceforge.vrapper.platform.HistoryService;
+import net.sourceforge.vrapper.platform.Platform;
+import net.sourceforge.vrapper.platform.PlatformSpecificStateProvider;
+import net.sourceforge.vrapper.platform.PlatformVrapperLifecycleListener;
+import net.sourceforge.vrapper.platform.ServiceProvider;
+import net.sourceforge.vrapper.platform.UnderlyingEditorSettings;
+import net.sourceforge.vrapper.platform.UserInterfaceService;
+import net.sourceforge.vrapper.platform.ViewportService;
+import net.sourceforge.vrapper.testutil.CommandLineUIStub;
+import net.sourceforge.vrapper.testutil.IndexedTestTextContent;
+import net.sourceforge.vrapper.testutil.SynchronousBackgroundTaskService;
+import net.sourceforge.vrapper.testutil.TestCursorAndSelection;
+import net.sourceforge.vrapper.testutil.TestSearchService;
+import net.sourceforge.vrapper.testutil.TestTextContent;
+import net.sourceforge.vrapper.utils.ContentType;
+import net.sourceforge.vrapper.utils.DefaultKeyMapProvider;
+import net.sourceforge.vrapper.utils.ViewPortInformation;
+import net.sourceforge.vrapper.vim.DefaultConfigProvider;
+import net.sourceforge.vrapper.vim.DefaultEditorAdaptor;
+import net.sourceforge.vrapper.vim.EditorAdaptor;
+import net.sourceforge.vrapper.vim.LocalConfiguration;
+import net.sourceforge.vrapper.vim.SimpleGlobalConfiguration;
+import net.sourceforge.vrapper.vim.SimpleLocalConfiguration;
+import net.sourceforge.vrapper.vim.TextObjectProvider;
+import net.sourceforge.vrapper.vim.commands.motions.StickyColumnPolicy;
+import net.sourceforge.vrapper.vim.register.DefaultRegisterManager;
+import net.sourceforge.vrapper.vim.register.RegisterManager;
+import net.sourceforge.vrapper.vim.register.StringRegisterContent;
+
+import org.mockito.Mockito;
+import org.mockito.MockSettings;
+
+/**
+ * An editor on the in-memory platform of the unit tests, for benchmarks which drive
+ * {@link DefaultEditorAdaptor} with keystrokes.
+ * <p>
+ * Unlike {@link net.sourceforge.vrapper.testutil.VimTestCase} nothing the editor calls on every
+ * key is a Mockito spy, and the remaining mocks don't record their invocations: either would
+ * dominate the timings and fill the heap during a long run. The text content keeps an index of
+ * its lines, so that large buffers don't make every line lookup a scan.
+ */
+class EditorFixture {
+
+    private final TestCursorAndSelection cursorAndSelection;
+    private final TestTextContent content;
+    private final RegisterManager registerManager;
+    private final EditorAdaptor adaptor;
+
+    EditorFixture() {
+        DefaultEditorAdaptor.SHOULD_READ_RC_FILE = false;
+        cursorAndSelection = new TestCursorAndSelection();
+        content = new IndexedTestTextContent(cursorAndSelection);
+        cursorAndSelection.setContent(content);
+        List<DefaultConfigProvider> configProviders = Collections.emptyList();
+        LocalConfiguration configuration = new SimpleLocalConfiguration(configProviders,
+                new SimpleGlobalConfiguration(configProviders));
+        configuration.setNewLine("\n");
+
+        UserInterfaceService userInterfaceService = stub(UserInterfaceService.class);
+        when(userInterfaceService.getCommandLineUI(Mockito.any(EditorAdaptor.class)))
+                .thenReturn(new CommandLineUIStub());
+        FileService fileService = stub(FileService.class);
+        when(fileService.isEditable()).thenReturn(true);
+        when(fileService.checkModifiable()).thenReturn(true);
+        ViewportService viewportService = stub(ViewportService.class);
+        when(viewportService.getViewPortInformation()).thenReturn(new ViewPortInformation(0, 50));
+
+        Platform platform = stub(Platform.class);
+        when(platform.getCursorService()).thenReturn(cursorAndSelection);
+        when(platform.getSelectionService()).thenReturn(cursorAndSelection);
+        when(platform.getModelContent()).thenReturn(content);
+        when(platform.getViewContent()).thenReturn(content);
+        when(platform.getViewportService()).thenReturn(viewportService);
+        when(platform.getUserInterfaceService()).thenReturn(userInterfaceService);
+        when(platform.getFileService()).thenReturn(fileService);
+        when(platform.getHistoryService()).thenReturn(stub(HistoryService.class));
+        when(platform.getKeyMapProvider()).thenReturn(new DefaultKeyMapProvider());
+        when(platform.getServiceProvider()).thenReturn(stub(ServiceProvider.class));
+        when(platform.getConfiguration()).thenReturn(configuration);
+        when(platform.getSearchAndReplaceService())
+                .thenReturn(new TestSearchService(content, configuration));
+        when(platform.getPlatformSpecificStateProvider(Mockito.<TextObjectProvider>any()))
+                .thenReturn(stub(PlatformSpecificStateProvider.class));
+        when(platform.getUnderlyingEditorSettings())
+                .thenReturn(stub(UnderlyingEditorSettings.class));
+        when(platform.getBufferAndTabService()).thenReturn(stub(BufferAndTabService.class));
+        when(platform.getBackgroundTaskService())
+                .thenReturn(new SynchronousBackgroundTaskService());
+
+        registerManager = new DefaultRegisterManager();
+        adaptor = new DefaultEditorAdaptor(platform, registerManager, true,
+                Collections.<PlatformVrapperLifecycleListener>emptyList());
+    }
+
+    private static <T> T stub(Class<T> type) {
+        MockSettings settings = withSettings().stubOnly();
+        return mock(type, settings);
+    }
+
+    EditorAdaptor getAdaptor() {
+        return adaptor;
+    }
+
+    /** Replaces the text and puts the cursor at its start. */
+    void reset(String text) {
+        content.setText(text);
+        cursorAndSelection.setPosition(cursorAndSelection.newPositionForModelOffset(0),
+                StickyColumnPolicy.NEVER);
+    }
+
+    void type(KeyStroke[] keyStrokes) {
+        for (KeyStroke key : keyStrokes) {
+            adaptor.handleKey(key);
+        }
+    }
+
+    void setMacro(String name, String keys) {
+        registerManager.getRegister(name).setContent(
+                new StringRegisterContent(ContentType.KEY_SEQUENCE, keys), false);
+    }
+
+    static KeyStroke[] keys(String keys) {
+        List<KeyStroke> parsed = new ArrayList<KeyStroke>();
+        for (KeyStroke key : parseKeyStrokes(keys)) {
+            parsed.add(key);
+        }
+        return parsed.toArray(new KeyStroke[parsed.size()]);
+    }
+
+    /** @return generated lines of words and numbers, with an indented block every ten lines. */
+    static String generateText(int lineCount) {
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder(lineCount * 40);
+        for (int i = 0; i < lineCount; i++) {
+            if (i % 10 == 9) {
+                text.append('\n');
+                continue;
+            }
+            if (i % 10 > 5) {
+                text.append("    ");
+            }
+            text.append("item ").append(random.nextInt(1000000)).append(" value ")
+                    .append(Integer.toHexString(random.nextInt())).append(" x")
+                    .append(random.nextInt(100)).append('\n');
+        }
+        return text.toString();
+    }
+}
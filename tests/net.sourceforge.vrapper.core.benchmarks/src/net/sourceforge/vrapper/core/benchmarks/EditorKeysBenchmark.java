@@ -0,0 +1,58 @@
+package net.sourceforge.vrapper.core.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.sourceforge.vrapper.keymap.KeyStroke;
+
+/**
+ * Types Normal mode keys into a {@link net.sourceforge.vrapper.vim.DefaultEditorAdaptor}, so
+ * that remapping, state dispatch and command execution are measured together. Each key sequence
+ * leaves the cursor where it started.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EditorKeysBenchmark {
+
+    @Param({ "1000", "100000" })
+    public int lineCount;
+
+    private EditorFixture editor;
+    private KeyStroke[] shortMotions;
+    private KeyStroke[] bufferMotions;
+
+    @Setup
+    public void setUp() {
+        editor = new EditorFixture();
+        editor.reset(EditorFixture.generateText(lineCount));
+        shortMotions = EditorFixture.keys("3j3kwwbb$0");
+        bufferMotions = EditorFixture.keys("G50%}{gg");
+    }
+
+    /** Motions within a few lines, mostly measuring the way from key to command. */
+    @Benchmark
+    public void keystrokeDispatch() {
+        editor.type(shortMotions);
+    }
+
+    /** Motions across the whole buffer. */
+    @Benchmark
+    public void bufferMotions() {
+        editor.type(bufferMotions);
+    }
+}
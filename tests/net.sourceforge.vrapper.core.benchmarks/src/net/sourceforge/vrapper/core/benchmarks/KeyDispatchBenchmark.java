@@ -0,0 +1,115 @@
+package net.sourceforge.vrapper.core.benchmarks;
+
+import static net.sourceforge.vrapper.keymap.StateUtils.union;
+import static net.sourceforge.vrapper.keymap.vim.ConstructorWrappers.leafBind;
+import static net.sourceforge.vrapper.keymap.vim.ConstructorWrappers.leafCtrlBind;
+import static net.sourceforge.vrapper.keymap.vim.ConstructorWrappers.parseKeyStrokes;
+import static net.sourceforge.vrapper.keymap.vim.ConstructorWrappers.state;
+import static net.sourceforge.vrapper.keymap.vim.ConstructorWrappers.transitionBind;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.sourceforge.vrapper.keymap.KeyStroke;
+import net.sourceforge.vrapper.keymap.StateCompiler;
+import net.sourceforge.vrapper.keymap.Transition;
+import net.sourceforge.vrapper.keymap.vim.CountingState;
+import net.sourceforge.vrapper.keymap.vim.GoThereState;
+import net.sourceforge.vrapper.keymap.vim.RegisterState;
+import net.sourceforge.vrapper.vim.commands.Command;
+import net.sourceforge.vrapper.vim.commands.DummyCommand;
+import net.sourceforge.vrapper.vim.modes.CommandBasedMode;
+
+/**
+ * Compares dispatching keystrokes through the keymap state graph as it is built by the modes with
+ * dispatching them through the same graph after {@link StateCompiler} flattened it.
+ * <p>
+ * The graph has the same shape as Normal mode's: counts and registers wrapped around a union of
+ * all motions and a table of plain commands. Keys are dispatched like
+ * {@link CommandBasedMode#handleKey(KeyStroke)} does, going back to the initial state after
+ * every complete command.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyDispatchBenchmark {
+
+    /** Motions, counted motions, multi-key commands and register prefixes. */
+    @Param({ "jjjkkkwwbbeehhll", "3j5kggG2wdd\"ayy" })
+    public String keys;
+
+    private net.sourceforge.vrapper.keymap.State<Command> stateGraph;
+    private net.sourceforge.vrapper.keymap.State<Command> compiledStates;
+    private KeyStroke[] keyStrokes;
+
+    @Setup
+    public void setUp() {
+        stateGraph = buildInitialState();
+        compiledStates = new StateCompiler().compile(buildInitialState());
+        List<KeyStroke> parsed = new ArrayList<KeyStroke>();
+        for (KeyStroke key : parseKeyStrokes(keys)) {
+            parsed.add(key);
+        }
+        keyStrokes = parsed.toArray(new KeyStroke[parsed.size()]);
+    }
+
+    @Benchmark
+    public void stateGraph(Blackhole blackhole) {
+        dispatch(stateGraph, blackhole);
+    }
+
+    @Benchmark
+    public void compiledStates(Blackhole blackhole) {
+        dispatch(compiledStates, blackhole);
+    }
+
+    private void dispatch(net.sourceforge.vrapper.keymap.State<Command> initialState,
+            Blackhole blackhole) {
+        net.sourceforge.vrapper.keymap.State<Command> currentState = initialState;
+        for (KeyStroke key : keyStrokes) {
+            Transition<Command> transition = currentState.press(key);
+            if (transition == null) {
+                currentState = initialState;
+                continue;
+            }
+            blackhole.consume(transition.getValue());
+            currentState = transition.getNextState();
+            if (currentState == null) {
+                currentState = initialState;
+            }
+        }
+    }
+
+    private static net.sourceforge.vrapper.keymap.State<Command> buildInitialState() {
+        Command command = DummyCommand.INSTANCE;
+        return CountingState.wrap(RegisterState.wrap(CountingState.wrap(union(
+                new GoThereState(CommandBasedMode.motions()),
+                state(
+                        leafBind('i', command),
+                        leafBind('a', command),
+                        leafBind('x', command),
+                        leafBind('p', command),
+                        leafBind('u', command),
+                        leafCtrlBind('r', command),
+                        transitionBind('d', leafBind('d', command)),
+                        transitionBind('y', leafBind('y', command)),
+                        transitionBind('z', leafBind('z', command), leafBind('t', command)))))));
+    }
+}
@@ -0,0 +1,58 @@
+package net.sourceforge.vrapper.core.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.sourceforge.vrapper.vim.commands.SortOperation;
+
+/**
+ * Sorts a large range of generated data lines with the different <code>:sort</code> flags. Only
+ * the sorting itself is measured, not reading and replacing the editor text.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SortBenchmark {
+
+    @Param({ "", "i", "u", "n", "x", "/x/ n" })
+    public String flags;
+
+    @Param({ "1000000" })
+    public int lineCount;
+
+    private List<String> lines;
+    private SortOperation operation;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        lines = new ArrayList<String>(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            lines.add("item " + random.nextInt(1000000) + " value "
+                    + Integer.toHexString(random.nextInt()) + " x" + random.nextInt(100));
+        }
+        operation = new SortOperation(flags);
+    }
+
+    @Benchmark
+    public List<String> sortLines() {
+        return operation.sortLines(lines);
+    }
+}
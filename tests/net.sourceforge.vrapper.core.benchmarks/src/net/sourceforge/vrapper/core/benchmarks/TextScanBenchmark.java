@@ -0,0 +1,147 @@
+package net.sourceforge.vrapper.core.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.sourceforge.vrapper.platform.TextContent;
+import net.sourceforge.vrapper.utils.LineInformation;
+import net.sourceforge.vrapper.utils.Space;
+import net.sourceforge.vrapper.utils.TextContentCursor;
+import net.sourceforge.vrapper.utils.TextRange;
+
+/**
+ * Compares scanning a text character by character through {@link TextContent#getText(int, int)}
+ * with scanning it through a {@link TextContentCursor}. The scan counts nested braces the way
+ * {@link net.sourceforge.vrapper.vim.commands.motions.MethodDeclarationMotion} does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextScanBenchmark {
+
+    @Param({ "100000", "1000000" })
+    public int textLength;
+
+    private TextContent content;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        String alphabet = "abcdefghij  ;()\n\t{}";
+        StringBuilder text = new StringBuilder(textLength);
+        for (int i = 0; i < textLength; i++) {
+            text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        content = new StringTextContent(text.toString());
+    }
+
+    @Benchmark
+    public int getTextForward() {
+        int depth = 0;
+        int length = content.getTextLength();
+        for (int i = 0; i < length; i++) {
+            depth += braceDelta(content.getText(i, 1).charAt(0));
+        }
+        return depth;
+    }
+
+    @Benchmark
+    public int cursorForward() {
+        int depth = 0;
+        TextContentCursor cursor = new TextContentCursor(content);
+        int length = cursor.getTextLength();
+        for (int i = 0; i < length; i++) {
+            depth += braceDelta(cursor.charAt(i));
+        }
+        return depth;
+    }
+
+    @Benchmark
+    public int getTextBackward() {
+        int depth = 0;
+        for (int i = content.getTextLength() - 1; i >= 0; i--) {
+            depth += braceDelta(content.getText(i, 1).charAt(0));
+        }
+        return depth;
+    }
+
+    @Benchmark
+    public int cursorBackward() {
+        int depth = 0;
+        TextContentCursor cursor = new TextContentCursor(content, content.getTextLength() - 1);
+        depth += braceDelta(cursor.current());
+        while (cursor.hasPrevious()) {
+            depth += braceDelta(cursor.previous());
+        }
+        return depth;
+    }
+
+    private static int braceDelta(char c) {
+        return c == '{' ? 1 : c == '}' ? -1 : 0;
+    }
+
+    /** Only the parts of {@link TextContent} needed to read the text. */
+    private static class StringTextContent implements TextContent {
+
+        private final String text;
+
+        public StringTextContent(String text) {
+            this.text = text;
+        }
+
+        public String getText(int index, int length) {
+            return text.substring(index, index + length);
+        }
+
+        public String getText(TextRange range) {
+            return getText(range.getLeftBound().getModelOffset(), range.getModelLength());
+        }
+
+        public int getTextLength() {
+            return text.length();
+        }
+
+        public Space getSpace() {
+            return Space.MODEL;
+        }
+
+        public LineInformation getLineInformation(int line) {
+            throw new UnsupportedOperationException();
+        }
+
+        public LineInformation getLineInformationOfOffset(int offset) {
+            throw new UnsupportedOperationException();
+        }
+
+        public int getNumberOfLines() {
+            throw new UnsupportedOperationException();
+        }
+
+        public void replace(int index, int length, String s) {
+            throw new UnsupportedOperationException();
+        }
+
+        public void smartInsert(int index, String s) {
+            throw new UnsupportedOperationException();
+        }
+
+        public void smartInsert(String s) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package net.sourceforge.vrapper.core.benchmarks;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.sourceforge.vrapper.vim.ConfigurationFileCache;
+
+/**
+ * Sources a generated <code>.vrapperrc</code> of options and mappings, as every new editor
+ * does. Both reading the file again and executing it from the cache are measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VrapperrcBenchmark {
+
+    @Param({ "100", "1000" })
+    public int commandCount;
+
+    private EditorFixture editor;
+    private File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        editor = new EditorFixture();
+        file = File.createTempFile("vrapperrc", ".benchmark");
+        Writer writer = new FileWriter(file);
+        try {
+            writer.write("\" generated for " + getClass().getSimpleName() + "\n");
+            for (int i = 0; i < commandCount; i++) {
+                switch (i % 5) {
+                case 0:
+                    writer.write("set ignorecase smartcase\n");
+                    break;
+                case 1:
+                    writer.write("set tabstop=" + (i % 8 + 1) + "\n");
+                    break;
+                case 2:
+                    writer.write("nnoremap <Leader>" + (char) ('a' + i % 26) + " :w<CR>\n");
+                    break;
+                case 3:
+                    writer.write("inoremap j" + (char) ('a' + i % 26) + " <Esc>\n");
+                    break;
+                default:
+                    writer.write("map g" + (char) ('a' + i % 26) + " " + (i % 9 + 1) + "j\n");
+                }
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+        ConfigurationFileCache.clear();
+    }
+
+    @Benchmark
+    public boolean sourceCached() {
+        return editor.getAdaptor().sourceConfigurationFile(file.getAbsolutePath());
+    }
+
+    @Benchmark
+    public boolean sourceUncached() {
+        ConfigurationFileCache.clear();
+        return editor.getAdaptor().sourceConfigurationFile(file.getAbsolutePath());
+    }
+}
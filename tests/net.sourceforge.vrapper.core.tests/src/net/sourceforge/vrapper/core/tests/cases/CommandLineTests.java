@@ -7,6 +7,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.LinkedList;
@@ -230,6 +231,37 @@ public class CommandLineTests extends VimTestCase {
 		assertEquals("one Two three two", content.getText());
 	}
 
+	@Test
+	public void testSubstitutionLineRange() throws CommandExecutionException {
+		when(platform.getSearchAndReplaceService()).thenReturn(new TestSearchService(content, configuration));
+		super.installSaneRegisterManager();
+
+		content.setText("one two two\nthree\ntwo four two\nfive");
+		makeSubstitution("%s/two/six/").execute(adaptor, SimpleLineRange.entireFile(adaptor));
+		assertEquals("one six two\nthree\nsix four two\nfive", content.getText());
+		verify(userInterfaceService).setInfoMessage("2 substitutions on 2 lines");
+
+		content.setText("one two two\nthree\ntwo four two\nfive");
+		makeSubstitution("%s/two/six/g").execute(adaptor, SimpleLineRange.entireFile(adaptor));
+		assertEquals("one six six\nthree\nsix four six\nfive", content.getText());
+		verify(userInterfaceService).setInfoMessage("4 substitutions on 2 lines");
+
+		content.setText("one two two\nthree\ntwo four two\nfive");
+		makeSubstitution("%s/two/six/gn").execute(adaptor, SimpleLineRange.entireFile(adaptor));
+		assertEquals("one two two\nthree\ntwo four two\nfive", content.getText());
+		verify(userInterfaceService).setInfoMessage("4 matches on 2 lines");
+
+		content.setText("one\ntwo\nthree\nfour");
+		makeSubstitution("%s/^/- /").execute(adaptor, SimpleLineRange.entireFile(adaptor));
+		assertEquals("- one\n- two\n- three\n- four", content.getText());
+		verify(userInterfaceService).setInfoMessage("4 substitutions on 4 lines");
+
+		content.setText("one\ntwo\nthree");
+		makeSubstitution("%s/$/;/").execute(adaptor, SimpleLineRange.entireFile(adaptor));
+		assertEquals("one;\ntwo;\nthree;", content.getText());
+		verify(userInterfaceService).setInfoMessage("3 substitutions on 3 lines");
+	}
+
 	private SubstitutionOperation makeSubstitution(String command) {
         SubstitutionDefinition definition = new SubstitutionDefinition(command, registerManager);
         return new SubstitutionOperation(definition);
@@ -515,6 +547,14 @@ public class CommandLineTests extends VimTestCase {
     	content.setText("3\n2\n-1\n1\n0");
     	new SortOperation("").execute(adaptor, 0, defaultRange);
     	assertEquals("-1\n0\n1\n2\n3", content.getText());
+
+    	content.setText("abcx\nx5\nfoo\nx3\nx-0\nx0");
+    	new SortOperation("/x/ n").execute(adaptor, 0, defaultRange);
+    	assertEquals("foo\nabcx\nx-0\nx0\nx3\nx5", content.getText());
+
+    	content.setText("1xB\n2xa\n3xC");
+    	new SortOperation("/x/ i").execute(adaptor, 0, defaultRange);
+    	assertEquals("2xa\n1xB\n3xC", content.getText());
     }
    
     @Test
@@ -579,6 +619,14 @@ public class CommandLineTests extends VimTestCase {
     	
     	new SortOperation("n").execute(adaptor, 0, range);
     	assertEquals("a\nb\nc\n3\n1\n2\n10", content.getText());
+
+    	content.setText("z\nb\na\nb\ny");
+    	startPos = new DumbPosition(2);
+    	stopPos = new DumbPosition(6);
+    	range = SimpleLineRange.betweenPositions(adaptor, startPos, stopPos);
+
+    	new SortOperation("u").execute(adaptor, 0, range);
+    	assertEquals("z\na\nb\ny", content.getText());
     }
     
     @Test
@@ -594,6 +642,30 @@ public class CommandLineTests extends VimTestCase {
     	content.setText("one two\ntwo three\nfour five");
     	new ExCommandOperation("g/one|four/d").execute(adaptor, SimpleLineRange.entireFile(adaptor));
     	assertEquals("two three", content.getText());
+
+    	content.setText("one two\ntwo three\nfour five\nsix");
+    	new ExCommandOperation("v/two/d").execute(adaptor, SimpleLineRange.entireFile(adaptor));
+    	assertEquals("one two\ntwo three", content.getText());
+
+    	content.setText("a\nb\na\nb\na\nb");
+    	new ExCommandOperation("g/a/normal ox").execute(adaptor, SimpleLineRange.entireFile(adaptor));
+    	assertEquals("a\nx\nb\na\nx\nb\na\nx\nb", content.getText());
+    }
+
+    @Test
+    public void testExCommandDeletingLaterMatches() throws CommandExecutionException {
+    	// Matches deleted by the command on an earlier match are skipped.
+    	content.setText("a\na\nb");
+    	new ExCommandOperation("g/a/normal jdd").execute(adaptor, SimpleLineRange.entireFile(adaptor));
+    	assertEquals("a\nb", content.getText());
+
+    	content.setText("a\na\na\nb");
+    	new ExCommandOperation("g/a/normal jdd").execute(adaptor, SimpleLineRange.entireFile(adaptor));
+    	assertEquals("a\na", content.getText());
+
+    	content.setText("\n\nb\nc");
+    	new ExCommandOperation("g/^$/normal jdd").execute(adaptor, SimpleLineRange.entireFile(adaptor));
+    	assertEquals("\nb\nc", content.getText());
     }
 
     @Test
@@ -3,6 +3,8 @@ package net.sourceforge.vrapper.core.tests.cases;
 import static net.sourceforge.vrapper.keymap.vim.ConstructorWrappers.parseKeyStrokes;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -17,6 +19,7 @@ import org.junit.Test;
 import net.sourceforge.vrapper.testutil.CommandTestCase;
 import net.sourceforge.vrapper.utils.CaretType;
 import net.sourceforge.vrapper.utils.ContentType;
+import net.sourceforge.vrapper.utils.StringUtils;
 import net.sourceforge.vrapper.vim.Options;
 import net.sourceforge.vrapper.vim.commands.Command;
 import net.sourceforge.vrapper.vim.commands.CommandExecutionException;
@@ -24,6 +27,7 @@ import net.sourceforge.vrapper.vim.commands.DeleteOperation;
 import net.sourceforge.vrapper.vim.commands.MotionTextObject;
 import net.sourceforge.vrapper.vim.commands.TextOperationTextObjectCommand;
 import net.sourceforge.vrapper.vim.commands.motions.MoveWordRight;
+import net.sourceforge.vrapper.vim.commands.motions.StickyColumnPolicy;
 import net.sourceforge.vrapper.vim.modes.CommandBasedMode;
 import net.sourceforge.vrapper.vim.modes.InsertMode;
 import net.sourceforge.vrapper.vim.modes.ModeSwitchHint;
@@ -486,6 +490,38 @@ public class NormalModeTests extends CommandTestCase {
 				"Al a\nya\nya\nya\nya\nya\ny", 'a', "\nma kota");
 	}
 
+	@Test public void test_o_autoindent() {
+		installSaneRegisterManager();
+		when(configuration.get(Options.AUTO_INDENT)).thenReturn(true);
+		checkCommand(forKeySeq("3ohey<Esc>"),
+				"    Al", ' ', "a\nma kota",
+				"    Al a\n    hey\n    hey\n    he", 'y', "\nma kota");
+		// Typed text starting with blanks adds to the indent of every following line.
+		checkCommand(forKeySeq("3o hey<Esc>"),
+				"  Al", ' ', "a\nma kota",
+				"  Al a\n   hey\n    hey\n     he", 'y', "\nma kota");
+	}
+
+	@Test public void testCountedInsertIsOneChange() {
+		installSaneRegisterManager();
+		content.setText("ab");
+		cursorAndSelection.setPosition(cursorAndSelection.newPositionForModelOffset(1),
+				StickyColumnPolicy.NEVER);
+		reset(content);
+		type(parseKeyStrokes("1000ifoo<Esc>"));
+		// Three typed characters and two pastes.
+		verify(content, times(5)).replace(anyInt(), anyInt(), anyString());
+		assertEquals("a" + StringUtils.multiply("foo", 1000) + "b", content.getText());
+		assertEquals(3000, cursorAndSelection.getPosition().getModelOffset());
+	}
+
+	@Test public void test_dot_with_count_on_i() {
+		installSaneRegisterManager();
+		checkCommand(forKeySeq("ifoo<Esc>3."),
+				"a", 'b', "",
+				"afofoofoofo", 'o', "ob");
+	}
+
 	@Test public void test_O() {
 		installSaneRegisterManager();
 		checkCommand(forKeySeq("Omana<Esc>"),
@@ -1679,6 +1715,33 @@ public class NormalModeTests extends CommandTestCase {
                 "this joins",' ',"three lines");
     }
 
+	@Test
+    public void test_J_glue() {
+        checkCommand(forKeySeq("4J"),
+                "f",'o',"o(\n  bar\n)\n\t baz",
+                "foo( bar)",' ',"baz");
+        checkCommand(forKeySeq("3J"),
+                "",'\n',"\n  \nx\ny",
+                "",'\n',"x\ny");
+        checkCommand(forKeySeq("4J"),
+                "a",'b',"\n  \nc\nd",
+                "ab c",' ',"d");
+        checkCommand(forKeySeq("5gJ"),
+                "a",'b',"\n  c\n\nd\ne",
+                "ab  cd",'e',"");
+    }
+
+	@Test
+    public void testJoinIsOneChange() {
+        content.setText("a\n b\n(c\n)\nd\ne");
+        reset(content);
+        type(parseKeyStrokes("9J"));
+        verify(content, times(1)).replace(anyInt(), anyInt(), anyString());
+        assertEquals("a b (c) d e", content.getText());
+        assertEquals(9, cursorAndSelection.getPosition().getModelOffset());
+        verify(userInterfaceService).setErrorMessage("there is nothing to join below last line");
+    }
+
 	@Test
     public void test_gJ() {
         checkCommand(forKeySeq("gJ"),
@@ -4,20 +4,26 @@ import static java.util.Arrays.asList;
 import static net.sourceforge.vrapper.keymap.StateUtils.union;
 import static net.sourceforge.vrapper.keymap.vim.ConstructorWrappers.key;
 import static net.sourceforge.vrapper.keymap.vim.ConstructorWrappers.leafBind;
+import static net.sourceforge.vrapper.keymap.vim.ConstructorWrappers.ctrlKey;
 import static net.sourceforge.vrapper.keymap.vim.ConstructorWrappers.parseKeyStrokes;
 import static net.sourceforge.vrapper.keymap.vim.ConstructorWrappers.state;
 import static net.sourceforge.vrapper.keymap.vim.ConstructorWrappers.transitionBind;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 
+import net.sourceforge.vrapper.keymap.CompiledState;
 import net.sourceforge.vrapper.keymap.ConvertingState;
+import net.sourceforge.vrapper.keymap.DynamicState;
 import net.sourceforge.vrapper.keymap.EmptyState;
 import net.sourceforge.vrapper.keymap.HashMapState;
 import net.sourceforge.vrapper.keymap.KeyStroke;
+import net.sourceforge.vrapper.keymap.SpecialKey;
 import net.sourceforge.vrapper.keymap.State;
+import net.sourceforge.vrapper.keymap.StateCompiler;
 import net.sourceforge.vrapper.keymap.Transition;
 import net.sourceforge.vrapper.keymap.UnionState;
 import net.sourceforge.vrapper.keymap.WrappingState;
@@ -220,6 +226,78 @@ public class StateAndTransitionTests {
                 .press(key('c')).getNextState());
     }
 
+    @Test
+    public void testCompiledUnion() {
+        State<Integer> other = state(leafBind('3', 3), transitionBind('4', leafBind('4', 1337)),
+                leafBind(SpecialKey.ESC, 27), leafBind(ctrlKey('a'), 97));
+        State<Integer> compiled = new StateCompiler().compile(union(state, other));
+        assertTrue(compiled instanceof CompiledState<?>);
+        assertEquals((Integer) 1, getValue(compiled, "1"));
+        assertEquals((Integer) 3, getValue(compiled, "3"));
+        assertEquals((Integer) 42, getValue(compiled, "42"));
+        assertEquals((Integer) 1337, getValue(compiled, "44"));
+        assertEquals((Integer) 27, compiled.press(key(SpecialKey.ESC)).getValue());
+        assertEquals((Integer) 97, compiled.press(ctrlKey('a')).getValue());
+        assertNull(compiled.press(key('a')));
+        assertNull(compiled.press(key('5')));
+        // Transitions are precomputed
+        assertSame(compiled.press(key('4')), compiled.press(key('4')));
+    }
+
+    @Test
+    public void compiledUnionShouldKeepPrecedenceOfDynamicStates() {
+        State<Integer> s1 = state(leafBind('a', 1));
+        DynamicState<Integer> dynamic = new DynamicState<Integer>(leafBind('b', 2));
+        State<Integer> s3 = state(leafBind('a', 3), leafBind('b', 3), leafBind('c', 3));
+        State<Integer> compiled = new StateCompiler().compile(union(s1, dynamic, s3));
+        assertEquals((Integer) 1, getValue(compiled, "a"));
+        assertEquals((Integer) 2, getValue(compiled, "b"));
+        assertEquals((Integer) 3, getValue(compiled, "c"));
+        dynamic.addBinding(leafBind('c', 4));
+        assertEquals((Integer) 4, getValue(compiled, "c"));
+    }
+
+    @Test
+    public void compiledConvertingStateShouldConvertOnce() {
+        final int[] calls = new int[1];
+        Function<String, Integer> converter = new Function<String, Integer>() {
+            public String call(Integer arg) {
+                calls[0]++;
+                return "#" + arg;
+            }
+        };
+        State<String> converting = new ConvertingState<String, Integer>(converter, state);
+        State<String> compiled = new StateCompiler().compile(union(
+                converting, state(leafBind('x', "x"))));
+        int callsAfterCompiling = calls[0];
+        assertEquals("#1", getValue(compiled, "1"));
+        assertEquals("#42", getValue(compiled, "42"));
+        assertEquals("x", getValue(compiled, "x"));
+        assertEquals("#1", getValue(compiled, "1"));
+        assertEquals(callsAfterCompiling, calls[0]);
+    }
+
+    @Test
+    public void compiledWrappingStateShouldStillCount() throws CommandExecutionException {
+        final StringBuilder history = new StringBuilder();
+        Command command = new CountAwareCommand() {
+            @Override
+            public void execute(EditorAdaptor editorAdaptor, int count) {
+                history.append(count);
+            }
+
+            @Override
+            public CountAwareCommand repetition() {
+                throw new UnsupportedOperationException();
+            }
+        };
+        State<Command> outer = new StateCompiler().compile(CountingState.wrap(
+                union(state(leafBind('c', command)), state(leafBind('d', command)))));
+        assertSame(command, outer.press(key('c')).getValue());
+        getValue(outer, "12d").execute(null);
+        assertEquals("12", history.toString());
+    }
+
     @Test
     public void testParsingKeyStrokes() {
         assertEquals(asList(key('a')), parseKeyStrokes("a"));
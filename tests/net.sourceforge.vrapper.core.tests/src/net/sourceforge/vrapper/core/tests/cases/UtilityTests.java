@@ -1,18 +1,40 @@
 package net.sourceforge.vrapper.core.tests.cases;
 
+import java.io.File;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.hamcrest.CoreMatchers;
 import org.hamcrest.MatcherAssert;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Test;
 
+import net.sourceforge.vrapper.platform.Configuration.Option;
+import net.sourceforge.vrapper.testutil.SynchronousBackgroundTaskService;
+import net.sourceforge.vrapper.testutil.TestTextContent;
 import net.sourceforge.vrapper.utils.ExplodedPattern;
+import net.sourceforge.vrapper.utils.IntervalTree;
+import net.sourceforge.vrapper.utils.IntervalTree.Interval;
+import net.sourceforge.vrapper.utils.LineIndentIndex;
+import net.sourceforge.vrapper.utils.ProcessHelper;
+import net.sourceforge.vrapper.utils.RingBuffer;
 import net.sourceforge.vrapper.utils.StringUtils;
 import net.sourceforge.vrapper.utils.StringUtils.PatternHolder;
+import net.sourceforge.vrapper.utils.TextContentCursor;
+import net.sourceforge.vrapper.utils.XmlTagIndex;
+import net.sourceforge.vrapper.vim.DefaultConfigProvider;
+import net.sourceforge.vrapper.vim.LatencyProfiler;
+import net.sourceforge.vrapper.vim.LatencyProfiler.Phase;
+import net.sourceforge.vrapper.vim.Options;
+import net.sourceforge.vrapper.vim.SimpleGlobalConfiguration;
+import net.sourceforge.vrapper.vim.SimpleLocalConfiguration;
 
 public class UtilityTests {
 
@@ -176,4 +198,328 @@ public class UtilityTests {
         Assert.assertEquals("", holder.remainder);
 
     }
+
+    @Test
+    public void testTextContentCursor() {
+        TestTextContent content = new TestTextContent(null);
+        String text = "0123456789abcdef";
+        content.setText(text);
+        // Tiny chunks so that every direction change refills the buffer.
+        TextContentCursor cursor = new TextContentCursor(content, 5, 3);
+
+        Assert.assertEquals('5', cursor.current());
+        Assert.assertEquals('6', cursor.next());
+        Assert.assertEquals('7', cursor.next());
+        Assert.assertEquals('8', cursor.next());
+        Assert.assertEquals(8, cursor.getPosition());
+        Assert.assertEquals('7', cursor.previous());
+
+        StringBuilder backwards = new StringBuilder();
+        cursor.setPosition(text.length() - 1);
+        backwards.append(cursor.current());
+        while (cursor.hasPrevious()) {
+            backwards.append(cursor.previous());
+        }
+        Assert.assertEquals(new StringBuilder(text).reverse().toString(), backwards.toString());
+        Assert.assertFalse(cursor.hasPrevious());
+
+        StringBuilder forwards = new StringBuilder();
+        forwards.append(cursor.current());
+        while (cursor.hasNext()) {
+            forwards.append(cursor.next());
+        }
+        Assert.assertEquals(text, forwards.toString());
+
+        for (int i = text.length() - 1; i >= 0; i -= 5) {
+            Assert.assertEquals(text.charAt(i), cursor.charAt(i));
+        }
+        try {
+            cursor.charAt(text.length());
+            Assert.fail("read past the end of the text");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testLineIndentIndex() {
+        TestTextContent content = new TestTextContent(null);
+        content.setText("a\n  b\n\t \n\n    c\n  d");
+        LineIndentIndex index = new LineIndentIndex(content);
+        Assert.assertEquals(0, index.getIndent(0));
+        Assert.assertEquals(2, index.getIndent(1));
+        Assert.assertTrue(index.isBlank(2));
+        Assert.assertFalse(index.isEmpty(2));
+        Assert.assertTrue(index.isEmpty(3));
+        Assert.assertEquals(4, index.getIndent(4));
+        Assert.assertEquals(1, index.findLessIndented(4, -1, 4));
+        Assert.assertEquals(0, index.findLessIndented(4, -1, 2));
+        Assert.assertEquals(5, index.findLessIndented(2, 1, 3));
+        Assert.assertEquals(-1, index.findLessIndented(1, 1, 2));
+
+        // Edits reported to the index must give the same answers as a freshly built index.
+        Random random = new Random(7);
+        String[] pieces = { "", "x", "  ", "\t", "\n", "\n  y\n", "\n\n", " \n" };
+        String text = content.getText(0, content.getTextLength());
+        for (int i = 0; i < 500; i++) {
+            int offset = random.nextInt(text.length() + 1);
+            int length = random.nextInt(Math.min(8, text.length() - offset) + 1);
+            String inserted = pieces[random.nextInt(pieces.length)];
+            int firstLine = content.getLineInformationOfOffset(offset).getNumber();
+            int removedLines = lineBreaks(text.substring(offset, offset + length));
+            text = text.substring(0, offset) + inserted + text.substring(offset + length);
+            content.setText(text);
+            index.linesChanged(firstLine, removedLines, lineBreaks(inserted));
+
+            LineIndentIndex fresh = new LineIndentIndex(content);
+            for (int line = 0; line < content.getNumberOfLines(); line++) {
+                Assert.assertEquals(fresh.getIndent(line), index.getIndent(line));
+                Assert.assertEquals(fresh.isBlank(line), index.isBlank(line));
+                Assert.assertEquals(fresh.isEmpty(line), index.isEmpty(line));
+            }
+        }
+    }
+
+    @Test
+    public void testXmlTagIndex() {
+        XmlTagIndex index = new XmlTagIndex("<a href='x'>b<br/><%= c %></a>");
+        Assert.assertEquals(2, index.size());
+        Assert.assertEquals("a", index.getName(0));
+        Assert.assertFalse(index.isCloseTag(0));
+        Assert.assertEquals(12, index.getEnd(0));
+        Assert.assertEquals("a", index.getName(1));
+        Assert.assertTrue(index.isCloseTag(1));
+        Assert.assertEquals(1, index.firstStartingAt(13));
+        Assert.assertEquals(0, index.lastEndingAt(index.getStart(1)));
+        Assert.assertEquals(-1, index.lastEndingAt(11));
+        Assert.assertEquals(-1, index.firstStartingAt(index.getStart(1) + 1));
+
+        // Tags must be what the regular expression the text objects used to scan with finds.
+        Pattern tagPattern = Pattern.compile(
+                "(?:(<(?!%|!)(<(?=%)|(?<=%)>|[^<]){0,1000}(?<!%|/)>))", Pattern.DOTALL);
+        Pattern namePattern = Pattern.compile("</?([^\\s]*).*?>", Pattern.DOTALL);
+        Random random = new Random(3);
+        String[] pieces = { "<", ">", "/", "%", "!", " ", "\n", "a", "b", "<a>", "</a>", "<%" };
+        for (int i = 0; i < 300; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int j = random.nextInt(40); j > 0; j--) {
+                text.append(pieces[random.nextInt(pieces.length)]);
+            }
+            index = new XmlTagIndex(text.toString());
+            Matcher matcher = tagPattern.matcher(text);
+            int tag = 0;
+            while (matcher.find()) {
+                String message = "tag " + tag + " in " + text;
+                Assert.assertTrue(message, tag < index.size());
+                Assert.assertEquals(message, matcher.start(), index.getStart(tag));
+                Assert.assertEquals(message, matcher.end(), index.getEnd(tag));
+                Matcher name = namePattern.matcher(matcher.group());
+                Assert.assertTrue(name.find());
+                Assert.assertEquals(message, name.group(1), index.getName(tag));
+                tag++;
+            }
+            Assert.assertEquals(text.toString(), tag, index.size());
+        }
+    }
+
+    private static int lineBreaks(String text) {
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testRingBuffer() {
+        RingBuffer<Integer> buffer = new RingBuffer<Integer>(3);
+        Assert.assertNull(buffer.add(1));
+        Assert.assertNull(buffer.add(2));
+        Assert.assertNull(buffer.add(3));
+        // Full, the oldest element makes room.
+        Assert.assertEquals(Integer.valueOf(1), buffer.add(4));
+        Assert.assertEquals(Integer.valueOf(2), buffer.add(5));
+        Assert.assertEquals(3, buffer.size());
+        Assert.assertEquals(Integer.valueOf(3), buffer.get(0));
+        Assert.assertEquals(Integer.valueOf(5), buffer.get(2));
+
+        buffer.set(2, 6);
+        Assert.assertEquals(Integer.valueOf(4), buffer.remove(1));
+        Assert.assertEquals(Arrays.asList(3, 6), contents(buffer));
+
+        buffer.add(7);
+        Assert.assertEquals(Integer.valueOf(3), buffer.add(8));
+        Assert.assertEquals(Arrays.asList(6), buffer.setCapacity(2));
+        Assert.assertEquals(Arrays.asList(7, 8), contents(buffer));
+        buffer.setCapacity(4);
+        buffer.add(9);
+        Assert.assertEquals(Arrays.asList(7, 8, 9), contents(buffer));
+        try {
+            buffer.get(3);
+            Assert.fail("read past the newest element");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testIntervalTree() {
+        IntervalTree<String> tree = new IntervalTree<String>();
+        Interval<String> a = tree.add(20, 25, "a");
+        tree.add(0, 100, "whole");
+        tree.add(40, 45, "c");
+        Interval<String> b = tree.add(30, 35, "b");
+        Assert.assertEquals(Arrays.asList("whole", "a", "b"), values(tree.findOverlapping(22, 31)));
+        Assert.assertEquals(Arrays.asList("whole"), values(tree.findOverlapping(25, 30)));
+        Assert.assertEquals(Collections.emptyList(), values(tree.findOverlapping(100, 200)));
+
+        tree.remove(b);
+        Assert.assertEquals(3, tree.size());
+        Assert.assertEquals(Arrays.asList("whole", "a"), values(tree.findOverlapping(22, 31)));
+
+        // Replace "2" at 22 with "xyz": 'a' grows, everything after moves.
+        tree.update(22, 1, 3);
+        Assert.assertEquals(20, a.getStart());
+        Assert.assertEquals(27, a.getEnd());
+        Assert.assertEquals(Arrays.asList("whole", "c"), values(tree.findOverlapping(42, 43)));
+        // Deleting all of 'a' removes it.
+        tree.update(18, 10, 0);
+        Assert.assertTrue(a.isRemoved());
+        Assert.assertEquals(Arrays.asList("whole", "c"), values(tree.findOverlapping(0, 40)));
+    }
+
+    @Test
+    public void testLatencyProfiler() {
+        LatencyProfiler profiler = LatencyProfiler.INSTANCE;
+        profiler.reset();
+        try {
+            Assert.assertEquals(0, profiler.start());
+            profiler.record(Phase.EXECUTION, System.nanoTime() - 1000, "ignored");
+
+            profiler.setEnabled(true);
+            long startTime = profiler.start();
+            Assert.assertTrue(startTime != 0);
+            profiler.record(Phase.REMAPPING, startTime, "normal");
+            profiler.record(Phase.EXECUTION, startTime, new StringBuilder());
+            profiler.record(Phase.EXECUTION, startTime, null);
+            String report = profiler.getReport();
+            MatcherAssert.assertThat(report, CoreMatchers.containsString("execution               2"));
+            MatcherAssert.assertThat(report, CoreMatchers.containsString("remapping               1"));
+            MatcherAssert.assertThat(report, CoreMatchers.containsString("remapping: normal"));
+            MatcherAssert.assertThat(report, CoreMatchers.containsString("execution: StringBuilder"));
+            MatcherAssert.assertThat(report, CoreMatchers.not(CoreMatchers.containsString("ignored")));
+
+            profiler.reset();
+            MatcherAssert.assertThat(profiler.getReport(),
+                    CoreMatchers.containsString("execution               0"));
+        } finally {
+            profiler.setEnabled(false);
+            profiler.reset();
+        }
+    }
+
+    @Test
+    public void testConfigurationCache() {
+        final int[] tabStop = { 4 };
+        final int[] lookups = { 0 };
+        DefaultConfigProvider editorDefaults = new DefaultConfigProvider() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> T getDefault(Option<T> option) {
+                lookups[0]++;
+                return Options.TAB_STOP.equals(option) ? (T) Integer.valueOf(tabStop[0]) : null;
+            }
+        };
+        List<DefaultConfigProvider> noProviders = Collections.emptyList();
+        SimpleGlobalConfiguration global = new SimpleGlobalConfiguration(noProviders);
+        SimpleLocalConfiguration local = new SimpleLocalConfiguration(
+                Collections.singletonList(editorDefaults), global);
+        SimpleLocalConfiguration other = new SimpleLocalConfiguration(noProviders, global);
+
+        Assert.assertFalse(local.get(Options.SMART_CASE));
+        int lookupCount = lookups[0];
+        Assert.assertFalse(local.get(Options.SMART_CASE));
+        Assert.assertEquals(lookupCount, lookups[0]);
+
+        // The editor's own settings can change without notice, they are never cached.
+        Assert.assertEquals(Integer.valueOf(4), local.get(Options.TAB_STOP));
+        tabStop[0] = 8;
+        Assert.assertEquals(Integer.valueOf(8), local.get(Options.TAB_STOP));
+        global.set(Options.TAB_STOP, 2);
+        Assert.assertEquals(Integer.valueOf(2), local.get(Options.TAB_STOP));
+        lookupCount = lookups[0];
+        Assert.assertEquals(Integer.valueOf(2), local.get(Options.TAB_STOP));
+        Assert.assertEquals(lookupCount, lookups[0]);
+
+        Assert.assertFalse(other.get(Options.IGNORE_CASE));
+        global.set(Options.IGNORE_CASE, true);
+        Assert.assertTrue(other.get(Options.IGNORE_CASE));
+        local.setLocal(Options.IGNORE_CASE, false);
+        Assert.assertFalse(local.get(Options.IGNORE_CASE));
+        Assert.assertTrue(other.get(Options.IGNORE_CASE));
+
+        Option<Integer> late = Option.integer("latecomer", 3);
+        Assert.assertEquals(Integer.valueOf(3), local.get(late));
+    }
+
+    private static List<String> values(List<Interval<String>> intervals) {
+        List<String> result = new ArrayList<String>();
+        for (Interval<String> interval : intervals) {
+            result.add(interval.getValue());
+        }
+        return result;
+    }
+
+    private static List<Integer> contents(RingBuffer<Integer> buffer) {
+        List<Integer> result = new ArrayList<Integer>();
+        for (int i = 0; i < buffer.size(); i++) {
+            result.add(buffer.get(i));
+        }
+        return result;
+    }
+
+    @Test
+    public void testProcessHelperStreamsLargeInput() {
+        Assume.assumeTrue(new File("/bin/cat").canExecute());
+        StringBuilder input = new StringBuilder();
+        while (input.length() < 1000000) {
+            input.append("line ").append(input.length()).append('\n');
+        }
+        final String[] result = new String[1];
+        // The process is still fed from another thread.
+        ProcessHelper.runInBackground(new SynchronousBackgroundTaskService(), "cat", new String[] { "/bin/cat" },
+                input.toString(), new ProcessHelper.ProcessListener() {
+            public void finished(String output) {
+                result[0] = output;
+            }
+            public void failed(int exitCode, String errors) {
+                Assert.fail("exit code " + exitCode + ": " + errors);
+            }
+            public void aborted(Exception e) {
+                throw new AssertionError(e);
+            }
+        });
+        Assert.assertEquals(input.toString(), result[0]);
+    }
+
+    @Test
+    public void testProcessHelperRunWaitsForResult() {
+        Assume.assumeTrue(new File("/bin/cat").canExecute());
+        final String[] result = new String[1];
+        ProcessHelper.run("cat", new String[] { "/bin/cat" }, "a\nb\n",
+                new ProcessHelper.ProcessListener() {
+            public void finished(String output) {
+                result[0] = output;
+            }
+            public void failed(int exitCode, String errors) {
+                Assert.fail("exit code " + exitCode + ": " + errors);
+            }
+            public void aborted(Exception e) {
+                throw new AssertionError(e);
+            }
+        });
+        Assert.assertEquals("a\nb\n", result[0]);
+    }
 }
@@ -3,12 +3,16 @@ package net.sourceforge.vrapper.core.tests.cases;
 import static net.sourceforge.vrapper.keymap.vim.ConstructorWrappers.key;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.Iterator;
 
 import org.junit.Test;
@@ -17,6 +21,7 @@ import net.sourceforge.vrapper.keymap.KeyMap;
 import net.sourceforge.vrapper.keymap.KeyStroke;
 import net.sourceforge.vrapper.keymap.Remapping;
 import net.sourceforge.vrapper.testutil.VimTestCase;
+import net.sourceforge.vrapper.vim.ConfigurationFileCache;
 import net.sourceforge.vrapper.vim.commands.Command;
 import net.sourceforge.vrapper.vim.modes.NormalMode;
 import net.sourceforge.vrapper.vim.modes.commandline.CommandLineMode;
@@ -50,6 +55,35 @@ public class VrapperRCTests extends VimTestCase {
         assertMappingEquals(map.press(key('\u00e4')).getValue(), key('z'), key('z'));
     }
 
+    @Test
+    public void testConfigurationFileCache() throws Exception {
+        File config = File.createTempFile("vrapperrc", null);
+        try {
+            Files.write(config.toPath(), Arrays.asList("\" comment", "set ic", "",
+                    "if has('gui')", "set nu", "endif", ":nmap x dd"), StandardCharsets.UTF_8);
+            ConfigurationFileCache.Snapshot snapshot = ConfigurationFileCache.getSnapshot(config);
+            assertEquals(Arrays.asList("set ic", "nmap x dd"), snapshot.getCommands());
+            assertEquals(2, snapshot.getLineNumber(0));
+            assertEquals(7, snapshot.getLineNumber(1));
+            assertSame(snapshot, ConfigurationFileCache.getSnapshot(config));
+
+            Files.write(config.toPath(), Arrays.asList("set noic"), StandardCharsets.UTF_8);
+            config.setLastModified(config.lastModified() + 2000);
+            snapshot = ConfigurationFileCache.getSnapshot(config);
+            assertEquals(Arrays.asList("set noic"), snapshot.getCommands());
+
+            // Same size and modification time, only the content tells the change.
+            long lastModified = config.lastModified();
+            Files.write(config.toPath(), Arrays.asList("set nonu"), StandardCharsets.UTF_8);
+            config.setLastModified(lastModified);
+            snapshot = ConfigurationFileCache.getSnapshot(config);
+            assertEquals(Arrays.asList("set nonu"), snapshot.getCommands());
+        } finally {
+            config.delete();
+        }
+        assertNull(ConfigurationFileCache.getSnapshot(config));
+    }
+
     private void assertMappingEquals(Remapping re, KeyStroke... strokes) {
         Iterator<KeyStroke> it = re.getKeyStrokes().iterator();
         for (KeyStroke s : strokes) {
@@ -0,0 +1,116 @@
+package net.sourceforge.vrapper.core.tests.cases;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import net.sourceforge.vrapper.platform.BackgroundTaskService;
+import net.sourceforge.vrapper.plugin.clangformat.commands.ClangFormat;
+import net.sourceforge.vrapper.testutil.CommandTestCase;
+
+/**
+ * Runs {@link ClangFormat} with a shell script standing in for clang-format. The script prints
+ * fixed replacements and counts how often it was run.
+ */
+public class ClangFormatTests extends CommandTestCase {
+
+    private static final String REPLACEMENTS =
+            "<?xml version='1.0'?>\n"
+            + "<replacements xml:space='preserve' incomplete_format='false'>\n"
+            + "<replacement offset='3' length='2'> </replacement>\n"
+            + "<replacement offset='11' length='3'> </replacement>\n"
+            + "<replacement offset='16' length='0'>&#10;</replacement>\n"
+            + "</replacements>\n";
+
+    private File log;
+
+    private void useStandIn(String fileName, String output) throws IOException {
+        Assume.assumeTrue(new File("/bin/sh").canExecute());
+        File dir = Files.createTempDirectory("clang-format").toFile();
+        dir.deleteOnExit();
+        log = new File(dir, "runs");
+        log.deleteOnExit();
+        File script = new File(dir, "clang-format");
+        script.deleteOnExit();
+        Writer writer = new FileWriter(script);
+        try {
+            writer.write("#!/bin/sh\n"
+                    + "echo run >> '" + log.getPath() + "'\n"
+                    + "cat > /dev/null\n"
+                    + "cat <<'EOF'\n" + output + "EOF\n");
+        } finally {
+            writer.close();
+        }
+        script.setExecutable(true);
+        configuration.set(ClangFormat.PATH_OPT, script.getPath());
+        when(fileService.getCurrentFileLocation()).thenReturn(fileName);
+    }
+
+    private int runs() throws IOException {
+        return log.exists() ? Files.readAllLines(log.toPath()).size() : 0;
+    }
+
+    @Test
+    public void testReplacementsAppliedInOneEdit() throws IOException {
+        useStandIn("/tmp/one-edit.cpp", REPLACEMENTS);
+        checkCommand(new ClangFormat(new LinkedList<String>()),
+                "int  a;\nint   b",';',"}",
+                "int a;\nint b",';',"\n}");
+        verify(content, times(1)).replace(Mockito.anyInt(), Mockito.anyInt(), Mockito.anyString());
+        assertEquals(1, runs());
+    }
+
+    @Test
+    public void testSkipsFormattedText() throws IOException {
+        useStandIn("/tmp/formatted.cpp", REPLACEMENTS);
+        checkCommand(new ClangFormat(new LinkedList<String>()),
+                "",'i',"nt  a;\nint   b;}",
+                "",'i',"nt a;\nint b;\n}");
+        assertEquals(1, runs());
+
+        // Same text and style: clang-format isn't run again.
+        executeCommand(new ClangFormat(new LinkedList<String>()));
+        assertEquals(1, runs());
+        assertEquals("int a;\nint b;\n}", content.getText());
+
+        // Another style has to be checked.
+        executeCommand(new ClangFormat(new LinkedList<String>(List.of("google"))));
+        assertEquals(2, runs());
+    }
+
+    @Test
+    public void testFormatsRightAwayWithLockedHistory() throws IOException {
+        useStandIn("/tmp/locked.cpp", REPLACEMENTS);
+        // Background tasks never finish here, the result has to be applied without them.
+        when(platform.getBackgroundTaskService()).thenReturn(
+                Mockito.mock(BackgroundTaskService.class));
+        reloadEditorAdaptor();
+        when(historyService.isLocked()).thenReturn(true);
+        checkCommand(new ClangFormat(new LinkedList<String>()),
+                "int  a;\nint   b",';',"}",
+                "int a;\nint b",';',"\n}");
+        assertEquals(1, runs());
+    }
+
+    @Test
+    public void testFailingFormatterKeepsText() throws IOException {
+        useStandIn("/tmp/broken.cpp", "not xml\n");
+        checkCommand(new ClangFormat(new LinkedList<String>()),
+                "int  ",'a',";",
+                "int  ",'a',";");
+        assertEquals(1, runs());
+    }
+}
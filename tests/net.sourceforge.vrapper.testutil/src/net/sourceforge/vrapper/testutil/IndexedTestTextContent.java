@@ -0,0 +1,140 @@
+package net.sourceforge.vrapper.testutil;
+
+import java.util.Arrays;
+
+import net.sourceforge.vrapper.platform.CursorService;
+import net.sourceforge.vrapper.utils.LineInformation;
+
+/**
+ * A {@link TestTextContent} which finds lines through an index of line start offsets instead of
+ * scanning the buffer, for tests and benchmarks working on large texts.
+ * <p>
+ * The index is built on the first line lookup after the text was set, replacements update it.
+ */
+public class IndexedTestTextContent extends TestTextContent {
+
+    private int[] lineStarts;
+    private int lineCount;
+
+    public IndexedTestTextContent(CursorService cursorService) {
+        super(cursorService);
+    }
+
+    @Override
+    public LineInformation getLineInformation(int line) {
+        buildIndex();
+        if (line < 0 || line >= lineCount) {
+            throw new RuntimeException("Line is out of range");
+        }
+        int start = lineStarts[line];
+        int end = start;
+        while (end < buffer.length() && buffer.charAt(end) != '\n' && buffer.charAt(end) != '\r') {
+            end++;
+        }
+        return new LineInformation(line, start, end - start);
+    }
+
+    @Override
+    public LineInformation getLineInformationOfOffset(int offset) {
+        buildIndex();
+        int line = Arrays.binarySearch(lineStarts, 0, lineCount, offset);
+        if (line < 0) {
+            line = -line - 2;
+        }
+        return getLineInformation(Math.max(0, line));
+    }
+
+    @Override
+    public int getNumberOfLines() {
+        buildIndex();
+        return lineCount;
+    }
+
+    @Override
+    public void replace(int index, int length, String s) {
+        // Update first, the cursor is moved before this method returns.
+        if (lineStarts != null) {
+            updateIndex(index, length, s);
+        }
+        super.replace(index, length, s);
+    }
+
+    @Override
+    public void setText(String content) {
+        lineStarts = null;
+        super.setText(content);
+    }
+
+    /**
+     * Splices the line starts of the new text into the index and shifts the ones after it. Only
+     * the starts next to the new text are checked again, as a CR and LF can be joined or split
+     * at its edges.
+     */
+    private void updateIndex(int index, int length, String s) {
+        int end = index + length;
+        int delta = s.length() - length;
+        int newLength = buffer.length() + delta;
+        // Starts before the replaced range and after its end stay, the ones between are redone.
+        int first = lowerBound(Math.max(index, 1));
+        int last = lowerBound(end + 1);
+        int[] added = new int[s.length() + 1];
+        int addedCount = 0;
+        for (int p = Math.max(index, 1); p <= index + s.length(); p++) {
+            char c = charAfterReplace(p - 1, index, end, s);
+            if (c == '\n' || c == '\r' && (p == newLength
+                    || charAfterReplace(p, index, end, s) != '\n')) {
+                added[addedCount++] = p;
+            }
+        }
+        int tail = lineCount - last;
+        int newCount = first + addedCount + tail;
+        if (newCount > lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, Math.max(newCount, lineStarts.length * 2));
+        }
+        System.arraycopy(lineStarts, last, lineStarts, first + addedCount, tail);
+        System.arraycopy(added, 0, lineStarts, first, addedCount);
+        for (int i = first + addedCount; i < newCount; i++) {
+            lineStarts[i] += delta;
+        }
+        lineCount = newCount;
+    }
+
+    /** Character at <code>offset</code> once <code>[index, end)</code> is replaced by <code>s</code>. */
+    private char charAfterReplace(int offset, int index, int end, String s) {
+        if (offset < index) {
+            return buffer.charAt(offset);
+        } else if (offset < index + s.length()) {
+            return s.charAt(offset - index);
+        }
+        return buffer.charAt(end + offset - index - s.length());
+    }
+
+    /** Index of the first line start which is at or after <code>offset</code>. */
+    private int lowerBound(int offset) {
+        int line = Arrays.binarySearch(lineStarts, 0, lineCount, offset);
+        return line < 0 ? -line - 1 : line;
+    }
+
+    private void buildIndex() {
+        if (lineStarts != null) {
+            return;
+        }
+        int[] starts = new int[64];
+        int count = 1;
+        int length = buffer.length();
+        for (int i = 0; i < length; i++) {
+            char c = buffer.charAt(i);
+            if (c == '\r' && i + 1 < length && buffer.charAt(i + 1) == '\n') {
+                i++;
+            } else if (c != '\r' && c != '\n') {
+                continue;
+            }
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+            }
+            starts[count++] = i + 1;
+        }
+        lineStarts = starts;
+        lineCount = count;
+    }
+}
@@ -0,0 +1,20 @@
+package net.sourceforge.vrapper.testutil;
+
+import net.sourceforge.vrapper.platform.BackgroundTaskService;
+
+/**
+ * Runs background tasks right away in the calling thread, so tests can check their results as
+ * soon as the command returns.
+ */
+public class SynchronousBackgroundTaskService implements BackgroundTaskService {
+
+    @Override
+    public void schedule(Task task) {
+        task.run();
+    }
+
+    @Override
+    public void runInEditorThread(Runnable runnable) {
+        runnable.run();
+    }
+}
@@ -2,7 +2,10 @@ package net.sourceforge.vrapper.testutil;
 
 import static java.lang.Math.min;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.Set;
 
 import net.sourceforge.vrapper.platform.CursorService;
@@ -26,6 +29,7 @@ public class TestCursorAndSelection implements CursorService, SelectionService {
 	private CaretType caretType;
     private TextContent content;
     private int stickyColumnNo;
+    private final Map<String, Integer> marks = new HashMap<String, Integer>();
 
 	public Position getPosition() {
 		if (selection != null) {
@@ -166,15 +170,36 @@ public class TestCursorAndSelection implements CursorService, SelectionService {
     }
 
     public Position getMark(String id) {
-        return null;
+        Integer offset = marks.get(id);
+        return offset == null ? null : new DumbPosition(offset);
     }
 
     public void setMark(String id, Position position) {
-        // do nothing
+        marks.put(id, position.getModelOffset());
     }
 
     public void deleteMark(String id) {
-        // do nothing
+        marks.remove(id);
+    }
+
+    /**
+     * Moves the marks after a change of the text, like the Eclipse mark store: a mark strictly
+     * inside removed text is deleted, a mark at the start of the change ends up after the
+     * inserted text.
+     */
+    public void textReplaced(int index, int length, int inserted) {
+        Iterator<Map.Entry<String, Integer>> it = marks.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Integer> mark = it.next();
+            int offset = mark.getValue();
+            if (offset == index) {
+                mark.setValue(index + inserted);
+            } else if (offset > index && offset < index + length) {
+                it.remove();
+            } else if (offset > index) {
+                mark.setValue(offset + inserted - length);
+            }
+        }
     }
 
 	public Position getNextChangeLocation(int count) {
@@ -5,10 +5,12 @@ import java.util.regex.Pattern;
 
 import net.sourceforge.vrapper.platform.Configuration;
 import net.sourceforge.vrapper.platform.SearchAndReplaceService;
+import net.sourceforge.vrapper.utils.LineInformation;
 import net.sourceforge.vrapper.utils.Position;
 import net.sourceforge.vrapper.utils.Search;
 import net.sourceforge.vrapper.utils.SearchResult;
 import net.sourceforge.vrapper.utils.StringUtils;
+import net.sourceforge.vrapper.utils.SubstitutionResult;
 import net.sourceforge.vrapper.vim.Options;
 
 public class TestSearchService implements SearchAndReplaceService {
@@ -95,6 +97,52 @@ public class TestSearchService implements SearchAndReplaceService {
         return nMatches;
     }
 
+    /**
+     * Test replace stub, replaces the whole line range at once.
+     */
+    public SubstitutionResult replaceLines(int startLine, int endLine, String toFind, String replace,
+            String flags) {
+        int nMatches = 0;
+        int nLines = 0;
+        int patternFlags = 0;
+        boolean doReplace = ! flags.contains("n");
+        boolean allMatches = flags.contains("g");
+        if ( ! isCaseSensitive(toFind, flags)) {
+            patternFlags |= Pattern.CASE_INSENSITIVE;
+        }
+        Pattern pattern = Pattern.compile(toFind, patternFlags);
+
+        int start = content.getLineInformation(startLine).getBeginOffset();
+        int end = content.getLineInformation(endLine).getEndOffset();
+        StringBuilder result = new StringBuilder();
+        for (int i = startLine; i <= endLine; i++) {
+            LineInformation line = content.getLineInformation(i);
+            String lineContent = content.getText(line.getBeginOffset(), line.getLength());
+            Matcher matcher = pattern.matcher(lineContent);
+            int lineMatches = 0;
+            int lastMatchEnd = 0;
+            while ((lineMatches == 0 || allMatches) && matcher.find()) {
+                lineMatches++;
+                result.append(lineContent.substring(lastMatchEnd, matcher.start()));
+                result.append(replace);
+                lastMatchEnd = matcher.end();
+            }
+            result.append(lineContent.substring(lastMatchEnd));
+            if (i < endLine) {
+                int nextLineStart = content.getLineInformation(i + 1).getBeginOffset();
+                result.append(content.getText(line.getEndOffset(), nextLineStart - line.getEndOffset()));
+            }
+            if (lineMatches > 0) {
+                nLines++;
+            }
+            nMatches += lineMatches;
+        }
+        if (doReplace && nMatches > 0) {
+            content.replace(start, end - start, result.toString());
+        }
+        return new SubstitutionResult(nMatches, nLines);
+    }
+
 	public boolean isCaseSensitive(String toFind, String flags) {
         boolean caseSensitive = !sharedConfiguration.get(Options.IGNORE_CASE)
             || (sharedConfiguration.get(Options.SMART_CASE)
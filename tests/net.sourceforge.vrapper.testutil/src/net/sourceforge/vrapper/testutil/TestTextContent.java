@@ -103,6 +103,9 @@ public class TestTextContent implements TextContent {
 
     public void replace(int index, int length, String s) {
 		buffer.replace(index, index+length, s);
+		if (cursorService instanceof TestCursorAndSelection) {
+			((TestCursorAndSelection) cursorService).textReplaced(index, length, s.length());
+		}
 		cursorService.setPosition(new DumbPosition(index + s.length()), StickyColumnPolicy.NEVER);
     }
 
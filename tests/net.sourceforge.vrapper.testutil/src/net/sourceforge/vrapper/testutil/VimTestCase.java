@@ -125,6 +125,7 @@ public class VimTestCase {
                 .thenReturn(platformSpecificStateProvider);
         when(platform.getUnderlyingEditorSettings()).thenReturn(underlyingEditorSettings);
         when(platform.getBufferAndTabService()).thenReturn(bufferAndTabsService);
+        when(platform.getBackgroundTaskService()).thenReturn(new SynchronousBackgroundTaskService());
         reloadEditorAdaptor();
         defaultRegister = spy(new SimpleRegister());
         lastEditRegister = spy(new SimpleRegister());